@@ -0,0 +1,118 @@
+package com.example.glwallpaper.gl;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 桌面和预览两个 engine 通过 DecodedImageCache 共享图层时, 磁盘缓存不能被当作不再使用而删除
+ */
+@RunWith(AndroidJUnit4.class)
+public class GLBitmapLoaderCacheTest {
+
+    private static final int WIDTH = 720;
+    private static final int HEIGHT = 1280;
+
+    private File mDir;
+    private File mImage;
+    private TextureCache mCache;
+    private DecodedImageCache mSharedCache;
+
+    @Before
+    public void setUp() throws IOException {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mDir = new File(context.getCacheDir(), "loader-cache-test");
+        mDir.mkdirs();
+        mCache = new TextureCache(new File(mDir, "textures"));
+        mCache.clear();
+        mSharedCache = new DecodedImageCache();
+
+        Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        int[] row = new int[WIDTH];
+        Random random = new Random(1);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                row[x] = 0xff000000 | (random.nextInt() & 0xffffff);
+            }
+            bitmap.setPixels(row, 0, WIDTH, 0, y, WIDTH, 1);
+        }
+        mImage = new File(mDir, "layer.png");
+        try (FileOutputStream out = new FileOutputStream(mImage)) {
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        }
+        bitmap.recycle();
+    }
+
+    @After
+    public void tearDown() {
+        mCache.clear();
+        mImage.delete();
+    }
+
+    private List<GLBitmap> load(final GLBitmapLoader loader) throws InterruptedException {
+        loader.setAtlasEnabled(false);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final List<GLBitmap>[] result = new List[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                loader.load(Collections.singletonList(mImage.getPath()), 0, WIDTH, HEIGHT,
+                        GLBitmap.RESIDENCY_DROP_AFTER_UPLOAD, new GLBitmapLoader.Callback() {
+                            @Override
+                            public void onProgress(int done, int total) {
+                            }
+
+                            @Override
+                            public void onLoaded(List<GLBitmap> images, long costMs) {
+                                result[0] = images;
+                                latch.countDown();
+                            }
+                        });
+            }
+        });
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        return result[0];
+    }
+
+    @Test
+    public void secondLoaderKeepsDiskCache() throws InterruptedException {
+        String key = TextureCache.key(mImage, WIDTH, HEIGHT, 0);
+
+        // 桌面的 engine 解码并写入磁盘缓存, 图层一直在使用
+        List<GLBitmap> home = load(new GLBitmapLoader(mCache, mSharedCache));
+        assertEquals(key, home.get(0).getCacheKey());
+        assertTrue(mCache.fileOf(key).isFile());
+
+        // 预览的 engine 从共享缓存得到同一个图层
+        List<GLBitmap> preview = load(new GLBitmapLoader(mCache, mSharedCache));
+        assertEquals(key, preview.get(0).getCacheKey());
+        assertEquals(1, mSharedCache.getHitCount());
+        assertTrue(mCache.fileOf(key).isFile());
+        assertNotNull(mCache.get(key));
+
+        for (GLBitmap image : preview) {
+            image.release();
+        }
+        for (GLBitmap image : home) {
+            image.release();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.glwallpaper.gl;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import javax.microedition.khronos.egl.EGL10;
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.egl.EGLContext;
+import javax.microedition.khronos.egl.EGLDisplay;
+import javax.microedition.khronos.egl.EGLSurface;
+
+import static org.junit.Assert.*;
+
+/**
+ * context 丢失后重新解码失败时, 图层被跳过, 不能在 GL 线程抛出异常
+ */
+@RunWith(AndroidJUnit4.class)
+public class GLBitmapReloadTest {
+
+    private static final int SIZE = 256;
+    private static final int EGL_OPENGL_ES2_BIT = 4;
+
+    private EGL10 mEgl;
+    private EGLDisplay mDisplay;
+    private EGLContext mContext;
+    private EGLSurface mSurface;
+    private File mImage;
+
+    @Before
+    public void setUp() throws IOException {
+        mEgl = (EGL10) EGLContext.getEGL();
+        mDisplay = mEgl.eglGetDisplay(EGL10.EGL_DEFAULT_DISPLAY);
+        assertTrue(mEgl.eglInitialize(mDisplay, new int[2]));
+        int[] attributes = {
+                EGL10.EGL_RENDERABLE_TYPE, EGL_OPENGL_ES2_BIT,
+                EGL10.EGL_SURFACE_TYPE, EGL10.EGL_PBUFFER_BIT,
+                EGL10.EGL_NONE
+        };
+        EGLConfig[] configs = new EGLConfig[1];
+        int[] count = new int[1];
+        assertTrue(mEgl.eglChooseConfig(mDisplay, attributes, configs, 1, count));
+        assertEquals(1, count[0]);
+        mContext = new DefaultContextFactory(2).createContext(mEgl, mDisplay, configs[0]);
+        mSurface = mEgl.eglCreatePbufferSurface(mDisplay, configs[0],
+                new int[]{EGL10.EGL_WIDTH, 1, EGL10.EGL_HEIGHT, 1, EGL10.EGL_NONE});
+        assertTrue(mEgl.eglMakeCurrent(mDisplay, mSurface, mSurface, mContext));
+
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mImage = new File(context.getCacheDir(), "reload-test.png");
+        Bitmap bitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(0xff336699);
+        try (FileOutputStream out = new FileOutputStream(mImage)) {
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        }
+        bitmap.recycle();
+    }
+
+    @After
+    public void tearDown() {
+        mImage.delete();
+        mEgl.eglMakeCurrent(mDisplay, EGL10.EGL_NO_SURFACE, EGL10.EGL_NO_SURFACE, EGL10.EGL_NO_CONTEXT);
+        mEgl.eglDestroySurface(mDisplay, mSurface);
+        mEgl.eglDestroyContext(mDisplay, mContext);
+        mEgl.eglTerminate(mDisplay);
+    }
+
+    private static boolean prepare(GLBitmap image, UploadScheduler scheduler) {
+        for (int frame = 0; frame < 100; frame++) {
+            scheduler.beginFrame();
+            if (image.prepare(scheduler, SIZE, SIZE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void failedReloadSkipsLayer() {
+        GLBitmap image = GLBitmap.create(mImage.getPath(), 0, SIZE, SIZE);
+        image.setResidency(GLBitmap.RESIDENCY_DROP_AFTER_UPLOAD);
+        UploadScheduler scheduler = UploadScheduler.unlimited();
+        assertTrue(prepare(image, scheduler));
+        assertTrue(image.isReady());
+        assertFalse(image.isBitmapResident());
+
+        // 原图被删除, context 丢失后重新解码失败
+        assertTrue(mImage.delete());
+        image.onContextLost();
+        assertTrue(prepare(image, scheduler));
+        assertFalse(image.isReady());
+        // 之后的帧不再尝试解码
+        assertTrue(image.prepare(scheduler, SIZE, SIZE));
+        assertFalse(image.isReady());
+        image.release();
+    }
+}
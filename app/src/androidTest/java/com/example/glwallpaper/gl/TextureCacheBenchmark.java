@@ -0,0 +1,122 @@
+package com.example.glwallpaper.gl;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 对比从原图解码和从缓存 mmap 读取的耗时, 结果输出到 logcat (tag: TextureCacheBenchmark).
+ * 缓存至少要比解码快 MIN_SPEEDUP 倍, 否则缓存没有意义
+ */
+@RunWith(AndroidJUnit4.class)
+public class TextureCacheBenchmark {
+
+    private static final String TAG = "TextureCacheBenchmark";
+
+    private static final int WIDTH = 1440;
+    private static final int HEIGHT = 3200;
+    private static final int ROUNDS = 5;
+    // 噪声 png 解码一般要上百 ms, 读取缓存只是缺页, 留出足够的余量避免在慢设备上误报
+    private static final double MIN_SPEEDUP = 2;
+
+    private File mDir;
+    private File mImage;
+    private TextureCache mCache;
+
+    @Before
+    public void setUp() throws IOException {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mDir = new File(context.getCacheDir(), "texture-benchmark");
+        mDir.mkdirs();
+        mCache = new TextureCache(new File(mDir, "textures"));
+        mCache.clear();
+
+        // 半透明的噪声图, 不会被转码为 ETC1, 缓存的是原始像素
+        Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        int[] row = new int[WIDTH];
+        Random random = new Random(1);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int alpha = 0x80 + random.nextInt(0x80);
+                row[x] = (alpha << 24) | (random.nextInt() & 0xffffff);
+            }
+            bitmap.setPixels(row, 0, WIDTH, 0, y, WIDTH, 1);
+        }
+        mImage = new File(mDir, "layer.png");
+        try (FileOutputStream out = new FileOutputStream(mImage)) {
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        }
+        bitmap.recycle();
+    }
+
+    @After
+    public void tearDown() {
+        mCache.clear();
+        mImage.delete();
+    }
+
+    @Test
+    public void decodeVsMappedLoad() {
+        long[] decode = new long[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            GLBitmap image = GLBitmap.create(mImage.getPath(), 0, WIDTH, HEIGHT);
+            decode[i] = SystemClock.elapsedRealtimeNanos() - start;
+            assertTrue(image.hasImage());
+            image.release();
+        }
+
+        // 第一次加载写入缓存
+        GLBitmap.create(mImage.getPath(), 0, WIDTH, HEIGHT, mCache).release();
+        String key = TextureCache.key(mImage, WIDTH, HEIGHT, 0);
+
+        long[] mapped = new long[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            TextureData data = mCache.get(key);
+            assertNotNull(data);
+            // 上传时 glTexImage2D 会读取全部页面, 这里先触发缺页, 计入读取耗时
+            touch(data.pixels);
+            mapped[i] = SystemClock.elapsedRealtimeNanos() - start;
+        }
+
+        double decodeMs = medianMs(decode);
+        double mappedMs = medianMs(mapped);
+        String result = "decode median " + decodeMs + "ms, mapped median " + mappedMs + "ms, "
+                + mImage.length() + " bytes png, " + mCache.size() + " bytes cached";
+        Log.i(TAG, result);
+        assertTrue(result, mappedMs * MIN_SPEEDUP < decodeMs);
+    }
+
+    private static long touch(ByteBuffer buffer) {
+        long sum = 0;
+        for (int i = 0; i < buffer.limit(); i += 4096) {
+            sum += buffer.get(i);
+        }
+        return sum;
+    }
+
+    private static double medianMs(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2] / 1e6;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.glwallpaper.wallpapers.image;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorManager;
+import android.os.Looper;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeNotNull;
+
+/**
+ * 旋转矢量的数据在传感器线程处理, 耗时也只记在传感器线程上
+ */
+@RunWith(AndroidJUnit4.class)
+public class RotationMonitorThreadTest {
+
+    private Context mContext;
+    private RotationMonitor mMonitor;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        SensorManager sensorManager = (SensorManager) mContext.getSystemService(Context.SENSOR_SERVICE);
+        assumeNotNull(sensorManager.getDefaultSensor(Sensor.TYPE_ROTATION_VECTOR));
+    }
+
+    @After
+    public void tearDown() {
+        if (mMonitor != null) {
+            mMonitor.release();
+        }
+    }
+
+    @Test
+    public void eventsAreHandledOffTheMainThread() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<Thread> callbackThread = new AtomicReference<>();
+        mMonitor = new RotationMonitor(mContext, 60, new RotationMonitor.RotationChangedListener() {
+            @Override
+            public void onRotationChanged(float[] angle, long timestampNanos) {
+                callbackThread.compareAndSet(null, Thread.currentThread());
+                latch.countDown();
+            }
+        });
+        mMonitor.setIdleTimeout(0);
+        mMonitor.start();
+        assertTrue("no rotation event", latch.await(5, TimeUnit.SECONDS));
+        mMonitor.stop();
+
+        assertNotSame(Looper.getMainLooper().getThread(), callbackThread.get());
+        assertEquals("RotationMonitor", callbackThread.get().getName());
+        assertTrue(mMonitor.getSensorThreadNanos() > 0);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.glwallpaper.gl;
+
+import java.nio.ByteBuffer;
+
+/**
+ * On 2026-10-18
+ * 找出图层中透明度不为 0 的最小矩形, 合并进图集时裁掉四周全透明的部分
+ */
+public final class AlphaBounds {
+
+    private AlphaBounds() {
+    }
+
+    /**
+     * @param pixels        紧密排列的像素, 从下标 0 开始
+     * @param bytesPerPixel 每个像素的字节数
+     * @param alphaOffset   透明度在像素中的字节偏移, RGBA_8888 为 3, ALPHA_8 为 0
+     * @param out           left, top, right, bottom, 右下不包含
+     * @return 全透明时返回 false, out 不变
+     */
+    public static boolean find(ByteBuffer pixels, int width, int height, int bytesPerPixel,
+                               int alphaOffset, int[] out) {
+        int rowBytes = width * bytesPerPixel;
+        int top = -1;
+        int bottom = -1;
+        int left = width;
+        int right = 0;
+        for (int y = 0; y < height; y++) {
+            int row = y * rowBytes + alphaOffset;
+            int first = -1;
+            for (int x = 0; x < width; x++) {
+                if (pixels.get(row + x * bytesPerPixel) != 0) {
+                    first = x;
+                    break;
+                }
+            }
+            if (first < 0) {
+                continue;
+            }
+            int last = first;
+            for (int x = width - 1; x > first; x--) {
+                if (pixels.get(row + x * bytesPerPixel) != 0) {
+                    last = x;
+                    break;
+                }
+            }
+            if (top < 0) {
+                top = y;
+            }
+            bottom = y + 1;
+            left = Math.min(left, first);
+            right = Math.max(right, last + 1);
+        }
+        if (top < 0) {
+            return false;
+        }
+        out[0] = left;
+        out[1] = top;
+        out[2] = right;
+        out[3] = bottom;
+        return true;
+    }
+
+    /**
+     * 格式中透明度的字节偏移, 没有透明度时返回 -1
+     */
+    public static int alphaOffset(TextureFormat format) {
+        switch (format) {
+            case RGBA_8888:
+                return 3;
+            case ALPHA_8:
+                return 0;
+            default:
+                return -1;
+        }
+    }
+}
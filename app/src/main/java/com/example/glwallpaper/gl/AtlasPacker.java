@@ -0,0 +1,174 @@
+package com.example.glwallpaper.gl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * On 2026-10-18
+ * 按行 (shelf) 把矩形排进固定大小的页面, 放不下时新开一页
+ * <p>
+ * 先按高度, 再按宽度从大到小排序, 相同尺寸按下标, 同样的输入总是得到同样的结果
+ */
+public final class AtlasPacker {
+
+    private final int mPageWidth;
+    private final int mPageHeight;
+    private final int mPadding;
+
+    /**
+     * @param padding 每个矩形四周留出的像素, 用于复制边缘, 避免线性过滤时采样到相邻的图层
+     */
+    public AtlasPacker(int pageWidth, int pageHeight, int padding) {
+        if (pageWidth <= 0 || pageHeight <= 0 || padding < 0) {
+            throw new IllegalArgumentException("page " + pageWidth + "x" + pageHeight
+                    + " padding " + padding);
+        }
+        mPageWidth = pageWidth;
+        mPageHeight = pageHeight;
+        mPadding = padding;
+    }
+
+    private static final class Shelf {
+        final int page;
+        final int y;
+        final int height;
+        int x;
+
+        Shelf(int page, int y, int height) {
+            this.page = page;
+            this.y = y;
+            this.height = height;
+        }
+    }
+
+    public Result pack(final int[] widths, final int[] heights) {
+        if (widths.length != heights.length) {
+            throw new IllegalArgumentException(widths.length + " widths, " + heights.length + " heights");
+        }
+        int count = widths.length;
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            if (widths[i] <= 0 || heights[i] <= 0) {
+                throw new IllegalArgumentException("rect " + i + " " + widths[i] + "x" + heights[i]);
+            }
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                if (heights[a] != heights[b]) {
+                    return heights[b] - heights[a];
+                }
+                if (widths[a] != widths[b]) {
+                    return widths[b] - widths[a];
+                }
+                return a - b;
+            }
+        });
+
+        Result result = new Result(count);
+        List<Shelf> shelves = new ArrayList<>();
+        // 每页已经使用的高度
+        List<Integer> pageHeights = new ArrayList<>();
+        int padding = mPadding;
+        for (int index : order) {
+            int width = widths[index] + 2 * padding;
+            int height = heights[index] + 2 * padding;
+            if (width > mPageWidth || height > mPageHeight) {
+                result.pages[index] = -1;
+                continue;
+            }
+            Shelf shelf = null;
+            for (Shelf s : shelves) {
+                if (s.height >= height && mPageWidth - s.x >= width) {
+                    shelf = s;
+                    break;
+                }
+            }
+            if (shelf == null) {
+                int page = pageHeights.size() - 1;
+                if (page < 0 || pageHeights.get(page) + height > mPageHeight) {
+                    page++;
+                    pageHeights.add(0);
+                }
+                shelf = new Shelf(page, pageHeights.get(page), height);
+                pageHeights.set(page, shelf.y + height);
+                shelves.add(shelf);
+            }
+            result.pages[index] = shelf.page;
+            result.xs[index] = shelf.x + padding;
+            result.ys[index] = shelf.y + padding;
+            shelf.x += width;
+            result.contentArea += (long) widths[index] * heights[index];
+        }
+
+        int pageCount = pageHeights.size();
+        result.pageWidths = new int[pageCount];
+        result.pageHeights = new int[pageCount];
+        for (Shelf shelf : shelves) {
+            result.pageWidths[shelf.page] = Math.max(result.pageWidths[shelf.page], shelf.x);
+        }
+        for (int page = 0; page < pageCount; page++) {
+            result.pageHeights[page] = pageHeights.get(page);
+        }
+        return result;
+    }
+
+    public static final class Result {
+        /**
+         * 每个矩形所在的页, 放不下 (超过页面大小) 时为 -1
+         */
+        public final int[] pages;
+        /**
+         * 矩形内容在页中的左上角, 不包括 padding
+         */
+        public final int[] xs;
+        public final int[] ys;
+        /**
+         * 每页实际使用的宽高, 包括 padding, 纹理按这个尺寸分配
+         */
+        int[] pageWidths;
+        int[] pageHeights;
+        long contentArea;
+
+        private Result(int count) {
+            pages = new int[count];
+            xs = new int[count];
+            ys = new int[count];
+        }
+
+        public int getPageCount() {
+            return pageWidths.length;
+        }
+
+        public int getPageWidth(int page) {
+            return pageWidths[page];
+        }
+
+        public int getPageHeight(int page) {
+            return pageHeights[page];
+        }
+
+        public long getContentArea() {
+            return contentArea;
+        }
+
+        public long getPageArea() {
+            long area = 0;
+            for (int page = 0; page < pageWidths.length; page++) {
+                area += (long) pageWidths[page] * pageHeights[page];
+            }
+            return area;
+        }
+
+        /**
+         * 矩形面积占页面面积的比例, 0 - 1, 没有页面时为 0
+         */
+        public float getEfficiency() {
+            long area = getPageArea();
+            return area == 0 ? 0 : contentArea / (float) area;
+        }
+    }
+}
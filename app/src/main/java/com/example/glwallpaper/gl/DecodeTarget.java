@@ -0,0 +1,83 @@
+package com.example.glwallpaper.gl;
+
+/**
+ * On 2026-10-18
+ * 根据 surface 尺寸计算解码尺寸, 先用 2 的幂次采样, 再精确缩放到目标尺寸
+ */
+public final class DecodeTarget {
+
+    /**
+     * BitmapFactory.Options#inSampleSize
+     */
+    public final int sampleSize;
+    /**
+     * 采样后 (精确缩放前) 的尺寸
+     */
+    public final int sampledWidth;
+    public final int sampledHeight;
+    /**
+     * 最终解码尺寸, 与源图方向一致 (未旋转)
+     */
+    public final int width;
+    public final int height;
+
+    private DecodeTarget(int sampleSize, int sampledWidth, int sampledHeight, int width, int height) {
+        this.sampleSize = sampleSize;
+        this.sampledWidth = sampledWidth;
+        this.sampledHeight = sampledHeight;
+        this.width = width;
+        this.height = height;
+    }
+
+    public boolean needsScale() {
+        return width != sampledWidth || height != sampledHeight;
+    }
+
+    public long byteCount(int bytesPerPixel) {
+        return (long) width * height * bytesPerPixel;
+    }
+
+    /**
+     * 与 GLBitmap#draw 的缩放规则一致: scale = max(dw / w, dh / h) + extraScale
+     *
+     * @param srcWidth      源图宽
+     * @param srcHeight     源图高
+     * @param transposed    exif 方向是否交换宽高 (90 / 270 等)
+     * @param surfaceWidth  surface 宽, <= 0 时不缩放
+     * @param surfaceHeight surface 高, <= 0 时不缩放
+     * @param extraScale    额外放大的比例
+     */
+    public static DecodeTarget compute(int srcWidth, int srcHeight, boolean transposed,
+                                       int surfaceWidth, int surfaceHeight, float extraScale) {
+        if (srcWidth <= 0 || srcHeight <= 0) {
+            throw new IllegalArgumentException("invalid image size " + srcWidth + "x" + srcHeight);
+        }
+        if (surfaceWidth <= 0 || surfaceHeight <= 0) {
+            return new DecodeTarget(1, srcWidth, srcHeight, srcWidth, srcHeight);
+        }
+
+        int imageWidth = transposed ? srcHeight : srcWidth;
+        int imageHeight = transposed ? srcWidth : srcHeight;
+
+        float scale = Math.max(surfaceWidth / (float) imageWidth,
+                surfaceHeight / (float) imageHeight);
+        if (extraScale > 0) {
+            scale += extraScale;
+        }
+        if (scale >= 1) {
+            // 不放大解码, 放大交给 gpu
+            return new DecodeTarget(1, srcWidth, srcHeight, srcWidth, srcHeight);
+        }
+
+        int width = Math.max(1, (int) Math.ceil(srcWidth * scale));
+        int height = Math.max(1, (int) Math.ceil(srcHeight * scale));
+
+        int sampleSize = 1;
+        while (srcWidth / (sampleSize * 2) >= width
+                && srcHeight / (sampleSize * 2) >= height) {
+            sampleSize *= 2;
+        }
+        return new DecodeTarget(sampleSize, srcWidth / sampleSize, srcHeight / sampleSize,
+                width, height);
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.glwallpaper.gl;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * On 2026-10-18
+ * 进程内共享的图层像素, 同时存在的多个 engine (预览和桌面, 桌面和锁屏) 加载同一张图时只解码一次
+ * <p>
+ * 使用中的条目按引用计数保留, 引用全部释放后按 LRU 保留到超出大小限制. 同一个 key 同时只有一个线程加载,
+ * 其他线程等待加载结果. 线程安全
+ */
+public final class DecodedImageCache {
+
+    public static final long DEFAULT_MAX_BYTES = 64L << 20;
+
+    /**
+     * 缓存未命中时加载像素, 在调用 acquire 的线程执行
+     */
+    public interface Loader {
+
+        /**
+         * @return 不能共享时 (例如行有填充, 只有 Bitmap) 返回 null
+         */
+        TextureData load();
+    }
+
+    private static final class Entry {
+        final String key;
+        final TextureData data;
+        final long bytes;
+        int refCount;
+
+        Entry(String key, TextureData data) {
+            this.key = key;
+            this.data = data;
+            bytes = data.pixels.capacity();
+        }
+    }
+
+    /**
+     * 对一个条目的引用, 不再使用时调用 release
+     */
+    public final class Handle {
+        private Entry mEntry;
+
+        private Handle(Entry entry) {
+            mEntry = entry;
+        }
+
+        /**
+         * 像素只读, 使用时 duplicate
+         */
+        public TextureData getData() {
+            Entry entry = mEntry;
+            if (entry == null) {
+                throw new IllegalStateException("handle released");
+            }
+            return entry.data;
+        }
+
+        /**
+         * 重复调用没有影响
+         */
+        public void release() {
+            DecodedImageCache.this.release(this);
+        }
+    }
+
+    private final long mMaxBytes;
+    // accessOrder, 最久没有使用的在前面
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CountDownLatch> mLoading = new HashMap<>();
+    private long mBytes;
+
+    private long mHitCount;
+    private long mMissCount;
+    private long mWaitCount;
+    private long mEvictionCount;
+
+    public DecodedImageCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param maxBytes 没有引用的条目超过这个大小时淘汰. 使用中的条目不会被淘汰, 总大小可能超出
+     */
+    public DecodedImageCache(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes " + maxBytes);
+        }
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * 取出 key 对应的像素, 没有时调用 loader 加载. 其他线程正在加载同一个 key 时等待其结果
+     *
+     * @return loader 返回 null 或者等待被中断时返回 null, 此时调用方自行加载, 不共享
+     */
+    public Handle acquire(String key, Loader loader) {
+        CountDownLatch latch;
+        boolean waited = false;
+        while (true) {
+            synchronized (this) {
+                Entry entry = mEntries.get(key);
+                if (entry != null) {
+                    entry.refCount++;
+                    if (!waited) {
+                        mHitCount++;
+                    }
+                    return new Handle(entry);
+                }
+                if (waited) {
+                    // 等待的加载没有结果, 不再重复加载
+                    return null;
+                }
+                latch = mLoading.get(key);
+                if (latch == null) {
+                    mMissCount++;
+                    latch = new CountDownLatch(1);
+                    mLoading.put(key, latch);
+                    break;
+                }
+                mWaitCount++;
+            }
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            waited = true;
+        }
+
+        TextureData data = null;
+        Handle handle = null;
+        try {
+            data = loader.load();
+        } finally {
+            // loader 抛出异常时也要唤醒等待的线程
+            synchronized (this) {
+                mLoading.remove(key);
+                latch.countDown();
+                if (data != null) {
+                    Entry entry = new Entry(key, data);
+                    entry.refCount = 1;
+                    mEntries.put(key, entry);
+                    mBytes += entry.bytes;
+                    trim();
+                    handle = new Handle(entry);
+                }
+            }
+        }
+        return handle;
+    }
+
+    private synchronized void release(Handle handle) {
+        Entry entry = handle.mEntry;
+        if (entry == null) {
+            return;
+        }
+        handle.mEntry = null;
+        entry.refCount--;
+        if (entry.refCount == 0) {
+            trim();
+        }
+    }
+
+    // 从最久没有使用的开始, 淘汰没有引用的条目
+    private void trim() {
+        Iterator<Entry> iterator = mEntries.values().iterator();
+        while (mBytes > mMaxBytes && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.refCount > 0) {
+                continue;
+            }
+            iterator.remove();
+            mBytes -= entry.bytes;
+            mEvictionCount++;
+        }
+    }
+
+    /**
+     * 淘汰所有没有引用的条目, 例如内存紧张时
+     */
+    public synchronized void trimUnused() {
+        Iterator<Entry> iterator = mEntries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.refCount == 0) {
+                iterator.remove();
+                mBytes -= entry.bytes;
+                mEvictionCount++;
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    public synchronized long getBytes() {
+        return mBytes;
+    }
+
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * 等待其他线程加载同一个 key 的次数, 这些请求也没有重复解码
+     */
+    public synchronized long getWaitCount() {
+        return mWaitCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "DecodedImageCache{entries=" + mEntries.size() + " bytes=" + mBytes + "/" + mMaxBytes
+                + " hit=" + mHitCount + " miss=" + mMissCount + " wait=" + mWaitCount
+                + " evict=" + mEvictionCount + "}";
+    }
+}
@@ -88,6 +88,16 @@ class EglHelper {
             if (mEnableLog) {
                 Log.w("EglHelper", "createContext " + mEglContext + " tid=" + Thread.currentThread().getId());
             }
+            /*
+             * Objects created on this thread from now on belong to the share group of the
+             * new context. A context that shares nothing gets no registry and creates its
+             * objects directly.
+             */
+            if (mEGLContextFactory instanceof SharedContextFactory) {
+                GLResourceRegistry.bind(((SharedContextFactory) mEGLContextFactory).getRegistry(mEglContext));
+            } else {
+                GLResourceRegistry.bind(null);
+            }
         }
 
         mEglSurface = null;
@@ -201,6 +211,25 @@ class EglHelper {
             Log.w("EglHelper", "finish() tid=" + Thread.currentThread().getId());
         }
         if (mEglContext != null) {
+            /*
+             * Drop the references this thread holds. Objects still used by other contexts of
+             * the share group stay alive, the rest are deleted here while the context can
+             * still be made current. Only if that fails are they left to the next thread of
+             * the group.
+             */
+            GLResourceRegistry registry = GLResourceRegistry.current();
+            if (registry != null) {
+                EGLSurface surface = makeContextCurrent();
+                registry.releaseThread(Thread.currentThread(), surface != null);
+                if (surface != null) {
+                    mEgl.eglMakeCurrent(mEglDisplay, EGL10.EGL_NO_SURFACE,
+                            EGL10.EGL_NO_SURFACE, EGL10.EGL_NO_CONTEXT);
+                    if (surface != EGL10.EGL_NO_SURFACE) {
+                        mEgl.eglDestroySurface(mEglDisplay, surface);
+                    }
+                }
+                GLResourceRegistry.bind(null);
+            }
             mEGLContextFactory.destroyContext(mEgl, mEglDisplay, mEglContext);
             mEglContext = null;
         }
@@ -210,6 +239,35 @@ class EglHelper {
         }
     }
 
+    /**
+     * Make the context current after its window surface is gone, on a 1x1 pbuffer or,
+     * if the config has no pbuffer support, without a surface.
+     *
+     * @return the surface the context is current on, EGL_NO_SURFACE when it is current
+     * without one, or null if the context could not be made current.
+     */
+    private EGLSurface makeContextCurrent() {
+        if (mEglSurface != null && mEglSurface != EGL10.EGL_NO_SURFACE) {
+            destroySurfaceImp();
+        }
+        int[] attribs = {EGL10.EGL_WIDTH, 1, EGL10.EGL_HEIGHT, 1, EGL10.EGL_NONE};
+        EGLSurface surface = mEgl.eglCreatePbufferSurface(mEglDisplay, mEglConfig, attribs);
+        if (surface != null && surface != EGL10.EGL_NO_SURFACE) {
+            if (mEgl.eglMakeCurrent(mEglDisplay, surface, surface, mEglContext)) {
+                return surface;
+            }
+            mEgl.eglDestroySurface(mEglDisplay, surface);
+        }
+        /*
+         * EGL_KHR_surfaceless_context, available on most devices.
+         */
+        if (mEgl.eglMakeCurrent(mEglDisplay, EGL10.EGL_NO_SURFACE, EGL10.EGL_NO_SURFACE, mEglContext)) {
+            return EGL10.EGL_NO_SURFACE;
+        }
+        logEglErrorAsWarning("EglHelper", "eglMakeCurrent before destroyContext", mEgl.eglGetError());
+        return null;
+    }
+
     public static void throwEglException(String function, int error) {
         String message = formatEglError(function, error);
         if (mEnableLog) {
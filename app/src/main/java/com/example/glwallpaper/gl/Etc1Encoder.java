@@ -0,0 +1,267 @@
+package com.example.glwallpaper.gl;
+
+import java.nio.ByteBuffer;
+
+/**
+ * On 2026-10-18
+ * 纯 java 的 ETC1 编码器, 只用于不透明图层
+ * <p>
+ * 每个 4x4 的 block 编码为 64 bit (大端), 分别尝试横竖两种子块划分, 以及 individual /
+ * differential 两种基色模式, 取误差最小的一种. ETC1 的码流同时也是合法的 ETC2 RGB8 码流.
+ */
+public final class Etc1Encoder {
+
+    public static final int BLOCK_SIZE = 4;
+    public static final int BYTES_PER_BLOCK = 8;
+
+    // 亮度修正表, 每个像素的取值为 {+a, +b, -a, -b} 之一
+    static final int[][] MODIFIERS = {
+            {2, 8},
+            {5, 17},
+            {9, 29},
+            {13, 42},
+            {18, 60},
+            {24, 80},
+            {33, 106},
+            {47, 183},
+    };
+
+    // 每种划分下两个子块各自包含的像素, [flip][sub][8]
+    private static final int[][][] SUB_BLOCKS = new int[2][2][8];
+
+    static {
+        for (int flip = 0; flip <= 1; flip++) {
+            int[] count = new int[2];
+            for (int i = 0; i < 16; i++) {
+                int x = i >> 2;
+                int y = i & 3;
+                int sub = flip == 0 ? x >> 1 : y >> 1;
+                SUB_BLOCKS[flip][sub][count[sub]++] = i;
+            }
+        }
+    }
+
+    // 按 ETC1 的像素顺序 (列优先, index = x * 4 + y) 存放 r, g, b
+    private final int[] mPixels = new int[16 * 3];
+
+    private final int[] mSubIndices = new int[16];
+    private final int[] mCandidateIndices = new int[16];
+    private final int[] mAverage = new int[6];
+
+    private int mSubTable;
+    // encodeSubBlocks 选出的两个子块的修正表
+    private int mTable1;
+    private int mTable2;
+
+    public static int paddedSize(int size) {
+        return (size + BLOCK_SIZE - 1) & ~(BLOCK_SIZE - 1);
+    }
+
+    public static int encodedSize(int width, int height) {
+        return (paddedSize(width) / BLOCK_SIZE) * (paddedSize(height) / BLOCK_SIZE) * BYTES_PER_BLOCK;
+    }
+
+    /**
+     * 编码整张图
+     *
+     * @param argb 行优先的 ARGB 像素, 透明度被忽略
+     */
+    public void encode(int[] argb, int width, int height, ByteBuffer out) {
+        for (int y = 0; y < height; y += BLOCK_SIZE) {
+            encodeRow(argb, y * width, width, width, Math.min(BLOCK_SIZE, height - y), out);
+        }
+    }
+
+    /**
+     * 编码一行 block, 即连续的 4 行像素. 宽高不是 4 的倍数时, 重复最后一列/行补齐
+     *
+     * @param argb   像素
+     * @param offset 第一行的起始下标
+     * @param stride 行跨度
+     * @param width  图片宽度
+     * @param rows   有效行数, 1 - 4
+     * @param out    依次写入 paddedSize(width) / 4 个 block
+     */
+    public void encodeRow(int[] argb, int offset, int stride, int width, int rows, ByteBuffer out) {
+        if (rows < 1 || rows > BLOCK_SIZE) {
+            throw new IllegalArgumentException("rows " + rows);
+        }
+        for (int bx = 0; bx < width; bx += BLOCK_SIZE) {
+            for (int x = 0; x < BLOCK_SIZE; x++) {
+                int px = Math.min(bx + x, width - 1);
+                for (int y = 0; y < BLOCK_SIZE; y++) {
+                    int py = Math.min(y, rows - 1);
+                    int pixel = argb[offset + py * stride + px];
+                    int i = (x * 4 + y) * 3;
+                    mPixels[i] = (pixel >> 16) & 0xff;
+                    mPixels[i + 1] = (pixel >> 8) & 0xff;
+                    mPixels[i + 2] = pixel & 0xff;
+                }
+            }
+            out.putLong(encodeBlock());
+        }
+    }
+
+    private long encodeBlock() {
+        long best = 0;
+        long bestError = Long.MAX_VALUE;
+
+        for (int flip = 0; flip <= 1; flip++) {
+            average(flip);
+            int[] avg = mAverage;
+
+            // differential: 5 bit 基色 + 3 bit 有符号差值
+            int r1 = quantize(avg[0], 31);
+            int g1 = quantize(avg[1], 31);
+            int b1 = quantize(avg[2], 31);
+            int dr = quantize(avg[3], 31) - r1;
+            int dg = quantize(avg[4], 31) - g1;
+            int db = quantize(avg[5], 31) - b1;
+            // 两个子块颜色接近时 differential 的精度更高, 不再尝试 individual
+            if (dr >= -4 && dr <= 3 && dg >= -4 && dg <= 3 && db >= -4 && db <= 3) {
+                long error = encodeSubBlocks(flip,
+                        expand5(r1), expand5(g1), expand5(b1),
+                        expand5(r1 + dr), expand5(g1 + dg), expand5(b1 + db));
+                if (error < bestError) {
+                    bestError = error;
+                    long high = ((long) r1 << 27) | ((dr & 7) << 24)
+                            | (g1 << 19) | ((dg & 7) << 16)
+                            | (b1 << 11) | ((db & 7) << 8)
+                            | (1 << 1);
+                    best = pack(high, flip);
+                }
+                continue;
+            }
+
+            // individual: 两个 4 bit 基色
+            int ir1 = quantize(avg[0], 15);
+            int ig1 = quantize(avg[1], 15);
+            int ib1 = quantize(avg[2], 15);
+            int ir2 = quantize(avg[3], 15);
+            int ig2 = quantize(avg[4], 15);
+            int ib2 = quantize(avg[5], 15);
+            long error = encodeSubBlocks(flip,
+                    ir1 * 17, ig1 * 17, ib1 * 17,
+                    ir2 * 17, ig2 * 17, ib2 * 17);
+            if (error < bestError) {
+                bestError = error;
+                long high = ((long) ir1 << 28) | (ir2 << 24)
+                        | (ig1 << 20) | (ig2 << 16)
+                        | (ib1 << 12) | (ib2 << 8);
+                best = pack(high, flip);
+            }
+        }
+        return best;
+    }
+
+    private long pack(long high, int flip) {
+        high |= ((long) mTable1 << 5) | (mTable2 << 2) | flip;
+        long low = 0;
+        for (int i = 0; i < 16; i++) {
+            int index = mCandidateIndices[i];
+            low |= (long) (index >> 1) << (16 + i);
+            low |= (long) (index & 1) << i;
+        }
+        return (high << 32) | (low & 0xffffffffL);
+    }
+
+    private long encodeSubBlocks(int flip, int r1, int g1, int b1, int r2, int g2, int b2) {
+        long error = encodeSubBlock(flip, 0, r1, g1, b1);
+        mTable1 = mSubTable;
+        error += encodeSubBlock(flip, 1, r2, g2, b2);
+        mTable2 = mSubTable;
+        return error;
+    }
+
+    // 为子块选择误差最小的修正表, 结果写入 mCandidateIndices 和 mSubTable
+    private long encodeSubBlock(int flip, int sub, int br, int bg, int bb) {
+        int[] members = SUB_BLOCKS[flip][sub];
+        int[] pixels = mPixels;
+        long bestError = Long.MAX_VALUE;
+        int bestTable = 0;
+        for (int t = 0; t < MODIFIERS.length; t++) {
+            int a = MODIFIERS[t][0];
+            int b = MODIFIERS[t][1];
+            long error = 0;
+            for (int k = 0; k < members.length && error < bestError; k++) {
+                int i = members[k];
+                int pr = pixels[i * 3];
+                int pg = pixels[i * 3 + 1];
+                int pb = pixels[i * 3 + 2];
+
+                // 修正值对三个通道相同, 先按差值的符号选出正负, 再比较大小两个候选
+                int d = (pr - br) + (pg - bg) + (pb - bb);
+                int small = d >= 0 ? 0 : 2;
+                int m = d >= 0 ? a : -a;
+                int e1 = pixelError(pr, pg, pb, br, bg, bb, m);
+                int e2 = pixelError(pr, pg, pb, br, bg, bb, d >= 0 ? b : -b);
+                if (e2 < e1) {
+                    mSubIndices[i] = small + 1;
+                    error += e2;
+                } else {
+                    mSubIndices[i] = small;
+                    error += e1;
+                }
+            }
+            if (error < bestError) {
+                bestError = error;
+                bestTable = t;
+                for (int i : members) {
+                    mCandidateIndices[i] = mSubIndices[i];
+                }
+            }
+        }
+        mSubTable = bestTable;
+        return bestError;
+    }
+
+    static int modifier(int index, int a, int b) {
+        switch (index) {
+            case 0:
+                return a;
+            case 1:
+                return b;
+            case 2:
+                return -a;
+            default:
+                return -b;
+        }
+    }
+
+    private static int pixelError(int pr, int pg, int pb, int br, int bg, int bb, int m) {
+        int dr = clamp(br + m) - pr;
+        int dg = clamp(bg + m) - pg;
+        int db = clamp(bb + m) - pb;
+        return dr * dr + dg * dg + db * db;
+    }
+
+    private void average(int flip) {
+        int[] sum = mAverage;
+        for (int i = 0; i < sum.length; i++) {
+            sum[i] = 0;
+        }
+        for (int sub = 0; sub <= 1; sub++) {
+            int base = sub * 3;
+            for (int i : SUB_BLOCKS[flip][sub]) {
+                sum[base] += mPixels[i * 3];
+                sum[base + 1] += mPixels[i * 3 + 1];
+                sum[base + 2] += mPixels[i * 3 + 2];
+            }
+        }
+        for (int i = 0; i < sum.length; i++) {
+            sum[i] = (sum[i] + 4) / 8;
+        }
+    }
+
+    private static int quantize(int value, int max) {
+        return (value * max + 127) / 255;
+    }
+
+    static int expand5(int value) {
+        return (value << 3) | (value >> 2);
+    }
+
+    static int clamp(int value) {
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+}
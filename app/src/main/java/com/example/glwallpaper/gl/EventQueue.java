@@ -0,0 +1,144 @@
+package com.example.glwallpaper.gl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * On 2026-10-18
+ * GLThread 的事件队列, 多个线程入队, 只有 GL 线程出队, 不需要加锁
+ * <p>
+ * 链表实现, tail 通过 getAndSet 追加, head 只有消费线程访问. 只有队列由空变为非空时
+ * 入队的线程才需要唤醒 GL 线程, 其他时候 GL 线程在等待之前一定会看到这些事件.
+ * 每一批事件在画下一帧之前按时间预算一起执行, 同时统计队列长度和入队到执行的延迟.
+ * 延迟只由消费线程写入 LatencyHistogram, dumpsys 等其他线程直接读取, 也不加锁
+ */
+public final class EventQueue {
+
+    private static final class Node {
+        Runnable event;
+        long enqueueTime;
+        volatile Node next;
+    }
+
+    // 消费线程访问, 始终指向已经出队的节点
+    private Node mHead;
+    private final AtomicReference<Node> mTail;
+    // 入队时先加, 可能比链表中能看到的节点多, 这时出队自旋等待链接完成
+    private final AtomicInteger mSize = new AtomicInteger();
+    private final AtomicInteger mMaxDepth = new AtomicInteger();
+
+    // 入队到开始执行的延迟, 只在消费线程写入
+    private final LatencyHistogram mLatency = new LatencyHistogram();
+    private long mRunCount;
+    private long mBatchCount;
+
+    public EventQueue() {
+        mHead = new Node();
+        mTail = new AtomicReference<>(mHead);
+    }
+
+    /**
+     * 可以在任意线程调用
+     *
+     * @return 入队前队列为空, 调用方需要唤醒消费线程
+     */
+    public boolean offer(Runnable event) {
+        if (event == null) {
+            throw new IllegalArgumentException("event must not be null");
+        }
+        Node node = new Node();
+        node.event = event;
+        node.enqueueTime = System.nanoTime();
+        int previous = mSize.getAndIncrement();
+        updateMaxDepth(previous + 1);
+        Node prev = mTail.getAndSet(node);
+        prev.next = node;
+        return previous == 0;
+    }
+
+    private void updateMaxDepth(int depth) {
+        int max;
+        while (depth > (max = mMaxDepth.get())) {
+            if (mMaxDepth.compareAndSet(max, depth)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 只能在消费线程调用
+     *
+     * @return 队列为空时返回 null
+     */
+    public Runnable poll() {
+        if (mSize.get() == 0) {
+            return null;
+        }
+        Node next;
+        // 入队的线程已经计数, 还没有链接到 prev.next
+        while ((next = mHead.next) == null) {
+            Thread.yield();
+        }
+        mHead = next;
+        Runnable event = next.event;
+        next.event = null;
+        mSize.decrementAndGet();
+        mLatency.record(System.nanoTime() - next.enqueueTime);
+        return event;
+    }
+
+    /**
+     * 按顺序执行队列中的事件, 总耗时超出预算后停止, 剩下的留到下一批. 只能在消费线程调用
+     *
+     * @param budgetNanos 至少执行一个事件
+     * @return 执行的事件数
+     */
+    public int drain(long budgetNanos) {
+        long start = System.nanoTime();
+        int count = 0;
+        Runnable event;
+        while ((event = poll()) != null) {
+            event.run();
+            count++;
+            if (System.nanoTime() - start >= budgetNanos) {
+                break;
+            }
+        }
+        if (count > 0) {
+            mRunCount += count;
+            mBatchCount++;
+        }
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return mSize.get() == 0;
+    }
+
+    /**
+     * 当前队列长度
+     */
+    public int size() {
+        return mSize.get();
+    }
+
+    public int getMaxDepth() {
+        return mMaxDepth.get();
+    }
+
+    /**
+     * 入队到开始执行的延迟分位数, 精度见 LatencyHistogram. 可以在任意线程调用
+     *
+     * @param percent 0 - 100
+     */
+    public long getLatencyPercentile(float percent) {
+        return mLatency.percentile(percent);
+    }
+
+    @Override
+    public String toString() {
+        // mRunCount 和 mBatchCount 在消费线程写入, 这里只用于日志
+        return "EventQueue{size=" + mSize.get() + " maxDepth=" + mMaxDepth.get()
+                + " run=" + mRunCount + " batches=" + mBatchCount + " latency " + mLatency.summary() + "}";
+    }
+}
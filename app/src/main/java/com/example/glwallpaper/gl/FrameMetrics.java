@@ -0,0 +1,108 @@
+package com.example.glwallpaper.gl;
+
+import java.io.PrintWriter;
+
+/**
+ * On 2026-10-18
+ * GL 线程的帧耗时和生命周期统计, 记录不分配内存, release 版本也可以通过 dumpsys 查看
+ * <p>
+ * draw 是 onDrawFrame 的耗时, swap 是 eglSwapBuffers 的耗时, wakeToDraw 是请求绘制到开始
+ * onDrawFrame 的延迟, RENDERMODE_VSYNC 时即 vsync 到开始绘制. 耗时在 GL 线程记录,
+ * 计数在持有 GLThread 锁时更新, dump 可以在任意线程调用
+ */
+public final class FrameMetrics {
+
+    private final LatencyHistogram mDraw = new LatencyHistogram();
+    private final LatencyHistogram mSwap = new LatencyHistogram();
+    private final LatencyHistogram mWakeToDraw = new LatencyHistogram();
+
+    private volatile long mSurfaceCreations;
+    private volatile long mContextCreations;
+    private volatile long mContextLosses;
+    private volatile long mSwapFailures;
+    private volatile long mCoalescedRequests;
+
+    public LatencyHistogram getDraw() {
+        return mDraw;
+    }
+
+    public LatencyHistogram getSwap() {
+        return mSwap;
+    }
+
+    public LatencyHistogram getWakeToDraw() {
+        return mWakeToDraw;
+    }
+
+    void onSurfaceCreated() {
+        mSurfaceCreations++;
+    }
+
+    void onContextCreated() {
+        mContextCreations++;
+    }
+
+    void onContextLost() {
+        mContextLosses++;
+    }
+
+    void onSwapFailed() {
+        mSwapFailures++;
+    }
+
+    /**
+     * 请求绘制时上一次请求还没有画, 两次请求只画一帧
+     */
+    void onRequestCoalesced() {
+        mCoalescedRequests++;
+    }
+
+    /**
+     * EGL surface 创建的次数, 超过 1 的部分是重新创建, 例如尺寸变化或者暂停后恢复
+     */
+    public long getSurfaceCreations() {
+        return mSurfaceCreations;
+    }
+
+    public long getContextCreations() {
+        return mContextCreations;
+    }
+
+    public long getContextLosses() {
+        return mContextLosses;
+    }
+
+    /**
+     * eglSwapBuffers 失败, 这一帧没有显示出来
+     */
+    public long getSwapFailures() {
+        return mSwapFailures;
+    }
+
+    public long getCoalescedRequests() {
+        return mCoalescedRequests;
+    }
+
+    public void dump(String prefix, PrintWriter out) {
+        out.print(prefix);
+        out.print("draw: ");
+        out.println(mDraw.summary());
+        out.print(prefix);
+        out.print("swap: ");
+        out.println(mSwap.summary());
+        out.print(prefix);
+        out.print("wakeToDraw: ");
+        out.println(mWakeToDraw.summary());
+        out.print(prefix);
+        out.print("surfaces=");
+        out.print(mSurfaceCreations);
+        out.print(" contexts=");
+        out.print(mContextCreations);
+        out.print(" contextLost=");
+        out.print(mContextLosses);
+        out.print(" swapFailed=");
+        out.print(mSwapFailures);
+        out.print(" coalesced=");
+        out.println(mCoalescedRequests);
+    }
+}
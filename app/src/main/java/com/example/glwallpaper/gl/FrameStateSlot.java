@@ -0,0 +1,131 @@
+package com.example.glwallpaper.gl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * On 2026-10-18
+ * 从其他线程传给 GL 线程的一组 float, 只保留最新的值. 例如传感器线程更新的位移
+ * <p>
+ * 三个缓冲区: 生产线程写 back, GL 线程读 front, 中间的一个保存最新发布的值. 发布和取出都是一次
+ * getAndSet 交换下标, 不加锁, 不分配内存, GL 线程读到的一定是同一次发布的完整数据.
+ * 只有从已读取变为有新值时 publish 返回 true, 两帧之间的多次更新只需要请求一次绘制.
+ * 只支持一个生产线程和一个消费线程
+ */
+public final class FrameStateSlot {
+
+    // mState 的低两位是中间缓冲区的下标, DIRTY 表示有消费线程还没取出的值
+    private static final int INDEX_MASK = 3;
+    private static final int DIRTY = 4;
+
+    private final float[][] mBuffers = new float[3][];
+    private final long[] mTimestamps = new long[3];
+    private final AtomicInteger mState = new AtomicInteger(1);
+    // 只在生产线程访问
+    private int mBack = 0;
+    // 只在消费线程访问
+    private int mFront = 2;
+
+    private volatile long mPublishCount;
+    private volatile long mDirtyCount;
+    private volatile long mUpdateCount;
+
+    public FrameStateSlot(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size " + size);
+        }
+        for (int i = 0; i < mBuffers.length; i++) {
+            mBuffers[i] = new float[size];
+        }
+    }
+
+    /**
+     * 生产线程写入的缓冲区, 内容是之前的某一次发布, 需要写入所有的值后调用 publish
+     */
+    public float[] edit() {
+        return mBuffers[mBack];
+    }
+
+    /**
+     * 发布 edit 中写入的值, 覆盖还没被取出的值
+     *
+     * @return 之前的值已经被取出, 调用方需要唤醒消费线程. 否则消费线程之后一定会看到这次的值
+     */
+    public boolean publish() {
+        return publish(0);
+    }
+
+    /**
+     * 与 publish 相同, 同时记录这组值对应的时间, 例如传感器的时间戳
+     */
+    public boolean publish(long timestamp) {
+        mTimestamps[mBack] = timestamp;
+        int old = mState.getAndSet(mBack | DIRTY);
+        mBack = old & INDEX_MASK;
+        mPublishCount++;
+        if ((old & DIRTY) == 0) {
+            mDirtyCount++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 在消费线程调用, 例如每帧开始时. 有新值时切换到最新的值
+     *
+     * @return 是否有新的值
+     */
+    public boolean update() {
+        if ((mState.get() & DIRTY) == 0) {
+            return false;
+        }
+        int old = mState.getAndSet(mFront);
+        mFront = old & INDEX_MASK;
+        mUpdateCount++;
+        return true;
+    }
+
+    /**
+     * 消费线程最近一次 update 取出的值
+     */
+    public float get(int index) {
+        return mBuffers[mFront][index];
+    }
+
+    /**
+     * 消费线程最近一次 update 取出的值发布时的时间
+     */
+    public long getTimestamp() {
+        return mTimestamps[mFront];
+    }
+
+    public int size() {
+        return mBuffers[0].length;
+    }
+
+    /**
+     * publish 的次数
+     */
+    public long getPublishCount() {
+        return mPublishCount;
+    }
+
+    /**
+     * 从已读取变为有新值的次数, 即需要唤醒消费线程的次数
+     */
+    public long getDirtyCount() {
+        return mDirtyCount;
+    }
+
+    /**
+     * 消费线程取出新值的次数
+     */
+    public long getUpdateCount() {
+        return mUpdateCount;
+    }
+
+    @Override
+    public String toString() {
+        return "FrameStateSlot{published=" + mPublishCount + " wakeups=" + mDirtyCount
+                + " updates=" + mUpdateCount + "}";
+    }
+}
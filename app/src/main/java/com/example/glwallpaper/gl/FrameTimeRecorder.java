@@ -0,0 +1,74 @@
+package com.example.glwallpaper.gl;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * On 2026-10-18
+ * 记录一段时间内每帧的耗时, 用于统计分位数. 超出容量后只保留最近的记录
+ */
+public final class FrameTimeRecorder {
+
+    private final long[] mFrames;
+    private final long[] mSorted;
+    private int mCount;
+    private int mNext;
+
+    public FrameTimeRecorder(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity " + capacity);
+        }
+        mFrames = new long[capacity];
+        mSorted = new long[capacity];
+    }
+
+    public void record(long nanos) {
+        mFrames[mNext] = nanos;
+        mNext = (mNext + 1) % mFrames.length;
+        if (mCount < mFrames.length) {
+            mCount++;
+        }
+    }
+
+    public int count() {
+        return mCount;
+    }
+
+    public void reset() {
+        mCount = 0;
+        mNext = 0;
+    }
+
+    /**
+     * @param percent 0 - 100
+     * @return 没有记录时返回 0
+     */
+    public long percentile(float percent) {
+        if (mCount == 0) {
+            return 0;
+        }
+        System.arraycopy(mFrames, 0, mSorted, 0, mCount);
+        Arrays.sort(mSorted, 0, mCount);
+        int index = (int) Math.ceil(percent / 100f * mCount) - 1;
+        return mSorted[Math.max(0, Math.min(mCount - 1, index))];
+    }
+
+    public long max() {
+        return percentile(100);
+    }
+
+    /**
+     * p50 / p90 / p99 / max, 单位 ms
+     */
+    public String summary() {
+        return "frames=" + mCount
+                + " p50=" + toMs(percentile(50))
+                + " p90=" + toMs(percentile(90))
+                + " p99=" + toMs(percentile(99))
+                + " max=" + toMs(max());
+    }
+
+    private static String toMs(long nanos) {
+        return String.format(Locale.US, "%.1fms", nanos / 1e6);
+    }
+}
@@ -2,12 +2,16 @@ package com.example.glwallpaper.gl;
 
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
-import android.graphics.Matrix;
 import android.opengl.GLES20;
+import android.os.SystemClock;
 import android.renderscript.Matrix4f;
+import android.util.Log;
 
+import androidx.annotation.IntDef;
 import androidx.exifinterface.media.ExifInterface;
 
+import java.io.File;
+import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 
 /**
@@ -15,6 +19,8 @@ import java.nio.FloatBuffer;
  */
 public class GLBitmap {
 
+    private static final String TAG = "GLBitmap";
+
     private static final String sVertexShader = "" +
             "attribute vec4 position;\n" +
             "attribute vec2 texCoords;\n" +
@@ -49,6 +55,7 @@ public class GLBitmap {
     // 纹理坐标 范围 [0, 0] - [1, 1]
     // 纹理坐标，定义 纹理应该如何映射到 顶点坐标所描述的三角形上
     // 上下颠倒 是因为 open gl 的坐标与 android 的坐标系 y 轴相反，所以要反过来映射
+    // 这是 exif 方向为 NORMAL 时的坐标, 其他方向见 TextureOrientation
     private static final float[] TEXTURES = {
             0f, 1f, // 左上
             1f, 1f, // 右上
@@ -56,37 +63,232 @@ public class GLBitmap {
             1f, 0f, // 右下
     };
 
-    private static int mProgram;
-    private static int mAttribPosition;
-    private static int mAttribTexCoords;
-    private static int mUniformTexture;
-    private static int mUniformProjection;
+    // 分块时每块的边长, 不超过 GL_MAX_TEXTURE_SIZE
+    private static final int TILE_SIZE = 1024;
+
+    private static final String PROGRAM_KEY = "GLBitmap.program";
+
+    private static final class Program {
+        final int id;
+        final int attribPosition;
+        final int attribTexCoords;
+        final int uniformTexture;
+        final int uniformProjection;
+
+        Program(int id) {
+            this.id = id;
+            attribPosition = GLES20.glGetAttribLocation(id, "position");
+            attribTexCoords = GLES20.glGetAttribLocation(id, "texCoords");
+            uniformTexture = GLES20.glGetUniformLocation(id, "texture");
+            uniformProjection = GLES20.glGetUniformLocation(id, "projection");
+        }
+    }
+
+    // 每个 GL 线程一份, 共享 context 时 program 在 share group 中只有一个
+    private static final ThreadLocal<Program> sProgram = new ThreadLocal<>();
+
+    /**
+     * 常驻内存, bitmap 一直保留到 release
+     */
+    public static final int RESIDENCY_KEEP = 0;
+    /**
+     * 上传纹理后立即释放 bitmap, context 丢失后从 path 重新解码
+     */
+    public static final int RESIDENCY_DROP_AFTER_UPLOAD = 1;
 
-    private final Bitmap mBitmap;
+    @IntDef({RESIDENCY_KEEP, RESIDENCY_DROP_AFTER_UPLOAD})
+    public @interface Residency {
+    }
+
+    /**
+     * 不生成 mipmap
+     */
+    public static final int MIPMAP_NONE = 0;
+    /**
+     * 纹理比屏幕上绘制的尺寸大很多时生成 mipmap, 见 MipmapPolicy
+     */
+    public static final int MIPMAP_AUTO = 1;
+
+    @IntDef({MIPMAP_NONE, MIPMAP_AUTO})
+    public @interface MipmapMode {
+    }
+
+    private final String mPath;
+    private final int mSurfaceWidth;
+    private final int mSurfaceHeight;
+
+    // 不为 null 时, 加载结果写入磁盘缓存, 不透明图层转码为压缩纹理
+    private TextureCache mCache;
+    private String mCacheKey;
+    // 不为 null 时, 与其他 engine 共享解码后的像素, mShared 为 mTextureData 的引用
+    private DecodedImageCache mSharedCache;
+    private DecodedImageCache.Handle mShared;
+
+    private Bitmap mBitmap;
+    // 缓存中的纹理数据 (压缩纹理或者原始像素), 与 mBitmap 最多只有一个不为 null
+    private TextureData mTextureData;
+    private TextureFormat mFormat = TextureFormat.RGBA_8888;
+    private int mOrientation = TextureOrientation.NORMAL;
+    // 纹理尺寸, 与解码出来的 bitmap 一致 (未按 exif 旋转)
+    private int mTextureWidth;
+    private int mTextureHeight;
+    // 显示尺寸
+    private int mImageWidth;
+    private int mImageHeight;
+    private int mResidency = RESIDENCY_KEEP;
+    private int mMipmapMode = MIPMAP_AUTO;
+    // 重新加载失败 (原图被删除或者内存不足), 不再上传, 直到下一次 context 丢失
+    private boolean mLoadFailed;
 
     private final FloatBuffer mVertexBuffer;
     private final FloatBuffer mTextureBuffer;
     private final float[] mMatrix;
+    // 本次 draw 使用的 program
+    private Program mProgram;
 
+    // 分块时 mTextureId 为 0, 块的纹理由 mTiles 管理
     private int mTextureId = -1;
+    // 分条上传时已经上传的行数, mUploading 为 true 时纹理还不完整
+    private int mUploadedRows;
+    private boolean mUploading;
+    private UploadScheduler mScheduler;
+    private int mDrawWidth;
+    private int mDrawHeight;
+    private float mXScale;
+    private float mYScale;
     private final float mExtraScale;
 
-    public static GLBitmap create(String path, float extraScale) {
-        return new GLBitmap(path, extraScale);
+    // 按屏幕上的绘制尺寸是否需要 mipmap, 以及当前纹理的状态
+    private boolean mWantMipmap;
+    private boolean mMipmapped;
+    // 纹理的宽高都是 2 的幂次, GLES2 上才能生成 mipmap
+    private boolean mTexturePowerOfTwo;
+
+    // 超过 GL_MAX_TEXTURE_SIZE 时分块, 像素从 mTextureData 复制到 mTileBuffer 再上传
+    private TileGrid mTiles;
+    private ByteBuffer mTileBuffer;
+    // 分块和图集共用, 见 drawSubRect
+    private FloatBuffer mTileVertexBuffer;
+    private FloatBuffer mTileTextureBuffer;
+    private final float[] mTileVertices = new float[8];
+    private final float[] mTileTexCoords = new float[8];
+    private final float[] mTilePoints = new float[4];
+
+    // 合并进图集后不为 null, 纹理由页面管理, mTextureId 为页面的纹理
+    private TextureAtlas.Region mAtlasRegion;
+
+    // 纹理通过 GLResourceRegistry 与 share group 中的其他 context 共享时不为 null
+    private GLResourceRegistry mRegistry;
+    private String mTextureKey;
+    private String mContentKey;
+    // 纹理为了生成 mipmap 缩小到了 2 的幂次, 与原尺寸的纹理不能共享
+    private boolean mResized;
+    // 上传后才需要 mipmap, 但 GPU 不能为非 2 的幂次的纹理生成, 等预算允许时缩小到 2 的幂次重新上传
+    private boolean mReuploadPowerOfTwo;
+
+    /**
+     * @param surfaceWidth  解码参考的 surface 宽度, <= 0 时按原图解码
+     * @param surfaceHeight 解码参考的 surface 高度, <= 0 时按原图解码
+     */
+    public static GLBitmap create(String path, float extraScale, int surfaceWidth, int surfaceHeight) {
+        return new GLBitmap(path, extraScale, surfaceWidth, surfaceHeight, null, null);
+    }
+
+    /**
+     * 缓存未命中时会在当前线程解码并转码, 比较耗时, 不要在主线程和 GL 线程调用
+     *
+     * @param cache 纹理数据缓存
+     */
+    public static GLBitmap create(String path, float extraScale, int surfaceWidth, int surfaceHeight,
+                                  TextureCache cache) {
+        return new GLBitmap(path, extraScale, surfaceWidth, surfaceHeight, cache, null);
+    }
+
+    /**
+     * @param sharedCache 进程内共享的像素, 其他 engine 已经加载过同一张图时直接使用
+     */
+    public static GLBitmap create(String path, float extraScale, int surfaceWidth, int surfaceHeight,
+                                  TextureCache cache, DecodedImageCache sharedCache) {
+        return new GLBitmap(path, extraScale, surfaceWidth, surfaceHeight, cache, sharedCache);
     }
 
-    private GLBitmap(String path, float extraScale) {
+    private GLBitmap(String path, float extraScale, int surfaceWidth, int surfaceHeight,
+                     TextureCache cache, DecodedImageCache sharedCache) {
         if (extraScale > 0) {
             mExtraScale = extraScale;
         } else {
             mExtraScale = 0;
         }
+        mPath = path;
+        mSurfaceWidth = surfaceWidth;
+        mSurfaceHeight = surfaceHeight;
+        mCache = cache;
+        mSharedCache = sharedCache;
 
         mVertexBuffer = GLUtil.makeFloatBuffer(VERTICES);
         mTextureBuffer = GLUtil.makeFloatBuffer(TEXTURES);
         mMatrix = new Matrix4f().getArray();
 
-        int degree = 0;
+        load(true);
+    }
+
+    /**
+     * 加载结果写入 mBitmap 或者 mTextureData
+     *
+     * @param background 是否在工作线程加载. 工作线程上会转码并写入缓存, 非压缩的图层也提前复制出
+     *                   连续的像素, 便于分条上传. GL 线程上重新加载时不做这些
+     */
+    private void load(final boolean background) {
+        if (mSharedCache == null) {
+            loadSource(background);
+            return;
+        }
+        // 文件的修改时间和大小代表了内容, 包括 exif 方向
+        String key = TextureCache.key(new File(mPath), mSurfaceWidth, mSurfaceHeight, mExtraScale);
+        // 从共享缓存得到的图层也要记录磁盘缓存的 key, 否则清理缓存时会把它的缓存文件当作不再使用
+        if (mCache != null) {
+            mCacheKey = key;
+        }
+        final boolean[] loaded = new boolean[1];
+        DecodedImageCache.Handle handle = mSharedCache.acquire(key, new DecodedImageCache.Loader() {
+            @Override
+            public TextureData load() {
+                loaded[0] = true;
+                loadSource(background);
+                return mTextureData;
+            }
+        });
+        if (handle != null) {
+            mShared = handle;
+            if (!loaded[0]) {
+                TextureData data = handle.getData();
+                mTextureData = data;
+                setImage(data.format, data.width, data.height, data.orientation,
+                        data.storedWidth(), data.storedHeight());
+            }
+            return;
+        }
+        if (!loaded[0]) {
+            loadSource(background);
+        }
+    }
+
+    private void loadSource(boolean background) {
+        String path = mPath;
+        String key = null;
+        if (mCache != null) {
+            key = TextureCache.key(new File(path), mSurfaceWidth, mSurfaceHeight, mExtraScale);
+            mCacheKey = key;
+            // 命中时像素直接 mmap, 不经过 Bitmap
+            TextureData data = mCache.get(key);
+            if (data != null) {
+                mTextureData = data;
+                setImage(data.format, data.width, data.height, data.orientation,
+                        data.storedWidth(), data.storedHeight());
+                return;
+            }
+        }
+
         ExifInterface exif = null;
         try {
             exif = new ExifInterface(path);
@@ -94,116 +296,932 @@ public class GLBitmap {
             e.printStackTrace();
         }
 
+        int orientation = TextureOrientation.NORMAL;
         if (exif != null) {
-            int orientation = exif.getAttributeInt(
+            orientation = TextureOrientation.sanitize(exif.getAttributeInt(
                     ExifInterface.TAG_ORIENTATION,
-                    ExifInterface.ORIENTATION_NORMAL);
-            switch (orientation) {
-                case ExifInterface.ORIENTATION_ROTATE_90:
-                    degree = 90;
-                    break;
+                    ExifInterface.ORIENTATION_NORMAL));
+        }
+        boolean transposed = TextureOrientation.isTransposed(orientation);
 
-                case ExifInterface.ORIENTATION_ROTATE_180:
-                    degree = 180;
-                    break;
+        boolean transcode = background && key != null;
 
-                case ExifInterface.ORIENTATION_ROTATE_270:
-                    degree = 270;
-                    break;
-            }
-        }
+        // 方向 (包括镜像) 通过纹理坐标处理, 不再额外创建一张旋转后的 bitmap
+        // 转码时按 8888 解码, 避免 565 量化之后再压缩一次
+        Bitmap bitmap = decode(path, transposed,
+                mSurfaceWidth, mSurfaceHeight, mExtraScale, !transcode);
 
-        // todo 根据屏幕尺寸，做缩放处理，以免发生 oom
-        Bitmap bitmap = BitmapFactory.decodeFile(path);
+        if (bitmap == null) {
+            return;
+        }
 
-        if (degree != 0) {
-            Matrix matrix = new Matrix();
-            matrix.postRotate(degree);
-            Bitmap b = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(),
-                    bitmap.getHeight(), matrix, true);
+        TextureFormat format = selectFormat(bitmap);
+        // 需要分块的图不转码, 分块时从原始像素中复制
+        boolean tiled = Math.max(bitmap.getWidth(), bitmap.getHeight())
+                > GLCapabilities.knownMaxTextureSize();
+        if (transcode && !tiled && format == TextureFormat.RGB_565) {
+            long start = SystemClock.uptimeMillis();
+            TextureData data = encodeEtc1(bitmap, orientation);
             bitmap.recycle();
-            bitmap = b;
+            boolean saved = mCache.put(key, data);
+            Log.i(TAG, "transcode " + path + " cost " + (SystemClock.uptimeMillis() - start)
+                    + "ms cached=" + saved);
+            mTextureData = data;
+            setImage(data.format, data.width, data.height, orientation,
+                    data.storedWidth(), data.storedHeight());
+            return;
+        }
+
+        bitmap = convert(bitmap, format);
+        if (background || tiled) {
+            TextureData data = copyPixels(bitmap, format, orientation);
+            if (data != null) {
+                bitmap.recycle();
+                if (key != null && mCache.put(key, data)) {
+                    // 改用 mmap 的数据, 页面由文件支持, 内存紧张时可以回收
+                    TextureData mapped = mCache.get(key);
+                    if (mapped != null) {
+                        data = mapped;
+                    }
+                }
+                mTextureData = data;
+                setImage(format, data.width, data.height, orientation, data.width, data.height);
+                return;
+            }
         }
         mBitmap = bitmap;
+        setImage(format, bitmap.getWidth(), bitmap.getHeight(), orientation,
+                bitmap.getWidth(), bitmap.getHeight());
     }
 
-    public static void installProgram() {
+    /**
+     * @param width        解码尺寸, 未按 exif 旋转
+     * @param storedWidth  纹理的实际宽度, 压缩纹理补齐了 block, 超出 width 的部分不显示
+     * @param storedHeight 纹理的实际高度
+     */
+    private void setImage(TextureFormat format, int width, int height, int orientation,
+                          int storedWidth, int storedHeight) {
+        boolean transposed = TextureOrientation.isTransposed(orientation);
+        mFormat = format;
+        mOrientation = orientation;
+        mTextureWidth = width;
+        mTextureHeight = height;
+        // 显示尺寸, 交换宽高后用于 draw 中的缩放计算
+        mImageWidth = transposed ? height : width;
+        mImageHeight = transposed ? width : height;
+
+        float[] coords = TextureOrientation.textureCoords(orientation);
+        float u = width / (float) storedWidth;
+        float v = height / (float) storedHeight;
+        for (int i = 0; i < coords.length; i += 2) {
+            coords[i] *= u;
+            coords[i + 1] *= v;
+        }
+        mTextureBuffer.position(0);
+        mTextureBuffer.put(coords);
+        mTextureBuffer.position(0);
 
-        mProgram = GLUtil.buildProgram(sVertexShader, sFragmentShader);
+        long bytes = format.byteCount(width, height);
+        long rgbaBytes = TextureFormat.RGBA_8888.byteCount(width, height);
+        Log.i(TAG, "layer " + mPath + " " + mImageWidth + "x" + mImageHeight
+                + " format=" + format + " bytes=" + bytes + " saved=" + (rgbaBytes - bytes));
+    }
 
-        mAttribPosition = GLES20.glGetAttribLocation(mProgram, "position");
-        mAttribTexCoords = GLES20.glGetAttribLocation(mProgram, "texCoords");
-        mUniformTexture = GLES20.glGetUniformLocation(mProgram, "texture");
-        mUniformProjection = GLES20.glGetUniformLocation(mProgram, "projection");
+    // 复制出紧密排列的像素, 行有填充时返回 null
+    private static TextureData copyPixels(Bitmap bitmap, TextureFormat format, int orientation) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        if (bitmap.getRowBytes() != width * format.bytesPerPixel) {
+            return null;
+        }
+        ByteBuffer pixels = ByteBuffer.allocateDirect((int) format.byteCount(width, height));
+        bitmap.copyPixelsToBuffer(pixels);
+        pixels.flip();
+        return new TextureData(format, width, height, orientation, pixels);
+    }
 
-        GLUtil.checkGlError();
+    // 每次取 4 行像素, 按 block 行编码
+    private static TextureData encodeEtc1(Bitmap bitmap, int orientation) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        ByteBuffer out = ByteBuffer.allocateDirect(Etc1Encoder.encodedSize(width, height));
+        int[] rows = new int[width * Etc1Encoder.BLOCK_SIZE];
+        Etc1Encoder encoder = new Etc1Encoder();
+        for (int y = 0; y < height; y += Etc1Encoder.BLOCK_SIZE) {
+            int count = Math.min(Etc1Encoder.BLOCK_SIZE, height - y);
+            bitmap.getPixels(rows, 0, width, 0, y, width, count);
+            encoder.encodeRow(rows, 0, width, width, count, out);
+        }
+        out.flip();
+        return new TextureData(TextureFormat.ETC1_RGB8, width, height, orientation, out);
     }
 
-    public void draw(int dw, int dh, float translateX, float translateY) {
-        if (mTextureId == -1) {
-            if (mBitmap == null || mBitmap.isRecycled()) {
-                throw new NullPointerException("bitmap == null");
+    // 逐行读取像素, 判断是否全不透明, 是否只有透明度
+    private static TextureFormat selectFormat(Bitmap bitmap) {
+        Bitmap.Config config = bitmap.getConfig();
+        if (config == Bitmap.Config.RGB_565 || !bitmap.hasAlpha()) {
+            return TextureFormat.RGB_565;
+        }
+        if (config == Bitmap.Config.ALPHA_8) {
+            return TextureFormat.ALPHA_8;
+        }
+        if (config != Bitmap.Config.ARGB_8888) {
+            return TextureFormat.RGBA_8888;
+        }
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int[] row = new int[width];
+        PixelAnalyzer analyzer = new PixelAnalyzer();
+        for (int y = 0; y < height && analyzer.isUndecided(); y++) {
+            bitmap.getPixels(row, 0, width, 0, y, width, 1);
+            analyzer.accept(row, 0, width);
+        }
+        return analyzer.result();
+    }
+
+    private static Bitmap.Config configOf(TextureFormat format) {
+        switch (format) {
+            case RGB_565:
+                return Bitmap.Config.RGB_565;
+            case ALPHA_8:
+                return Bitmap.Config.ALPHA_8;
+            default:
+                return Bitmap.Config.ARGB_8888;
+        }
+    }
+
+    private static Bitmap convert(Bitmap bitmap, TextureFormat format) {
+        Bitmap.Config config = configOf(format);
+        if (bitmap.getConfig() == config) {
+            return bitmap;
+        }
+        Bitmap b = bitmap.copy(config, false);
+        if (b == null) {
+            return bitmap;
+        }
+        bitmap.recycle();
+        return b;
+    }
+
+    // 根据屏幕尺寸，做缩放处理，以免发生 oom
+    private static Bitmap decode(String path, boolean transposed,
+                                 int surfaceWidth, int surfaceHeight, float extraScale,
+                                 boolean preferRgb565) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        DecodeTarget target = DecodeTarget.compute(options.outWidth, options.outHeight,
+                transposed, surfaceWidth, surfaceHeight, extraScale);
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = target.sampleSize;
+        if (preferRgb565 && "image/jpeg".equals(options.outMimeType)) {
+            // jpeg 不会有透明度, 直接解码成 565
+            options.inPreferredConfig = Bitmap.Config.RGB_565;
+        }
+        if (target.needsScale()) {
+            // 借助 density 在解码时直接缩放到目标尺寸, 省掉一次 createScaledBitmap
+            options.inScaled = true;
+            options.inDensity = target.sampledWidth;
+            options.inTargetDensity = target.width;
+        }
+        return BitmapFactory.decodeFile(path, options);
+    }
+
+    /**
+     * 新的 context 创建后在 GL 线程调用, share group 中已经有 program 时直接使用
+     */
+    public static void installProgram() {
+        GLResourceRegistry registry = GLResourceRegistry.current();
+        int program = registry != null ? registry.acquire(PROGRAM_KEY) : 0;
+        if (program == 0) {
+            program = GLUtil.buildProgram(sVertexShader, sFragmentShader);
+            if (program != 0 && registry != null) {
+                program = registry.publish(PROGRAM_KEY, GLResourceRegistry.TYPE_PROGRAM, program);
             }
-            mTextureId = GLUtil.loadTexture(mBitmap);
-            int imageWidth = mBitmap.getWidth();
-            int imageHeight = mBitmap.getHeight();
+        }
+        sProgram.set(new Program(program));
 
-            float scale = Math.max(dw / (float) imageWidth,
-                    dh / (float) imageHeight);
+        GLUtil.checkGlError();
+    }
 
-            scale += mExtraScale; // 额外多放大一部分
-            int imageW = (int) (imageWidth * scale);
-            int imageH = (int) (imageHeight * scale);
+    /**
+     * 纹理还不完整时, 不限预算一次上传完. 需要分帧上传时先调用 prepare, 返回 true 后再调用
+     */
+    public void draw(int dw, int dh, float translateX, float translateY) {
+        if (!isReady()) {
+            prepare(UploadScheduler.unlimited(), dw, dh);
+        }
 
-            float xScale = imageW * 1f / dw;
-            float yScale = imageH * 1f / dh;
+        if (dw != mDrawWidth || dh != mDrawHeight) {
+            updateQuad(dw, dh);
+            updateMipmap();
+        }
 
-            float[] vertices = {
-                    -xScale, -yScale, // 左下
-                    +xScale, -yScale, // 右下
-                    -xScale, +yScale, // 左上
-                    +xScale, +yScale, // 右上
-            };
-            mVertexBuffer.position(0);
-            mVertexBuffer.put(vertices);
+        Program program = sProgram.get();
+        if (program == null) {
+            installProgram();
+            program = sProgram.get();
         }
+        mProgram = program;
 
         GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
 
-        GLES20.glUseProgram(mProgram);
+        GLES20.glUseProgram(program.id);
 
-        GLES20.glUniform1i(mUniformTexture, 0);
+        GLES20.glUniform1i(program.uniformTexture, 0);
 
         mMatrix[12] = translateX; // x
         mMatrix[13] = translateY; // y
         mMatrix[14] = 0;          // z
-        GLES20.glUniformMatrix4fv(mUniformProjection, 1, false, mMatrix, 0);
+        GLES20.glUniformMatrix4fv(program.uniformProjection, 1, false, mMatrix, 0);
 
         GLUtil.checkGlError();
 
+        if (mTiles != null) {
+            drawTiles(translateX, translateY);
+        } else if (mAtlasRegion != null) {
+            TextureAtlas.Region region = mAtlasRegion;
+            drawSubRect(region.left, region.top, region.right, region.bottom, mTextureId,
+                    region.left - region.x, region.top - region.y,
+                    region.page.width, region.page.height);
+        } else {
+            drawQuad(mVertexBuffer, mTextureBuffer, mTextureId);
+        }
+    }
+
+    // 按绘制尺寸计算顶点, 并判断是否需要 mipmap
+    private void updateQuad(int dw, int dh) {
+        mDrawWidth = dw;
+        mDrawHeight = dh;
+        if (dw <= 0 || dh <= 0 || mImageWidth <= 0 || mImageHeight <= 0) {
+            return;
+        }
+        int imageWidth = mImageWidth;
+        int imageHeight = mImageHeight;
+
+        float scale = Math.max(dw / (float) imageWidth,
+                dh / (float) imageHeight);
+
+        scale += mExtraScale; // 额外多放大一部分
+        int imageW = (int) (imageWidth * scale);
+        int imageH = (int) (imageHeight * scale);
+
+        float xScale = imageW * 1f / dw;
+        float yScale = imageH * 1f / dh;
+        mXScale = xScale;
+        mYScale = yScale;
+
+        float[] vertices = {
+                -xScale, -yScale, // 左下
+                +xScale, -yScale, // 右下
+                -xScale, +yScale, // 左上
+                +xScale, +yScale, // 右上
+        };
         mVertexBuffer.position(0);
+        mVertexBuffer.put(vertices);
+
+        mWantMipmap = mMipmapMode == MIPMAP_AUTO
+                && MipmapPolicy.shouldMipmap(mImageWidth, mImageHeight, imageW, imageH);
+    }
+
+    private void drawQuad(FloatBuffer vertexBuffer, FloatBuffer textureBuffer, int textureId) {
+        vertexBuffer.position(0);
         int vertextSize = 2;
-        GLES20.glVertexAttribPointer(mAttribPosition, vertextSize, GLES20.GL_FLOAT, false,
-                vertextSize * GLUtil.FLOAT_SIZE_BYTES, mVertexBuffer);
-        GLES20.glEnableVertexAttribArray(mAttribPosition);
+        GLES20.glVertexAttribPointer(mProgram.attribPosition, vertextSize, GLES20.GL_FLOAT, false,
+                vertextSize * GLUtil.FLOAT_SIZE_BYTES, vertexBuffer);
+        GLES20.glEnableVertexAttribArray(mProgram.attribPosition);
 
-        mTextureBuffer.position(0);
+        textureBuffer.position(0);
         int textureSize = 2;
-        GLES20.glVertexAttribPointer(mAttribTexCoords, textureSize, GLES20.GL_FLOAT, false,
-                textureSize * GLUtil.FLOAT_SIZE_BYTES, mTextureBuffer);
-        GLES20.glEnableVertexAttribArray(mAttribTexCoords);
+        GLES20.glVertexAttribPointer(mProgram.attribTexCoords, textureSize, GLES20.GL_FLOAT, false,
+                textureSize * GLUtil.FLOAT_SIZE_BYTES, textureBuffer);
+        GLES20.glEnableVertexAttribArray(mProgram.attribTexCoords);
 
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mTextureId);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureId);
 
         GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, VERTICES.length / 2);
 
-        GLES20.glDisableVertexAttribArray(mAttribPosition);
-        GLES20.glDisableVertexAttribArray(mAttribTexCoords);
+        GLES20.glDisableVertexAttribArray(mProgram.attribPosition);
+        GLES20.glDisableVertexAttribArray(mProgram.attribTexCoords);
     }
 
-    public void release() {
+    /**
+     * 在本帧的预算内推进纹理上传, 需要在 GL 线程调用
+     *
+     * @param dw 绘制的 surface 宽度, 用于判断是否需要 mipmap
+     * @param dh 绘制的 surface 高度
+     * @return 纹理已经完整, 可以绘制时返回 true. 重新加载失败时也返回 true, 此时 isReady 为 false,
+     * 这个图层不画
+     */
+    public boolean prepare(UploadScheduler scheduler, int dw, int dh) {
+        mScheduler = scheduler;
+        if (mLoadFailed) {
+            return true;
+        }
+        if (mAtlasRegion != null) {
+            return prepareAtlas(scheduler, dw, dh);
+        }
+        if (mReuploadPowerOfTwo) {
+            reuploadPowerOfTwo(scheduler);
+        }
+        if (mTextureId == -1) {
+            if (!startUpload(scheduler, dw, dh)) {
+                return mLoadFailed;
+            }
+        }
+        if (mUploading) {
+            uploadRows(scheduler);
+        }
+        return isReady();
+    }
+
+    public boolean isReady() {
+        if (mAtlasRegion != null && mAtlasRegion.page.getTextureId() == -1) {
+            // 页面被其他图层删除, 或者 context 丢失
+            return false;
+        }
+        return mTextureId != -1 && !mUploading;
+    }
+
+    // 页面由共用的图层中第一个上传
+    private boolean prepareAtlas(UploadScheduler scheduler, int dw, int dh) {
+        if (mTextureId == -1) {
+            updateQuad(dw, dh);
+        }
+        TextureAtlas.Page page = mAtlasRegion.page;
+        if (!page.prepare(scheduler)) {
+            return false;
+        }
+        mTextureId = page.getTextureId();
+        return true;
+    }
+
+    /**
+     * 可以合并进图集时返回像素, 已经合并, 压缩纹理或者需要分块时返回 null
+     */
+    TextureData getAtlasSource() {
+        TextureData data = mTextureData;
+        if (mAtlasRegion != null || data == null || data.format.isCompressed()
+                || Math.max(data.width, data.height) > GLCapabilities.knownMaxTextureSize()) {
+            return null;
+        }
+        return data;
+    }
+
+    /**
+     * 像素已经复制到页面中, 释放自己的像素, 之后只绘制 region 的范围
+     */
+    void setAtlasRegion(TextureAtlas.Region region) {
+        mAtlasRegion = region;
+        releaseSource();
+        mTileVertexBuffer = GLUtil.makeFloatBuffer(VERTICES.length);
+        mTileTextureBuffer = GLUtil.makeFloatBuffer(TEXTURES.length);
+        Log.i(TAG, "layer " + mPath + " packed into atlas " + region.page.width + "x"
+                + region.page.height + " at " + region.x + "," + region.y + " trim "
+                + region.left + "," + region.top + "," + region.right + "," + region.bottom);
+    }
+
+    private boolean startUpload(UploadScheduler scheduler, int dw, int dh) {
+        if (mTextureData == null && !isBitmapResident()) {
+            // 上传后已经释放, 或者 context 丢失了, 重新加载
+            load(false);
+            if (mTextureData == null && !isBitmapResident()) {
+                return loadFailed();
+            }
+        }
+        // 重新加载后尺寸可能变化
+        updateQuad(dw, dh);
+        GLCapabilities capabilities = GLCapabilities.get();
+        int maxSize = capabilities.maxTextureSize;
+        if (maxSize > 0 && Math.max(mTextureWidth, mTextureHeight) > maxSize) {
+            return prepareTiles(maxSize);
+        }
+        mTexturePowerOfTwo = MipmapPolicy.isPowerOfTwo(mTextureWidth)
+                && MipmapPolicy.isPowerOfTwo(mTextureHeight);
+        boolean resize = mWantMipmap && !capabilities.npotMipmap && !mTexturePowerOfTwo
+                && !mFormat.isCompressed();
+        if (acquireSharedTexture(resize)) {
+            return true;
+        }
+        mResized = false;
+        if (resize) {
+            // GLES2 不能为非 2 的幂次的纹理生成 mipmap, 缩小到 2 的幂次后整张上传
+            return uploadPowerOfTwo(scheduler);
+        }
+        if (mTextureData != null && mTextureData.format.isCompressed()) {
+            // 压缩纹理不能分条, 一次上传
+            long bytes = mTextureData.pixels.remaining();
+            if (!scheduler.tryUpload(bytes)) {
+                return false;
+            }
+            int textureId = loadTextureData(mTextureData);
+            if (textureId != 0) {
+                scheduler.onUploaded(bytes);
+                finishUpload(textureId);
+                return true;
+            }
+            // 不支持压缩纹理或者上传失败, 之后都直接解码
+            Log.w(TAG, "load " + mTextureData.format + " failed, fallback to bitmap " + mPath);
+            reloadWithoutCache();
+        }
+        if (mTextureData == null) {
+            if (mBitmap == null) {
+                // 压缩纹理上传失败后重新解码也失败
+                return loadFailed();
+            }
+            TextureData data = copyPixels(mBitmap, mFormat, mOrientation);
+            if (data == null) {
+                // 行有填充, 不能分条, 整张上传
+                long bytes = mFormat.byteCount(mTextureWidth, mTextureHeight);
+                if (!scheduler.tryUpload(bytes)) {
+                    return false;
+                }
+                int textureId = GLUtil.loadTexture(mBitmap, mFormat.glFormat, mFormat.glType);
+                scheduler.onUploaded(bytes);
+                finishUpload(textureId);
+                return true;
+            }
+            mBitmap.recycle();
+            mBitmap = null;
+            mTextureData = data;
+        }
+        int textureId = GLUtil.allocTexture(mFormat.glFormat, mFormat.glType,
+                mTextureWidth, mTextureHeight);
+        if (textureId == 0) {
+            finishUpload(0);
+            return true;
+        }
+        mTextureId = textureId;
+        mUploadedRows = 0;
+        mUploading = true;
+        return true;
+    }
+
+    // 按预算分条上传, 全部完成后结束上传
+    private void uploadRows(UploadScheduler scheduler) {
+        int rowBytes = mTextureWidth * mFormat.bytesPerPixel;
+        ByteBuffer src = mTextureData.pixels.duplicate();
+        while (mUploadedRows < mTextureHeight) {
+            int rows = scheduler.stripeRows(rowBytes, mTextureHeight - mUploadedRows);
+            if (rows == 0) {
+                return;
+            }
+            int offset = mUploadedRows * rowBytes;
+            src.limit(src.capacity());
+            src.position(offset);
+            src.limit(offset + rows * rowBytes);
+            GLUtil.loadTextureRows(mTextureId, mFormat.glFormat, mFormat.glType,
+                    mUploadedRows, mTextureWidth, rows, src);
+            scheduler.onUploaded((long) rows * rowBytes);
+            mUploadedRows += rows;
+        }
+        mUploading = false;
+        finishUpload(mTextureId);
+    }
+
+    private void finishUpload(int textureId) {
+        mTextureId = textureId;
+        mUploading = false;
+        updateMipmap();
+        if (mTextureId > 0 && mTextureKey == null) {
+            publishTexture();
+        }
+        if (mTextureId != 0 && mResidency == RESIDENCY_DROP_AFTER_UPLOAD) {
+            releaseSource();
+        }
+    }
+
+    // 相同的文件, 解码尺寸, 格式和缩放的纹理内容相同
+    private String textureKey(boolean resized) {
+        if (mContentKey == null) {
+            mContentKey = TextureCache.key(new File(mPath), mSurfaceWidth, mSurfaceHeight, mExtraScale);
+        }
+        return mContentKey + "/" + mFormat + (resized ? "/pot" : "");
+    }
+
+    // share group 中的其他 context 已经上传过时直接使用
+    private boolean acquireSharedTexture(boolean resize) {
+        GLResourceRegistry registry = GLResourceRegistry.current();
+        if (registry == null) {
+            return false;
+        }
+        String key = textureKey(resize);
+        int textureId = registry.acquire(key);
+        if (textureId == 0) {
+            return false;
+        }
+        mRegistry = registry;
+        mTextureKey = key;
+        mResized = resize;
+        mTexturePowerOfTwo |= resize;
+        Log.i(TAG, "layer " + mPath + " uses shared texture " + textureId);
+        finishUpload(textureId);
+        return true;
+    }
+
+    // 上传完成后发布, 之后 share group 中的其他 context 不再上传
+    private void publishTexture() {
+        GLResourceRegistry registry = GLResourceRegistry.current();
+        if (registry == null || mTiles != null || mAtlasRegion != null) {
+            return;
+        }
+        String key = textureKey(mResized);
+        mTextureId = registry.publish(key, GLResourceRegistry.TYPE_TEXTURE, mTextureId);
+        mRegistry = registry;
+        mTextureKey = key;
+    }
+
+    // 缩小到不超过原尺寸的 2 的幂次, 仍然不小于绘制尺寸 (需要 mipmap 时纹理至少是绘制尺寸的 2 倍)
+    private boolean uploadPowerOfTwo(UploadScheduler scheduler) {
+        int width = MipmapPolicy.floorPowerOfTwo(mTextureWidth);
+        int height = MipmapPolicy.floorPowerOfTwo(mTextureHeight);
+        long bytes = mFormat.byteCount(width, height);
+        if (!scheduler.tryUpload(bytes)) {
+            return false;
+        }
+        Bitmap source = mBitmap;
+        if (source == null || source.isRecycled()) {
+            source = Bitmap.createBitmap(mTextureWidth, mTextureHeight, configOf(mFormat));
+            source.copyPixelsFromBuffer(mTextureData.pixels.duplicate());
+        }
+        Bitmap scaled = Bitmap.createScaledBitmap(source, width, height, true);
+        int textureId = GLUtil.loadTexture(scaled, mFormat.glFormat, mFormat.glType);
+        scheduler.onUploaded(bytes);
+        if (scaled != source) {
+            scaled.recycle();
+        }
+        if (source != mBitmap) {
+            source.recycle();
+        }
+        mTexturePowerOfTwo = true;
+        mResized = true;
+        Log.i(TAG, "resize " + mPath + " " + mTextureWidth + "x" + mTextureHeight
+                + " -> " + width + "x" + height + " for mipmap");
+        finishUpload(textureId);
+        return true;
+    }
+
+    // 根据 mWantMipmap 生成 mipmap 或者切回线性过滤, 压缩纹理, 分块和图集中的图层不处理
+    private void updateMipmap() {
+        if (mTextureId <= 0 || mUploading || mFormat.isCompressed() || mAtlasRegion != null
+                || mWantMipmap == mMipmapped) {
+            return;
+        }
+        if (!mWantMipmap) {
+            if (mTextureKey != null) {
+                // 共享的纹理可能有其他 context 需要 mipmap, 没有缩小时三线性过滤与线性相同
+                return;
+            }
+            // mipmap 的显存保留到纹理删除
+            GLUtil.setMinFilter(mTextureId, GLES20.GL_LINEAR);
+            mMipmapped = false;
+            return;
+        }
+        if (!mTexturePowerOfTwo && !GLCapabilities.get().npotMipmap) {
+            // 需要重新上传才能生成, 下一帧的 prepare 中重新上传, 之前继续线性过滤
+            if (!mReuploadPowerOfTwo) {
+                mReuploadPowerOfTwo = true;
+                Log.i(TAG, "mipmap " + mPath + " needs a power of two texture, reupload");
+                if (mScheduler != null) {
+                    mScheduler.requestFrame();
+                }
+            }
+            return;
+        }
+        GLUtil.generateMipmap(mTextureId);
+        mMipmapped = true;
+        long base = getTextureByteCount(false);
+        long total = getTextureByteCount(true);
+        Log.i(TAG, "mipmap " + mPath + " base=" + base + " total=" + total
+                + " overhead=" + (total - base) * 100 / base + "%");
+    }
+
+    // 删除当前的纹理, 由 startUpload 按需要 mipmap 的情况缩小到 2 的幂次上传.
+    // 预算不够时保留当前的纹理, 下一帧再试, 图层不会消失
+    private void reuploadPowerOfTwo(UploadScheduler scheduler) {
+        if (!mWantMipmap || mMipmapped || mTextureId <= 0 || mUploading) {
+            mReuploadPowerOfTwo = false;
+            return;
+        }
+        long bytes = mFormat.byteCount(MipmapPolicy.floorPowerOfTwo(mTextureWidth),
+                MipmapPolicy.floorPowerOfTwo(mTextureHeight));
+        if (!scheduler.tryUpload(bytes)) {
+            return;
+        }
+        deleteTexture();
+    }
+
+    /**
+     * 纹理占用的显存
+     *
+     * @param withMipmap 是否包含 mipmap 的部分
+     */
+    public long getTextureByteCount(boolean withMipmap) {
+        if (mAtlasRegion != null) {
+            TextureAtlas.Region region = mAtlasRegion;
+            return mFormat.byteCount(region.right - region.left, region.bottom - region.top);
+        }
+        int width = mTexturePowerOfTwo ? MipmapPolicy.floorPowerOfTwo(mTextureWidth) : mTextureWidth;
+        int height = mTexturePowerOfTwo ? MipmapPolicy.floorPowerOfTwo(mTextureHeight) : mTextureHeight;
+        if (withMipmap && mMipmapped) {
+            return MipmapPolicy.chainByteCount(width, height, mFormat.bytesPerPixel);
+        }
+        return mFormat.byteCount(width, height);
+    }
+
+    public boolean isMipmapped() {
+        return mMipmapped;
+    }
+
+    // 超过最大纹理尺寸, 改为分块. 块在 drawTiles 中按可见区域上传, 原始像素一直保留
+    private boolean prepareTiles(int maxSize) {
+        if (mTextureData != null && mTextureData.format.isCompressed()) {
+            // 压缩纹理不分块, 重新解码
+            reloadWithoutCache();
+        }
+        if (mTextureData == null) {
+            if (mBitmap == null) {
+                return loadFailed();
+            }
+            TextureData data = copyPixels(mBitmap, mFormat, mOrientation);
+            if (data == null) {
+                Log.w(TAG, "can not split " + mBitmap.getConfig() + " " + mPath);
+                return loadFailed();
+            }
+            mBitmap.recycle();
+            mBitmap = null;
+            mTextureData = data;
+        }
+        if (mTiles == null) {
+            int tileSize = Math.min(TILE_SIZE, maxSize);
+            mTiles = new TileGrid(mTextureWidth, mTextureHeight, tileSize);
+            mTileBuffer = ByteBuffer.allocateDirect((int) mFormat.byteCount(tileSize, tileSize));
+            mTileVertexBuffer = GLUtil.makeFloatBuffer(VERTICES.length);
+            mTileTextureBuffer = GLUtil.makeFloatBuffer(TEXTURES.length);
+            Log.i(TAG, "layer " + mPath + " exceeds " + maxSize + ", split into "
+                    + mTiles.getColumns() + "x" + mTiles.getRows() + " tiles");
+        }
+        mTextureId = 0;
+        return true;
+    }
+
+    // GL 线程上没有可以上传的像素, 跳过这个图层, 不能让异常结束 GL 线程
+    private boolean loadFailed() {
+        Log.w(TAG, "layer " + mPath + " unavailable, skipped until next context loss");
+        releaseSource();
+        mLoadFailed = true;
+        return false;
+    }
+
+    private void drawTiles(float translateX, float translateY) {
+        float xScale = mXScale;
+        float yScale = mYScale;
+        int width = mTextureWidth;
+        int height = mTextureHeight;
+        float[] points = mTilePoints;
+
+        // 屏幕 [-1, 1] 对应到图片显示坐标中的范围
+        float left = translateX - xScale;
+        float top = translateY + yScale;
+        float x0 = clamp01((-1 - left) / (2 * xScale));
+        float x1 = clamp01((1 - left) / (2 * xScale));
+        float y0 = clamp01((top - 1) / (2 * yScale));
+        float y1 = clamp01((top + 1) / (2 * yScale));
+        TextureOrientation.toTexture(mOrientation, x0, y0, points, 0);
+        TextureOrientation.toTexture(mOrientation, x1, y1, points, 2);
+        mTiles.update(Math.min(points[0], points[2]) * width, Math.min(points[1], points[3]) * height,
+                Math.max(points[0], points[2]) * width, Math.max(points[1], points[3]) * height,
+                mTileLoader);
+
+        for (int row = 0; row < mTiles.getRows(); row++) {
+            for (int column = 0; column < mTiles.getColumns(); column++) {
+                if (mTiles.isResident(column, row)) {
+                    drawTile(column, row);
+                }
+            }
+        }
+    }
+
+    private void drawTile(int column, int row) {
+        TileGrid tiles = mTiles;
+        float textureLeft = tiles.textureLeft(column);
+        float textureTop = tiles.textureTop(row);
+        drawSubRect(tiles.contentLeft(column), tiles.contentTop(row),
+                tiles.contentRight(column), tiles.contentBottom(row), tiles.getTextureId(column, row),
+                textureLeft, textureTop,
+                tiles.textureRight(column) - textureLeft, tiles.textureBottom(row) - textureTop);
+    }
+
+    /**
+     * 绘制图层的一部分, 范围换算到显示坐标, 再生成顶点和目标纹理中的纹理坐标
+     *
+     * @param left          图层纹理中的范围 (未按 exif 旋转), 像素
+     * @param originX       图层纹理坐标 0 对应到目标纹理中的位置, 像素
+     * @param textureWidth  目标纹理的宽度, 像素
+     * @param textureHeight 目标纹理的高度, 像素
+     */
+    private void drawSubRect(int left, int top, int right, int bottom, int textureId,
+                             float originX, float originY, float textureWidth, float textureHeight) {
+        float width = mTextureWidth;
+        float height = mTextureHeight;
+        float xScale = mXScale;
+        float yScale = mYScale;
+        float[] points = mTilePoints;
+
+        TextureOrientation.toDisplay(mOrientation, left / width, top / height, points, 0);
+        TextureOrientation.toDisplay(mOrientation, right / width, bottom / height, points, 2);
+        float dx0 = Math.min(points[0], points[2]);
+        float dx1 = Math.max(points[0], points[2]);
+        float dy0 = Math.min(points[1], points[3]);
+        float dy1 = Math.max(points[1], points[3]);
+
+        // 左下, 右下, 左上, 右上
+        for (int i = 0; i < 4; i++) {
+            float dx = (i & 1) == 0 ? dx0 : dx1;
+            float dy = i < 2 ? dy1 : dy0;
+            mTileVertices[i * 2] = -xScale + 2 * xScale * dx;
+            mTileVertices[i * 2 + 1] = yScale - 2 * yScale * dy;
+            TextureOrientation.toTexture(mOrientation, dx, dy, points, 0);
+            mTileTexCoords[i * 2] = (points[0] * width - originX) / textureWidth;
+            mTileTexCoords[i * 2 + 1] = (points[1] * height - originY) / textureHeight;
+        }
+        mTileVertexBuffer.position(0);
+        mTileVertexBuffer.put(mTileVertices);
+        mTileTextureBuffer.position(0);
+        mTileTextureBuffer.put(mTileTexCoords);
+
+        drawQuad(mTileVertexBuffer, mTileTextureBuffer, textureId);
+    }
+
+    private static float clamp01(float value) {
+        return value < 0 ? 0 : (value > 1 ? 1 : value);
+    }
+
+    private final TileGrid.Loader mTileLoader = new TileGrid.Loader() {
+        @Override
+        public int upload(TileGrid grid, int column, int row) {
+            int left = grid.textureLeft(column);
+            int top = grid.textureTop(row);
+            int width = grid.textureRight(column) - left;
+            int height = grid.textureBottom(row) - top;
+            int bytesPerPixel = mFormat.bytesPerPixel;
+            int rowBytes = width * bytesPerPixel;
+            // 超出本帧预算的块推迟到下一帧
+            if (!mScheduler.tryUpload((long) rowBytes * height)) {
+                return 0;
+            }
+
+            // 逐行从整张图的像素中复制出块
+            ByteBuffer src = mTextureData.pixels.duplicate();
+            ByteBuffer dst = mTileBuffer;
+            dst.clear();
+            for (int y = top; y < top + height; y++) {
+                int offset = (y * grid.getWidth() + left) * bytesPerPixel;
+                src.limit(src.capacity());
+                src.position(offset);
+                src.limit(offset + rowBytes);
+                dst.put(src);
+            }
+            dst.flip();
+            mScheduler.onUploaded((long) rowBytes * height);
+            return GLUtil.loadTexture(mFormat.glFormat, mFormat.glType, width, height, dst);
+        }
+
+        @Override
+        public void evict(int textureId) {
+            GLES20.glDeleteTextures(1, new int[]{textureId}, 0);
+        }
+    };
+
+    private static int loadTextureData(TextureData data) {
+        TextureFormat format = data.format;
+        if (!format.isCompressed()) {
+            return GLUtil.loadTexture(format.glFormat, format.glType, data.width, data.height,
+                    data.pixels.duplicate());
+        }
+        int internalFormat = GLCapabilities.get().compressedFormat(format);
+        if (internalFormat == 0) {
+            return 0;
+        }
+        return GLUtil.loadCompressedTexture(internalFormat, data.storedWidth(), data.storedHeight(),
+                data.pixels.duplicate());
+    }
+
+    /**
+     * 下次绘制或者上传时生效, 需要在 GL 线程调用
+     */
+    public void setMipmapMode(@MipmapMode int mode) {
+        mMipmapMode = mode;
+        // 重新判断是否需要 mipmap
+        mDrawWidth = 0;
+        mDrawHeight = 0;
+    }
+
+    public void setResidency(@Residency int residency) {
+        mResidency = residency;
+        if (residency == RESIDENCY_DROP_AFTER_UPLOAD && mTextureId > 0 && !mUploading) {
+            releaseSource();
+        }
+    }
+
+    // 释放 bitmap 或者纹理数据, 纹理数据之后可以从缓存重新读取
+    private void releaseSource() {
         if (mBitmap != null) {
             mBitmap.recycle();
+            mBitmap = null;
+        }
+        if (mShared != null) {
+            mShared.release();
+            mShared = null;
+        }
+        mTextureData = null;
+    }
+
+    // 缓存中的压缩纹理不能使用, 之后不经过缓存直接解码
+    private void reloadWithoutCache() {
+        releaseSource();
+        mCache = null;
+        mSharedCache = null;
+        load(false);
+    }
+
+    /**
+     * EGL context 丢失或重建后调用, 旧的纹理已经不可用, 下次 draw 时重新上传
+     */
+    public void onContextLost() {
+        mTextureId = -1;
+        mLoadFailed = false;
+        mUploading = false;
+        mMipmapped = false;
+        mReuploadPowerOfTwo = false;
+        if (mTiles != null) {
+            mTiles.invalidate();
+        }
+        if (mAtlasRegion != null) {
+            mAtlasRegion.page.onContextLost();
+        }
+        // 引用在 context 销毁时已经释放
+        mRegistry = null;
+        mTextureKey = null;
+    }
+
+    /**
+     * 解码失败时返回 false
+     */
+    public boolean hasImage() {
+        return mImageWidth > 0 && mImageHeight > 0;
+    }
+
+    public boolean isBitmapResident() {
+        return mBitmap != null && !mBitmap.isRecycled();
+    }
+
+    public TextureFormat getFormat() {
+        return mFormat;
+    }
+
+    /**
+     * 不需要分块时返回 null
+     */
+    public TileGrid getTileGrid() {
+        return mTiles;
+    }
+
+    /**
+     * 没有使用缓存时返回 null
+     */
+    public String getCacheKey() {
+        return mCacheKey;
+    }
+
+    /**
+     * 需要在 GL 线程调用
+     */
+    public void deleteTexture() {
+        if (mAtlasRegion != null) {
+            mAtlasRegion.page.deleteTexture();
+        } else if (mTextureKey != null) {
+            mRegistry.release(mTextureKey, mTextureId);
+        } else if (mTextureId > 0) {
+            GLES20.glDeleteTextures(1, new int[]{mTextureId}, 0);
+        }
+        mRegistry = null;
+        mTextureKey = null;
+        if (mTiles != null) {
+            mTiles.evictAll(mTileLoader);
         }
+        mTextureId = -1;
+        mUploading = false;
+        mMipmapped = false;
+        mReuploadPowerOfTwo = false;
+    }
+
+    public void release() {
+        releaseSource();
     }
 }
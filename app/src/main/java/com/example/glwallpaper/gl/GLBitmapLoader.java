@@ -0,0 +1,257 @@
+package com.example.glwallpaper.gl;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * On 2026-10-18
+ * 在后台线程并行解码图层, 全部完成后在主线程一次性回调
+ * <p>
+ * 同一个 loader 上发起新的 load 时, 旧的请求会被取消, 其结果直接释放
+ */
+public class GLBitmapLoader {
+
+    private static final int MAX_THREADS = 4;
+    private static final int THREAD_COUNT = Math.max(1,
+            Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors() - 1));
+
+    private static ExecutorService sExecutor;
+
+    private static synchronized ExecutorService executor() {
+        if (sExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT,
+                    30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                private final AtomicInteger mCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(final Runnable r) {
+                    return new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            r.run();
+                        }
+                    }, "GLBitmapLoader-" + mCount.incrementAndGet());
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+            sExecutor = executor;
+        }
+        return sExecutor;
+    }
+
+    /**
+     * 回调都在主线程
+     */
+    public interface Callback {
+
+        void onProgress(int done, int total);
+
+        /**
+         * @param images 与 paths 顺序一致, 解码失败的位置为 null
+         * @param costMs 从发起请求到全部完成的耗时
+         */
+        void onLoaded(List<GLBitmap> images, long costMs);
+    }
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final TextureCache mCache;
+    private final DecodedImageCache mSharedCache;
+    private volatile boolean mAtlasEnabled = true;
+    private Request mCurrent;
+
+    public GLBitmapLoader() {
+        this(null);
+    }
+
+    /**
+     * @param cache 不为 null 时, 不透明图层在后台转码为压缩纹理并缓存
+     */
+    public GLBitmapLoader(TextureCache cache) {
+        this(cache, null);
+    }
+
+    /**
+     * @param sharedCache 不为 null 时, 与其他 loader 共享解码后的像素, 同一张图只解码一次
+     */
+    public GLBitmapLoader(TextureCache cache, DecodedImageCache sharedCache) {
+        mCache = cache;
+        mSharedCache = sharedCache;
+    }
+
+    /**
+     * 是否把小的图层合并到图集中, 见 TextureAtlas, 对之后发起的加载生效
+     */
+    public void setAtlasEnabled(boolean enabled) {
+        mAtlasEnabled = enabled;
+    }
+
+    /**
+     * 发起一次加载, 会取消之前还没完成的请求
+     */
+    public Request load(List<String> paths, float extraScale, int surfaceWidth, int surfaceHeight,
+                        @GLBitmap.Residency int residency, Callback callback) {
+        cancel();
+        Request request = new Request(paths, extraScale, surfaceWidth, surfaceHeight,
+                residency, callback);
+        mCurrent = request;
+        request.start();
+        return request;
+    }
+
+    public void cancel() {
+        if (mCurrent != null) {
+            mCurrent.cancel();
+            mCurrent = null;
+        }
+    }
+
+    public final class Request {
+
+        private final List<String> mPaths;
+        private final float mExtraScale;
+        private final int mSurfaceWidth;
+        private final int mSurfaceHeight;
+        private final int mResidency;
+        private final boolean mAtlas;
+        private final Callback mCallback;
+
+        private final GLBitmap[] mResults;
+        private final List<Future<?>> mFutures = new ArrayList<>();
+        private final AtomicInteger mDone = new AtomicInteger();
+        private final long mStartTime = SystemClock.uptimeMillis();
+        private volatile boolean mCancelled;
+
+        private Request(List<String> paths, float extraScale, int surfaceWidth, int surfaceHeight,
+                        int residency, Callback callback) {
+            mPaths = new ArrayList<>(paths);
+            mExtraScale = extraScale;
+            mSurfaceWidth = surfaceWidth;
+            mSurfaceHeight = surfaceHeight;
+            mResidency = residency;
+            mAtlas = mAtlasEnabled;
+            mCallback = callback;
+            mResults = new GLBitmap[mPaths.size()];
+        }
+
+        private void start() {
+            ExecutorService executor = executor();
+            for (int i = 0; i < mPaths.size(); i++) {
+                final int index = i;
+                mFutures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        decode(index);
+                    }
+                }));
+            }
+        }
+
+        private void decode(int index) {
+            if (mCancelled) {
+                return;
+            }
+            GLBitmap image = null;
+            try {
+                image = GLBitmap.create(mPaths.get(index), mExtraScale,
+                        mSurfaceWidth, mSurfaceHeight, mCache, mSharedCache);
+                if (image.hasImage()) {
+                    image.setResidency(mResidency);
+                } else {
+                    image.release();
+                    image = null;
+                }
+            } catch (Throwable e) {
+                e.printStackTrace();
+            }
+
+            synchronized (this) {
+                if (mCancelled) {
+                    if (image != null) {
+                        image.release();
+                    }
+                    return;
+                }
+                mResults[index] = image;
+            }
+
+            final int done = mDone.incrementAndGet();
+            final int total = mResults.length;
+            if (done == total) {
+                buildAtlas();
+            }
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mCancelled) {
+                        return;
+                    }
+                    mCallback.onProgress(done, total);
+                    if (done == total) {
+                        if (mCurrent == Request.this) {
+                            mCurrent = null;
+                        }
+                        List<GLBitmap> images;
+                        synchronized (Request.this) {
+                            // 交给 callback 之后, 由 callback 负责释放
+                            images = new ArrayList<>(Arrays.asList(mResults));
+                            Arrays.fill(mResults, null);
+                        }
+                        mCallback.onLoaded(images, SystemClock.uptimeMillis() - mStartTime);
+                    }
+                }
+            });
+        }
+
+        // 全部加载完成后, 在工作线程合并小的图层, 交给 callback 之前完成
+        private void buildAtlas() {
+            if (!mAtlas) {
+                return;
+            }
+            synchronized (this) {
+                if (mCancelled) {
+                    return;
+                }
+                TextureAtlas.build(Arrays.asList(mResults));
+            }
+        }
+
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+
+        /**
+         * 取消请求, 已经解码完成的图层会被释放, 之后不会再有回调
+         */
+        public void cancel() {
+            synchronized (this) {
+                if (mCancelled) {
+                    return;
+                }
+                mCancelled = true;
+                for (int i = 0; i < mResults.length; i++) {
+                    if (mResults[i] != null) {
+                        mResults[i].release();
+                        mResults[i] = null;
+                    }
+                }
+            }
+            for (Future<?> future : mFutures) {
+                future.cancel(false);
+            }
+        }
+    }
+}
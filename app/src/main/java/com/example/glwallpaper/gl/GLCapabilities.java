@@ -0,0 +1,86 @@
+package com.example.glwallpaper.gl;
+
+import android.opengl.GLES20;
+import android.util.Log;
+
+/**
+ * On 2026-10-18
+ * 当前 GL 实现支持的能力, 第一次使用时在 GL 线程查询, 之后复用
+ */
+public final class GLCapabilities {
+
+    private static final String TAG = "GLCapabilities";
+
+    public static final int GL_ETC1_RGB8_OES = 0x8D64;
+    public static final int GL_COMPRESSED_RGB8_ETC2 = 0x9274;
+
+    // 还没有查询过时, 按大部分设备的取值估计
+    private static final int DEFAULT_MAX_TEXTURE_SIZE = 4096;
+
+    private static final String EXT_ETC1 = "GL_OES_compressed_ETC1_RGB8_texture";
+    private static final String EXT_NPOT = "GL_OES_texture_npot";
+
+    private static GLCapabilities sInstance;
+
+    public final int maxTextureSize;
+    public final boolean gles3;
+    public final boolean etc1;
+    /**
+     * 非 2 的幂次的纹理是否可以生成 mipmap, GLES2 需要扩展
+     */
+    public final boolean npotMipmap;
+
+    private GLCapabilities(int maxTextureSize, boolean gles3, boolean etc1, boolean npotMipmap) {
+        this.maxTextureSize = maxTextureSize;
+        this.gles3 = gles3;
+        this.etc1 = etc1;
+        this.npotMipmap = npotMipmap;
+    }
+
+    /**
+     * 需要在 GL 线程调用
+     */
+    public static synchronized GLCapabilities get() {
+        if (sInstance == null) {
+            int[] size = new int[1];
+            GLES20.glGetIntegerv(GLES20.GL_MAX_TEXTURE_SIZE, size, 0);
+            String version = GLES20.glGetString(GLES20.GL_VERSION);
+            String extensions = GLES20.glGetString(GLES20.GL_EXTENSIONS);
+            boolean gles3 = version != null && version.startsWith("OpenGL ES 3");
+            boolean etc1 = extensions != null && extensions.contains(EXT_ETC1);
+            boolean npot = gles3 || (extensions != null && extensions.contains(EXT_NPOT));
+            sInstance = new GLCapabilities(size[0], gles3, etc1, npot);
+            Log.i(TAG, "version=" + version + " maxTextureSize=" + size[0] + " etc1=" + etc1
+                    + " npot=" + npot);
+        }
+        return sInstance;
+    }
+
+    /**
+     * 可以在任意线程调用, 还没有在 GL 线程查询过时返回估计值
+     */
+    public static synchronized int knownMaxTextureSize() {
+        if (sInstance == null || sInstance.maxTextureSize <= 0) {
+            return DEFAULT_MAX_TEXTURE_SIZE;
+        }
+        return sInstance.maxTextureSize;
+    }
+
+    /**
+     * ETC1 的码流同时也是合法的 ETC2 RGB8 码流, GLES3 上即使没有 ETC1 扩展也可以上传
+     *
+     * @return glCompressedTexImage2D 的 internalformat, 不支持时返回 0
+     */
+    public int compressedFormat(TextureFormat format) {
+        if (format != TextureFormat.ETC1_RGB8) {
+            return 0;
+        }
+        if (etc1) {
+            return GL_ETC1_RGB8_OES;
+        }
+        if (gles3) {
+            return GL_COMPRESSED_RGB8_ETC2;
+        }
+        return 0;
+    }
+}
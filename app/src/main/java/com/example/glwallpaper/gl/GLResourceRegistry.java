@@ -0,0 +1,261 @@
+package com.example.glwallpaper.gl;
+
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * On 2026-10-18
+ * 同一个 share group 中的纹理和 program, 按 key 共享, 按引用计数删除
+ * <p>
+ * 每个 GL 线程创建 context 后由 EglHelper 绑定所在 share group 的 registry, 通过 current() 取得.
+ * 只有 SharedContextFactory 创建的共享 context 有 registry. 引用记在持有的 GL 线程上,
+ * context 销毁时一起释放
+ */
+public class GLResourceRegistry {
+
+    public static final int TYPE_TEXTURE = 0;
+    public static final int TYPE_PROGRAM = 1;
+
+    private static final ThreadLocal<GLResourceRegistry> sCurrent = new ThreadLocal<>();
+
+    /**
+     * 当前 GL 线程的 registry, 没有 context 时返回 null
+     */
+    public static GLResourceRegistry current() {
+        return sCurrent.get();
+    }
+
+    static void bind(GLResourceRegistry registry) {
+        sCurrent.set(registry);
+    }
+
+    private static final class Entry {
+        final String key;
+        final int type;
+        final int id;
+        // 发布时上传命令的 fence, 其他 context 使用前在 GPU 上等待. 没有 fence 时为 0
+        long fence;
+        // 每个引用一项, 同一个线程可以出现多次
+        final List<Thread> holders = new ArrayList<>(2);
+
+        Entry(String key, int type, int id) {
+            this.key = key;
+            this.type = type;
+            this.id = id;
+        }
+    }
+
+    private final Map<String, Entry> mEntries = new HashMap<>();
+    // 持有的线程已经没有 context, 等 group 中其他 GL 线程删除
+    private final List<Entry> mPendingDeletes = new ArrayList<>();
+
+    private long mShareCount;
+    private long mPublishCount;
+    private long mDuplicateCount;
+
+    /**
+     * 取得其他 context 已经发布的对象, 需要在 GL 线程调用
+     *
+     * @return 没有时返回 0, 否则引用计数加一
+     */
+    public int acquire(String key) {
+        deletePending();
+        int id;
+        long fence;
+        synchronized (this) {
+            Entry entry = mEntries.get(key);
+            if (entry == null) {
+                return 0;
+            }
+            entry.holders.add(Thread.currentThread());
+            mShareCount++;
+            id = entry.id;
+            fence = entry.fence;
+        }
+        if (fence != 0) {
+            waitFence(fence);
+        }
+        return id;
+    }
+
+    /**
+     * 发布在当前 context 中创建完成的对象, 之后 group 中的其他 context 可以通过 acquire 使用.
+     * 需要在 GL 线程调用
+     *
+     * @return 其他线程已经先发布了同一个 key 时, 删除 id 并返回已有的对象. 引用计数都加一
+     */
+    public int publish(String key, int type, int id) {
+        deletePending();
+        // 其他 context 使用之前, 对象的内容需要已经完成
+        long fence = fence();
+        Entry duplicate = null;
+        int result;
+        synchronized (this) {
+            Entry entry = mEntries.get(key);
+            if (entry == null) {
+                entry = new Entry(key, type, id);
+                entry.fence = fence;
+                mEntries.put(key, entry);
+                mPublishCount++;
+            } else {
+                duplicate = new Entry(key, type, id);
+                duplicate.fence = fence;
+                mDuplicateCount++;
+            }
+            entry.holders.add(Thread.currentThread());
+            result = entry.id;
+        }
+        if (duplicate != null) {
+            delete(duplicate);
+        }
+        return result;
+    }
+
+    /**
+     * 释放一个引用, 没有引用时删除对象. 需要在 GL 线程调用
+     */
+    public void release(String key, int id) {
+        Entry deleted = null;
+        synchronized (this) {
+            Entry entry = mEntries.get(key);
+            if (entry == null || entry.id != id) {
+                // group 已经销毁过, 对象已经不存在
+                return;
+            }
+            entry.holders.remove(Thread.currentThread());
+            if (entry.holders.isEmpty()) {
+                mEntries.remove(key);
+                deleted = entry;
+            }
+        }
+        if (deleted != null) {
+            delete(deleted);
+        }
+        deletePending();
+    }
+
+    /**
+     * thread 的 context 将要销毁, 释放它持有的引用.
+     * contextCurrent 为 true 时 context 在调用线程上仍然是 current, 没有引用的对象和之前等待删除的对象
+     * 直接在这里删除; 否则不能调用 GL, 留给 group 中其他 GL 线程删除
+     */
+    void releaseThread(Thread thread, boolean contextCurrent) {
+        List<Entry> orphaned = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Entry> iterator = mEntries.values().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                //noinspection StatementWithEmptyBody
+                while (entry.holders.remove(thread)) {
+                }
+                if (entry.holders.isEmpty()) {
+                    iterator.remove();
+                    orphaned.add(entry);
+                }
+            }
+            if (!contextCurrent) {
+                mPendingDeletes.addAll(orphaned);
+                return;
+            }
+        }
+        for (Entry entry : orphaned) {
+            delete(entry);
+        }
+        deletePending();
+    }
+
+    /**
+     * group 中所有的 context 都已经销毁, 对象也随之销毁, 只需要忘掉
+     */
+    synchronized void clear() {
+        mEntries.clear();
+        mPendingDeletes.clear();
+    }
+
+    private void deletePending() {
+        List<Entry> pending;
+        synchronized (this) {
+            if (mPendingDeletes.isEmpty()) {
+                return;
+            }
+            pending = new ArrayList<>(mPendingDeletes);
+            mPendingDeletes.clear();
+        }
+        for (Entry entry : pending) {
+            delete(entry);
+        }
+    }
+
+    private void delete(Entry entry) {
+        deleteObject(entry.type, entry.id);
+        if (entry.fence != 0) {
+            deleteFence(entry.fence);
+        }
+    }
+
+    void deleteObject(int type, int id) {
+        if (type == TYPE_PROGRAM) {
+            GLES20.glDeleteProgram(id);
+        } else {
+            GLES20.glDeleteTextures(1, new int[]{id}, 0);
+        }
+    }
+
+    /**
+     * 让之前的上传命令对 group 中的其他 context 可见. GLES3 上插入 fence 并 flush, 不阻塞当前线程,
+     * 使用方在 GPU 上等待 fence. GLES2 没有 sync 对象, 共享对象的修改只有在命令完成后才保证对其他
+     * context 可见, 只能 glFinish. 每个 key 只有第一次上传的线程发布一次
+     *
+     * @return fence, 没有时返回 0
+     */
+    long fence() {
+        if (GLCapabilities.get().gles3) {
+            long fence = GLES30.glFenceSync(GLES30.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+            GLES20.glFlush();
+            if (fence != 0) {
+                return fence;
+            }
+        }
+        GLES20.glFinish();
+        return 0;
+    }
+
+    void waitFence(long fence) {
+        GLES30.glWaitSync(fence, 0, GLES30.GL_TIMEOUT_IGNORED);
+    }
+
+    void deleteFence(long fence) {
+        GLES30.glDeleteSync(fence);
+    }
+
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * 使用其他 context 上传的对象的次数, 每次都省掉一次上传
+     */
+    public synchronized long getShareCount() {
+        return mShareCount;
+    }
+
+    /**
+     * 两个 context 同时上传了同一个 key 的次数, 后发布的被删除
+     */
+    public synchronized long getDuplicateCount() {
+        return mDuplicateCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "GLResourceRegistry{entries=" + mEntries.size() + " published=" + mPublishCount
+                + " shared=" + mShareCount + " duplicate=" + mDuplicateCount
+                + " pendingDeletes=" + mPendingDeletes.size() + "}";
+    }
+}
@@ -3,8 +3,6 @@ package com.example.glwallpaper.gl;
 import android.util.Log;
 import android.view.SurfaceHolder;
 
-import java.util.ArrayList;
-
 import javax.microedition.khronos.egl.EGL10;
 import javax.microedition.khronos.egl.EGL11;
 import javax.microedition.khronos.opengles.GL10;
@@ -14,24 +12,45 @@ import javax.microedition.khronos.opengles.GL10;
  */
 class GLThread extends Thread {
 
+    /**
+     * Default time the render thread may spend running queued events before
+     * it draws the next frame.
+     */
+    public static final long DEFAULT_EVENT_BUDGET_NANOS = 4_000_000L;
+
     private static final GLThreadManager sGLThreadManager = new GLThreadManager();
 
+    /*
+     * The only state shared between GLThreads. Everything else is guarded by the
+     * per-thread mLock, so one engine's requestRender() never wakes another
+     * engine's render thread or its main-thread waiters.
+     */
     private static class GLThreadManager {
 
-        public synchronized void threadExiting(GLThread thread) {
-            thread.mExited = true;
-            if (mEnableLog) {
-                Log.i("GLThread", "exiting tid=" + thread.getId());
+        private int mThreadCount;
+
+        public synchronized void threadStarting(GLThread thread) {
+            mThreadCount++;
+        }
+
+        public void threadExiting(GLThread thread) {
+            thread.mLock.lock();
+            try {
+                thread.mExited = true;
+                thread.mLock.signalExited();
+            } finally {
+                thread.mLock.unlock();
+            }
+            synchronized (this) {
+                mThreadCount--;
+                if (mEnableLog) {
+                    Log.i("GLThread", "exiting tid=" + thread.getId() + " remaining=" + mThreadCount);
+                }
             }
-            notifyAll();
         }
 
-        /*
-         * Releases the EGL context. Requires that we are already in the
-         * sGLThreadManager monitor when this is called.
-         */
-        public void releaseEglContextLocked(GLThread thread) {
-            notifyAll();
+        public synchronized int getThreadCount() {
+            return mThreadCount;
         }
     }
 
@@ -45,6 +64,12 @@ class GLThread extends Thread {
 
     private EglHelper mEglHelper;
 
+    private final GLThreadLock mLock = new GLThreadLock();
+    private volatile long mFrameCount;
+    private final FrameMetrics mMetrics = new FrameMetrics();
+    // When the pending render was first requested, 0 if none is pending.
+    private long mRequestedAtNanos;
+
     private boolean mShouldExit;
     private boolean mExited;
     private boolean mRequestPaused;
@@ -61,7 +86,8 @@ class GLThread extends Thread {
     private int mRenderMode;
     private boolean mRequestRender;
     private boolean mRenderComplete;
-    private final ArrayList<Runnable> mEventQueue = new ArrayList<>();
+    private final EventQueue mEventQueue = new EventQueue();
+    private volatile long mEventBudgetNanos = DEFAULT_EVENT_BUDGET_NANOS;
     private boolean mSizeChanged = true;
     private Runnable mFinishDrawingRunnable = null;
     private boolean mPreserveEGLContextOnPause;
@@ -91,6 +117,7 @@ class GLThread extends Thread {
             Log.i("GLThread", "starting tid=" + getId());
         }
 
+        sGLThreadManager.threadStarting(this);
         try {
             guardedRun();
         } catch (InterruptedException e) {
@@ -124,28 +151,61 @@ class GLThread extends Thread {
     }
 
     /*
-     * This private method should only be called inside a
-     * synchronized(sGLThreadManager) block.
+     * This private method should only be called while holding mLock.
      */
     private void stopEglSurfaceLocked() {
         if (mHaveEglSurface) {
             mHaveEglSurface = false;
             mEglHelper.destroySurface();
+            mLock.signalRenderComplete();
         }
     }
 
     /*
-     * This private method should only be called inside a
-     * synchronized(sGLThreadManager) block.
+     * This private method should only be called while holding mLock.
      */
     private void stopEglContextLocked() {
         if (mHaveEglContext) {
             mEglHelper.finish();
             mHaveEglContext = false;
-            sGLThreadManager.releaseEglContextLocked(this);
+            mLock.signalRenderComplete();
         }
     }
 
+    /**
+     * Number of times the render thread returned from waiting, including wakeups
+     * that found nothing to do.
+     */
+    public long getWakeupCount() {
+        return mLock.getWakeupCount();
+    }
+
+    /**
+     * Number of times a main-thread caller returned from waiting on this thread.
+     */
+    public long getWaiterWakeupCount() {
+        return mLock.getWaiterWakeupCount();
+    }
+
+    public long getFrameCount() {
+        return mFrameCount;
+    }
+
+    /**
+     * Draw, swap and wake-to-draw histograms plus lifecycle counters, recorded
+     * without allocating.
+     */
+    public FrameMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * Number of GLThreads currently running in this process.
+     */
+    public static int getThreadCount() {
+        return sGLThreadManager.getThreadCount();
+    }
+
     private void guardedRun() throws InterruptedException {
         mEglHelper = new EglHelper(mEGLConfigChooser, mEGLContextFactory, mEGLWindowSurfaceFactory, mGLWrapper);
         mHaveEglContext = false;
@@ -162,20 +222,24 @@ class GLThread extends Thread {
             boolean wantRenderNotification = false;
             boolean doRenderNotification = false;
             boolean askedToReleaseEglContext = false;
+            boolean drainEvents = false;
+            // The last batch ran out of budget, draw a frame before the rest.
+            boolean deferEvents = false;
             int w = 0;
             int h = 0;
-            Runnable event = null;
+            long requestedAt = 0;
             Runnable finishDrawingRunnable = null;
 
             while (true) {
-                synchronized (sGLThreadManager) {
+                mLock.lock();
+                try {
                     while (true) {
                         if (mShouldExit) {
                             return;
                         }
 
-                        if (!mEventQueue.isEmpty()) {
-                            event = mEventQueue.remove(0);
+                        if (!deferEvents && !mEventQueue.isEmpty()) {
+                            drainEvents = true;
                             break;
                         }
 
@@ -184,7 +248,10 @@ class GLThread extends Thread {
                         if (mPaused != mRequestPaused) {
                             pausing = mRequestPaused;
                             mPaused = mRequestPaused;
-                            sGLThreadManager.notifyAll();
+                            // Time spent paused is not wake-to-draw latency.
+                            mRequestedAtNanos = 0;
+                            mLock.signalPause();
+                            mLock.signalRenderComplete();
                             if (mEnableLog) {
                                 Log.i("GLThread", "mPaused is now " + mPaused + " tid=" + getId());
                             }
@@ -236,7 +303,7 @@ class GLThread extends Thread {
                             }
                             mWaitingForSurface = true;
                             mSurfaceIsBad = false;
-                            sGLThreadManager.notifyAll();
+                            mLock.signalSurface();
                         }
 
                         // Have we acquired the surface view surface?
@@ -245,7 +312,7 @@ class GLThread extends Thread {
                                 Log.i("GLThread", "noticed surfaceView surface acquired tid=" + getId());
                             }
                             mWaitingForSurface = false;
-                            sGLThreadManager.notifyAll();
+                            mLock.signalSurface();
                         }
 
                         if (doRenderNotification) {
@@ -255,7 +322,7 @@ class GLThread extends Thread {
                             wantRenderNotification1 = false;
                             doRenderNotification = false;
                             mRenderComplete = true;
-                            sGLThreadManager.notifyAll();
+                            mLock.signalRenderComplete();
                         }
 
                         if (mFinishDrawingRunnable != null) {
@@ -271,16 +338,10 @@ class GLThread extends Thread {
                                 if (askedToReleaseEglContext) {
                                     askedToReleaseEglContext = false;
                                 } else {
-                                    try {
-                                        mEglHelper.start();
-                                    } catch (RuntimeException t) {
-                                        sGLThreadManager.releaseEglContextLocked(this);
-                                        throw t;
-                                    }
+                                    mEglHelper.start();
                                     mHaveEglContext = true;
                                     createEglContext = true;
-
-                                    sGLThreadManager.notifyAll();
+                                    mMetrics.onContextCreated();
                                 }
                             }
 
@@ -309,7 +370,10 @@ class GLThread extends Thread {
                                     mSizeChanged = false;
                                 }
                                 mRequestRender = false;
-                                sGLThreadManager.notifyAll();
+                                requestedAt = mRequestedAtNanos;
+                                mRequestedAtNanos = 0;
+                                // readyToDraw() may have changed for onWindowResize()
+                                mLock.signalRenderComplete();
                                 if (wantRenderNotification1) {
                                     wantRenderNotification = true;
                                 }
@@ -326,7 +390,13 @@ class GLThread extends Thread {
                             }
                         }
 
-                        // By design, this is the only place in a GLThread thread where we wait().
+                        // Nothing to draw, run the deferred events instead of waiting.
+                        if (!mEventQueue.isEmpty()) {
+                            drainEvents = true;
+                            break;
+                        }
+
+                        // By design, this is the only place in a GLThread thread where we wait.
                         if (mEnableLog) {
                             Log.i("GLThread", "waiting tid=" + getId()
                                     + " mHaveEglContext: " + mHaveEglContext
@@ -341,13 +411,16 @@ class GLThread extends Thread {
                                     + " mRequestRender: " + mRequestRender
                                     + " mRenderMode: " + mRenderMode);
                         }
-                        sGLThreadManager.wait();
+                        mLock.awaitWork();
                     }
-                } // end of synchronized(sGLThreadManager)
+                } finally {
+                    mLock.unlock();
+                }
 
-                if (event != null) {
-                    event.run();
-                    event = null;
+                if (drainEvents) {
+                    mEventQueue.drain(mEventBudgetNanos);
+                    drainEvents = false;
+                    deferEvents = !mEventQueue.isEmpty();
                     continue;
                 }
 
@@ -355,17 +428,22 @@ class GLThread extends Thread {
                     if (mEnableLog) {
                         Log.w("GLThread", "egl createSurface");
                     }
-                    if (mEglHelper.createSurface(mSurfaceHolder)) {
-                        synchronized (sGLThreadManager) {
-                            mFinishedCreatingEglSurface = true;
-                            sGLThreadManager.notifyAll();
-                        }
-                    } else {
-                        synchronized (sGLThreadManager) {
-                            mFinishedCreatingEglSurface = true;
+                    boolean created = mEglHelper.createSurface(mSurfaceHolder);
+                    if (created) {
+                        mMetrics.onSurfaceCreated();
+                    }
+                    mLock.lock();
+                    try {
+                        mFinishedCreatingEglSurface = true;
+                        if (!created) {
                             mSurfaceIsBad = true;
-                            sGLThreadManager.notifyAll();
+                            mLock.signalRenderComplete();
                         }
+                        mLock.signalSurface();
+                    } finally {
+                        mLock.unlock();
+                    }
+                    if (!created) {
                         continue;
                     }
                     createEglSurface = false;
@@ -396,6 +474,11 @@ class GLThread extends Thread {
                 if (mEnableLog) {
                     Log.w("GLThread", "onDrawFrame tid=" + getId());
                 }
+                long drawStart = System.nanoTime();
+                if (requestedAt != 0) {
+                    mMetrics.getWakeToDraw().record(drawStart - requestedAt);
+                    requestedAt = 0;
+                }
                 {
                     mRenderer.onDrawFrame(gl);
                     if (finishDrawingRunnable != null) {
@@ -403,7 +486,12 @@ class GLThread extends Thread {
                         finishDrawingRunnable = null;
                     }
                 }
+                long swapStart = System.nanoTime();
+                mMetrics.getDraw().record(swapStart - drawStart);
                 int swapError = mEglHelper.swap();
+                mMetrics.getSwap().record(System.nanoTime() - swapStart);
+                mFrameCount++;
+                deferEvents = false;
                 switch (swapError) {
                     case EGL10.EGL_SUCCESS:
                         break;
@@ -411,6 +499,8 @@ class GLThread extends Thread {
                         if (mEnableLog) {
                             Log.i("GLThread", "egl context lost tid=" + getId());
                         }
+                        mRenderer.onContextLost();
+                        mMetrics.onContextLost();
                         lostEglContext = true;
                         break;
                     default:
@@ -419,10 +509,14 @@ class GLThread extends Thread {
                         // but we haven't been notified yet.
                         // Log the error to help developers understand why rendering stopped.
                         EglHelper.logEglErrorAsWarning("GLThread", "eglSwapBuffers", swapError);
+                        mMetrics.onSwapFailed();
 
-                        synchronized (sGLThreadManager) {
+                        mLock.lock();
+                        try {
                             mSurfaceIsBad = true;
-                            sGLThreadManager.notifyAll();
+                            mLock.signalRenderComplete();
+                        } finally {
+                            mLock.unlock();
                         }
                         break;
                 }
@@ -437,9 +531,12 @@ class GLThread extends Thread {
             /*
              * clean-up everything...
              */
-            synchronized (sGLThreadManager) {
+            mLock.lock();
+            try {
                 stopEglSurfaceLocked();
                 stopEglContextLocked();
+            } finally {
+                mLock.unlock();
             }
         }
     }
@@ -448,60 +545,70 @@ class GLThread extends Thread {
         if (!((GLWallpaperService.RENDERMODE_WHEN_DIRTY <= renderMode) && (renderMode <= GLWallpaperService.RENDERMODE_CONTINUOUSLY))) {
             throw new IllegalArgumentException("renderMode");
         }
-        synchronized (sGLThreadManager) {
+        mLock.lock();
+        try {
             mRenderMode = renderMode;
-            sGLThreadManager.notifyAll();
+            mLock.signalWork();
+        } finally {
+            mLock.unlock();
         }
     }
 
     public void requestRender() {
-        synchronized (sGLThreadManager) {
+        mLock.lock();
+        try {
+            if (mRequestRender) {
+                mMetrics.onRequestCoalesced();
+            } else if (mRequestedAtNanos == 0) {
+                mRequestedAtNanos = System.nanoTime();
+            }
             mRequestRender = true;
-            sGLThreadManager.notifyAll();
+            mLock.signalWork();
+        } finally {
+            mLock.unlock();
         }
     }
 
     public void surfaceCreated(SurfaceHolder holder) {
-        synchronized (sGLThreadManager) {
+        mLock.lock();
+        try {
             mSurfaceHolder = holder;
             if (mEnableLog) {
                 Log.i("GLThread", "surfaceCreated tid=" + getId());
             }
             mHasSurface = true;
             mFinishedCreatingEglSurface = false;
-            sGLThreadManager.notifyAll();
+            mLock.signalWork();
             while (mWaitingForSurface
                     && !mFinishedCreatingEglSurface
                     && !mExited) {
-                try {
-                    sGLThreadManager.wait();
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
+                mLock.awaitSurface();
             }
+        } finally {
+            mLock.unlock();
         }
     }
 
     public void surfaceDestroyed() {
-        synchronized (sGLThreadManager) {
+        mLock.lock();
+        try {
             mSurfaceHolder = null;
             if (mEnableLog) {
                 Log.i("GLThread", "surfaceDestroyed tid=" + getId());
             }
             mHasSurface = false;
-            sGLThreadManager.notifyAll();
+            mLock.signalWork();
             while ((!mWaitingForSurface) && (!mExited)) {
-                try {
-                    sGLThreadManager.wait();
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
+                mLock.awaitSurface();
             }
+        } finally {
+            mLock.unlock();
         }
     }
 
     public void onWindowResize(int w, int h) {
-        synchronized (sGLThreadManager) {
+        mLock.lock();
+        try {
             mWidth = w;
             mHeight = h;
             mSizeChanged = true;
@@ -517,7 +624,7 @@ class GLThread extends Thread {
                 return;
             }
 
-            sGLThreadManager.notifyAll();
+            mLock.signalWork();
 
             // Wait for thread to react to resize and render a frame
             while (!mExited && !mPaused && !mRenderComplete
@@ -525,12 +632,10 @@ class GLThread extends Thread {
                 if (mEnableLog) {
                     Log.i("Main thread", "onWindowResize waiting for render complete from tid=" + getId());
                 }
-                try {
-                    sGLThreadManager.wait();
-                } catch (InterruptedException ex) {
-                    Thread.currentThread().interrupt();
-                }
+                mLock.awaitRenderComplete();
             }
+        } finally {
+            mLock.unlock();
         }
     }
 
@@ -545,44 +650,43 @@ class GLThread extends Thread {
     }
 
     public void onPause() {
-        synchronized (sGLThreadManager) {
+        mLock.lock();
+        try {
             if (mEnableLog) {
                 Log.i("GLThread", "onPause tid=" + getId());
             }
             mRequestPaused = true;
-            sGLThreadManager.notifyAll();
+            mLock.signalWork();
             while ((!mExited) && (!mPaused)) {
                 if (mEnableLog) {
                     Log.i("Main thread", "onPause waiting for mPaused.");
                 }
-                try {
-                    sGLThreadManager.wait();
-                } catch (InterruptedException ex) {
-                    Thread.currentThread().interrupt();
-                }
+                mLock.awaitPause();
             }
+        } finally {
+            mLock.unlock();
         }
     }
 
     public void onResume() {
-        synchronized (sGLThreadManager) {
+        mLock.lock();
+        try {
             if (mEnableLog) {
                 Log.i("GLThread", "onResume tid=" + getId());
             }
             mRequestPaused = false;
             mRequestRender = true;
             mRenderComplete = false;
-            sGLThreadManager.notifyAll();
+            mLock.signalWork();
             while ((!mExited) && mPaused && (!mRenderComplete)) {
                 if (mEnableLog) {
                     Log.i("Main thread", "onResume waiting for !mPaused.");
                 }
-                try {
-                    sGLThreadManager.wait();
-                } catch (InterruptedException ex) {
-                    Thread.currentThread().interrupt();
-                }
+                // Both the pause change and the render notification signal render complete.
+                mLock.awaitRenderComplete();
             }
+        } finally {
+            mLock.unlock();
         }
     }
 
@@ -595,25 +699,47 @@ class GLThread extends Thread {
         if (r == null) {
             throw new IllegalArgumentException("r must not be null");
         }
-        synchronized (sGLThreadManager) {
-            mEventQueue.add(r);
-            sGLThreadManager.notifyAll();
+        // The render thread only waits when the queue is empty, so only the
+        // event that makes it non-empty needs to wake it.
+        if (mEventQueue.offer(r)) {
+            mLock.lock();
+            try {
+                mLock.signalWork();
+            } finally {
+                mLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Set how long the render thread may spend running queued events in one
+     * batch. Events left over run after the next frame.
+     *
+     * @param budgetNanos at least one event runs per batch
+     */
+    public void setEventBudget(long budgetNanos) {
+        if (budgetNanos < 0) {
+            throw new IllegalArgumentException("budgetNanos " + budgetNanos);
         }
+        mEventBudgetNanos = budgetNanos;
+    }
+
+    public EventQueue getEventQueue() {
+        return mEventQueue;
     }
 
     public void requestExitAndWait() {
         // don't call this from GLThread thread or it is a guaranteed
         // deadlock!
-        synchronized (sGLThreadManager) {
+        mLock.lock();
+        try {
             mShouldExit = true;
-            sGLThreadManager.notifyAll();
+            mLock.signalWork();
             while (!mExited) {
-                try {
-                    sGLThreadManager.wait();
-                } catch (InterruptedException ex) {
-                    Thread.currentThread().interrupt();
-                }
+                mLock.awaitExit();
             }
+        } finally {
+            mLock.unlock();
         }
     }
 }
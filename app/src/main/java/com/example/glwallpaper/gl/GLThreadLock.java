@@ -0,0 +1,121 @@
+package com.example.glwallpaper.gl;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * On 2026-10-18
+ * 每个 GLThread 自己的锁, 代替所有 GLThread 共用的 sGLThreadManager 监视器.
+ * 一个 engine 的 requestRender 只唤醒它自己的 GL 线程, 不会唤醒其他 engine 的 GL 线程和主线程
+ * <p>
+ * GL 线程只在 work 上等待, 主线程分别在 pause, surface, render complete, exit 上等待各自关心的状态.
+ * 除了 get 开头的统计方法, 都需要先持有锁
+ */
+final class GLThreadLock {
+
+    private final ReentrantLock mLock = new ReentrantLock();
+    private final Condition mWork = mLock.newCondition();
+    private final Condition mPause = mLock.newCondition();
+    private final Condition mSurface = mLock.newCondition();
+    private final Condition mRenderComplete = mLock.newCondition();
+    private final Condition mExit = mLock.newCondition();
+
+    // GL 线程从等待中返回的次数, 包括没有工作可做的
+    private long mWakeupCount;
+    // 主线程从等待中返回的次数
+    private long mWaiterWakeupCount;
+    private long mSignalCount;
+
+    void lock() {
+        mLock.lock();
+    }
+
+    void unlock() {
+        mLock.unlock();
+    }
+
+    /**
+     * 状态有变化, GL 线程需要重新检查
+     */
+    void signalWork() {
+        mSignalCount++;
+        mWork.signal();
+    }
+
+    /**
+     * GL 线程唯一等待的地方
+     */
+    void awaitWork() throws InterruptedException {
+        mWork.await();
+        mWakeupCount++;
+    }
+
+    void signalPause() {
+        mPause.signalAll();
+    }
+
+    void awaitPause() {
+        mPause.awaitUninterruptibly();
+        mWaiterWakeupCount++;
+    }
+
+    void signalSurface() {
+        mSurface.signalAll();
+    }
+
+    void awaitSurface() {
+        mSurface.awaitUninterruptibly();
+        mWaiterWakeupCount++;
+    }
+
+    void signalRenderComplete() {
+        mRenderComplete.signalAll();
+    }
+
+    void awaitRenderComplete() {
+        mRenderComplete.awaitUninterruptibly();
+        mWaiterWakeupCount++;
+    }
+
+    void awaitExit() {
+        mExit.awaitUninterruptibly();
+        mWaiterWakeupCount++;
+    }
+
+    /**
+     * GL 线程退出, 唤醒所有等待的主线程
+     */
+    void signalExited() {
+        mExit.signalAll();
+        mPause.signalAll();
+        mSurface.signalAll();
+        mRenderComplete.signalAll();
+    }
+
+    long getWakeupCount() {
+        mLock.lock();
+        try {
+            return mWakeupCount;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    long getWaiterWakeupCount() {
+        mLock.lock();
+        try {
+            return mWaiterWakeupCount;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    long getSignalCount() {
+        mLock.lock();
+        try {
+            return mSignalCount;
+        } finally {
+            mLock.unlock();
+        }
+    }
+}
@@ -5,6 +5,7 @@ import android.opengl.GLES20;
 import android.opengl.GLUtils;
 import android.util.Log;
 
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
@@ -18,14 +19,115 @@ public class GLUtil {
 
     private static final String GL_LOG_TAG = "GLUtil";
 
-    public static void checkGlError() {
+    /**
+     * @return 没有错误时返回 true
+     */
+    public static boolean checkGlError() {
         int error = glGetError();
         if (error != GLES20.GL_NO_ERROR) {
             Log.w(GL_LOG_TAG, "GL error = 0x" + Integer.toHexString(error), new Throwable());
+            return false;
         }
+        return true;
     }
 
     public static int loadTexture(Bitmap bitmap) {
+        return loadTexture(bitmap, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE);
+    }
+
+    /**
+     * @param format GL_RGBA / GL_RGB / GL_ALPHA, 需要与 bitmap 的 config 对应
+     * @param type   GL_UNSIGNED_BYTE / GL_UNSIGNED_SHORT_5_6_5
+     * @return 纹理 id, 上传失败时返回 0
+     */
+    public static int loadTexture(Bitmap bitmap, int format, int type) {
+        int texture = createTexture();
+
+        // 565 / alpha 的行字节数不一定是 4 的倍数
+        GLES20.glPixelStorei(GLES20.GL_UNPACK_ALIGNMENT, 1);
+        GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, format, bitmap, type, 0);
+        GLES20.glPixelStorei(GLES20.GL_UNPACK_ALIGNMENT, 4);
+        return checkTexture(texture);
+    }
+
+    /**
+     * 上传紧密排列 (没有行填充) 的像素, 不需要 Bitmap
+     *
+     * @return 纹理 id, 上传失败时返回 0
+     */
+    public static int loadTexture(int format, int type, int width, int height, Buffer pixels) {
+        int texture = createTexture();
+
+        GLES20.glPixelStorei(GLES20.GL_UNPACK_ALIGNMENT, 1);
+        GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, format, width, height, 0,
+                format, type, pixels);
+        GLES20.glPixelStorei(GLES20.GL_UNPACK_ALIGNMENT, 4);
+        return checkTexture(texture);
+    }
+
+    /**
+     * 只分配纹理存储, 像素之后通过 loadTextureRows 分条上传
+     *
+     * @return 纹理 id, 失败时返回 0
+     */
+    public static int allocTexture(int format, int type, int width, int height) {
+        int texture = createTexture();
+
+        GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, format, width, height, 0,
+                format, type, null);
+        return checkTexture(texture);
+    }
+
+    /**
+     * 上传从第 y 行开始的 rows 行紧密排列的像素
+     *
+     * @return 没有错误时返回 true
+     */
+    public static boolean loadTextureRows(int texture, int format, int type,
+                                          int y, int width, int rows, Buffer pixels) {
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture);
+        GLES20.glPixelStorei(GLES20.GL_UNPACK_ALIGNMENT, 1);
+        GLES20.glTexSubImage2D(GLES20.GL_TEXTURE_2D, 0, 0, y, width, rows, format, type, pixels);
+        GLES20.glPixelStorei(GLES20.GL_UNPACK_ALIGNMENT, 4);
+        return checkGlError();
+    }
+
+    /**
+     * @param internalFormat 见 GLCapabilities#compressedFormat
+     * @param width          补齐到 block 倍数之后的宽度
+     * @param height         补齐到 block 倍数之后的高度
+     * @return 纹理 id, 上传失败时返回 0
+     */
+    public static int loadCompressedTexture(int internalFormat, int width, int height, Buffer data) {
+        int texture = createTexture();
+
+        GLES20.glCompressedTexImage2D(GLES20.GL_TEXTURE_2D, 0, internalFormat, width, height, 0,
+                data.remaining(), data);
+        return checkTexture(texture);
+    }
+
+    /**
+     * 生成 mipmap 并切换到三线性过滤, 纹理需要完整, GLES2 上还需要是 2 的幂次
+     */
+    public static void generateMipmap(int texture) {
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture);
+        GLES20.glGenerateMipmap(GLES20.GL_TEXTURE_2D);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER,
+                GLES20.GL_LINEAR_MIPMAP_LINEAR);
+        checkGlError();
+    }
+
+    public static void setMinFilter(int texture, int filter) {
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, filter);
+        checkGlError();
+    }
+
+    // 生成并绑定纹理, 设置线性过滤和 clamp
+    private static int createTexture() {
         int[] textures = new int[1];
 
         GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
@@ -41,10 +143,15 @@ public class GLUtil {
 
         GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
         GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+        return texture;
+    }
 
-        GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, bitmap, GLES20.GL_UNSIGNED_BYTE, 0);
-        checkGlError();
-
+    // 上传出错时删除纹理, 返回 0
+    private static int checkTexture(int texture) {
+        if (!checkGlError()) {
+            GLES20.glDeleteTextures(1, new int[]{texture}, 0);
+            return 0;
+        }
         return texture;
     }
 
@@ -2,10 +2,15 @@ package com.example.glwallpaper.gl;
 
 import android.service.wallpaper.WallpaperService;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.SurfaceHolder;
 
 import androidx.annotation.IntDef;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * On 2021-11-19
  * 参考 GLSurfaceView 搞的 GLWallpaperService
@@ -14,13 +19,35 @@ public abstract class GLWallpaperService extends WallpaperService {
 
     private static final String TAG = "GLWallpaperService";
 
+    // 所有 engine 共用, 第一个 setShareEGLContext 的 engine 创建
+    private SharedContextFactory mSharedContextFactory;
+
     public static final int RENDERMODE_WHEN_DIRTY = 0;
     public static final int RENDERMODE_CONTINUOUSLY = 1;
+    /**
+     * 与 WHEN_DIRTY 一样只在 requestRender 后绘制, 但绘制推迟到下一个 Choreographer 帧回调,
+     * 一个 vsync 内的多次 requestRender 只画一帧, 帧率不会超过屏幕刷新率
+     */
+    public static final int RENDERMODE_VSYNC = 2;
 
-    @IntDef({RENDERMODE_WHEN_DIRTY, RENDERMODE_CONTINUOUSLY})
+    @IntDef({RENDERMODE_WHEN_DIRTY, RENDERMODE_CONTINUOUSLY, RENDERMODE_VSYNC})
     public @interface RenderMode {
     }
 
+    private synchronized SharedContextFactory getSharedContextFactory(int clientVersion) {
+        if (mSharedContextFactory == null) {
+            mSharedContextFactory = new SharedContextFactory(clientVersion);
+        }
+        return mSharedContextFactory;
+    }
+
+    /**
+     * 没有 engine 使用共享的 context 时返回 null
+     */
+    public synchronized GLResourceRegistry getSharedResourceRegistry() {
+        return mSharedContextFactory != null ? mSharedContextFactory.getRegistry() : null;
+    }
+
     public class GLEngine extends Engine {
 
         private GLThread mGLThread;
@@ -30,8 +57,28 @@ public abstract class GLWallpaperService extends WallpaperService {
         private EGLContextFactory mEGLContextFactory;
         private EGLWindowSurfaceFactory mEGLWindowSurfaceFactory;
         private GLWrapper mGLWrapper;
+        private boolean mShareEGLContext;
         private boolean mEnableLog = false;
 
+        private volatile int mRenderMode = RENDERMODE_WHEN_DIRTY;
+        // engine 所在线程 (主线程) 的 Choreographer
+        private Choreographer mChoreographer;
+        // 已经 post 了帧回调, 之后的 requestRender 在这一帧一起处理. 只有帧回调和 cancelFrame 会清除
+        private final AtomicBoolean mFrameScheduled = new AtomicBoolean();
+        private final Choreographer.FrameCallback mFrameCallback = new Choreographer.FrameCallback() {
+            @Override
+            public void doFrame(long frameTimeNanos) {
+                // 其他线程的 requestRender 在设置标记和 post 之间可能遇到 cancelFrame, 这时 remove
+                // 不到回调, 回调仍然会执行. 标记已经被 cancelFrame 清除, 不再绘制
+                if (!mFrameScheduled.getAndSet(false)) {
+                    return;
+                }
+                if (mGLThread != null && isVisible()) {
+                    mGLThread.requestRender();
+                }
+            }
+        };
+
         private void checkRenderThreadState() {
             if (mGLThread != null) {
                 throw new IllegalStateException(
@@ -64,6 +111,15 @@ public abstract class GLWallpaperService extends WallpaperService {
             mEGLWindowSurfaceFactory = EGLWindowSurfaceFactory;
         }
 
+        /**
+         * 与同一个 service 中其他共享的 engine 使用同一个 share group, 纹理和 program
+         * 只需要创建一次, 见 GLResourceRegistry. 没有调用 setEGLContextFactory 时生效
+         */
+        public void setShareEGLContext(boolean share) {
+            checkRenderThreadState();
+            mShareEGLContext = share;
+        }
+
         public void setGLWrapper(GLWrapper GLWrapper) {
             checkRenderThreadState();
             mGLWrapper = GLWrapper;
@@ -79,7 +135,11 @@ public abstract class GLWallpaperService extends WallpaperService {
                 mEGLConfigChooser = new SimpleEGLConfigChooser(true, mEGLContextClientVersion);
             }
             if (mEGLContextFactory == null) {
-                mEGLContextFactory = new DefaultContextFactory(mEGLContextClientVersion);
+                if (mShareEGLContext) {
+                    mEGLContextFactory = getSharedContextFactory(mEGLContextClientVersion);
+                } else {
+                    mEGLContextFactory = new DefaultContextFactory(mEGLContextClientVersion);
+                }
             }
             if (mEGLWindowSurfaceFactory == null) {
                 mEGLWindowSurfaceFactory = new DefaultWindowSurfaceFactory();
@@ -90,14 +150,66 @@ public abstract class GLWallpaperService extends WallpaperService {
         }
 
         public void setRenderMode(@RenderMode int renderMode) {
-            mGLThread.setRenderMode(renderMode);
+            if (renderMode == RENDERMODE_VSYNC) {
+                // GL 线程本身按需绘制, 由帧回调请求
+                mGLThread.setRenderMode(RENDERMODE_WHEN_DIRTY);
+            } else {
+                mGLThread.setRenderMode(renderMode);
+                cancelFrame();
+            }
+            mRenderMode = renderMode;
         }
 
+        private void cancelFrame() {
+            if (mFrameScheduled.getAndSet(false)) {
+                mChoreographer.removeFrameCallback(mFrameCallback);
+            }
+        }
+
+        /**
+         * 在 GL 线程执行 r
+         */
+        public void queueEvent(Runnable r) {
+            mGLThread.queueEvent(r);
+        }
+
+        /**
+         * GL 线程每一批执行事件的时间预算, 超出后先画一帧, 默认
+         * {@link GLThread#DEFAULT_EVENT_BUDGET_NANOS}
+         */
+        public void setEventBudget(long budgetNanos) {
+            mGLThread.setEventBudget(budgetNanos);
+        }
+
+        /**
+         * 事件队列长度和延迟, 用于日志
+         */
+        public EventQueue getEventQueue() {
+            return mGLThread.getEventQueue();
+        }
+
+        /**
+         * 帧耗时和 EGL 生命周期的统计, 也会输出到 dumpsys
+         */
+        public FrameMetrics getFrameMetrics() {
+            return mGLThread.getMetrics();
+        }
+
+        /**
+         * 可以在任意线程调用
+         */
         public void requestRender() {
             if (!isVisible()) {
                 return;
             }
-            if (mGLThread != null) {
+            if (mGLThread == null) {
+                return;
+            }
+            if (mRenderMode == RENDERMODE_VSYNC) {
+                if (mFrameScheduled.compareAndSet(false, true)) {
+                    mChoreographer.postFrameCallback(mFrameCallback);
+                }
+            } else {
                 mGLThread.requestRender();
             }
         }
@@ -105,6 +217,7 @@ public abstract class GLWallpaperService extends WallpaperService {
         @Override
         public void onCreate(SurfaceHolder surfaceHolder) {
             super.onCreate(surfaceHolder);
+            mChoreographer = Choreographer.getInstance();
             if (mEnableLog) {
                 Log.d(TAG, "engine onCreate");
             }
@@ -153,6 +266,7 @@ public abstract class GLWallpaperService extends WallpaperService {
             if (visible) {
                 mGLThread.onResume();
             } else {
+                cancelFrame();
                 mGLThread.onPause();
             }
         }
@@ -174,10 +288,33 @@ public abstract class GLWallpaperService extends WallpaperService {
             if (mEnableLog) {
                 Log.d(TAG, "engine onDestroy");
             }
+            cancelFrame();
             if (mGLThread != null) {
                 mGLThread.requestExitAndWait();
             }
         }
+
+        /**
+         * adb shell dumpsys activity service 壁纸服务, 每个 engine 输出 GL 线程的统计
+         */
+        @Override
+        protected void dump(String prefix, FileDescriptor fd, PrintWriter out, String[] args) {
+            super.dump(prefix, fd, out, args);
+            GLThread thread = mGLThread;
+            if (thread == null) {
+                return;
+            }
+            out.print(prefix);
+            out.print("GLThread: frames=");
+            out.print(thread.getFrameCount());
+            out.print(" wakeups=");
+            out.print(thread.getWakeupCount());
+            out.print(" renderMode=");
+            out.print(mRenderMode);
+            out.print(" events=");
+            out.println(thread.getEventQueue());
+            thread.getMetrics().dump(prefix + "  ", out);
+        }
     }
 
 }
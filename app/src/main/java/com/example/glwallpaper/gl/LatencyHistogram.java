@@ -0,0 +1,94 @@
+package com.example.glwallpaper.gl;
+
+import java.util.Locale;
+
+/**
+ * On 2026-10-18
+ * 固定分桶的耗时直方图, 记录不分配内存, 可以一直开着. 分位数是所在桶的上界, 精度取决于分桶
+ * <p>
+ * 只在一个线程 record, 其他线程读取时可能和正在进行的 record 相差一次, 用于统计足够
+ */
+public final class LatencyHistogram {
+
+    // 桶的上界, 微秒. 帧耗时附近分得细一些, 最后一个桶是超过 500ms 的
+    private static final long[] BOUNDS_US = {
+            250, 500, 1000, 2000, 3000, 4000, 6000, 8000, 10000, 12000, 16000, 20000,
+            25000, 33000, 50000, 100000, 250000, 500000
+    };
+
+    private final long[] mCounts = new long[BOUNDS_US.length + 1];
+    private volatile long mCount;
+    private volatile long mSumNanos;
+    private volatile long mMaxNanos;
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+        long us = nanos / 1000;
+        int bucket = 0;
+        while (bucket < BOUNDS_US.length && us > BOUNDS_US[bucket]) {
+            bucket++;
+        }
+        mCounts[bucket]++;
+        mSumNanos += nanos;
+        if (nanos > mMaxNanos) {
+            mMaxNanos = nanos;
+        }
+        mCount++;
+    }
+
+    public long count() {
+        return mCount;
+    }
+
+    public long max() {
+        return mMaxNanos;
+    }
+
+    public long mean() {
+        long count = mCount;
+        return count == 0 ? 0 : mSumNanos / count;
+    }
+
+    /**
+     * @param percent 0 - 100
+     * @return 所在桶的上界, 不超过 max. 没有记录时返回 0
+     */
+    public long percentile(float percent) {
+        long count = 0;
+        for (long c : mCounts) {
+            count += c;
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percent / 100f * count));
+        long seen = 0;
+        for (int i = 0; i < BOUNDS_US.length; i++) {
+            seen += mCounts[i];
+            if (seen >= rank) {
+                return Math.min(BOUNDS_US[i] * 1000, mMaxNanos);
+            }
+        }
+        return mMaxNanos;
+    }
+
+    public void reset() {
+        for (int i = 0; i < mCounts.length; i++) {
+            mCounts[i] = 0;
+        }
+        mCount = 0;
+        mSumNanos = 0;
+        mMaxNanos = 0;
+    }
+
+    /**
+     * 次数, 平均, p50 / p90 / p99 / max, 单位 ms
+     */
+    public String summary() {
+        return String.format(Locale.US, "count=%d mean=%.2fms p50=%.2fms p90=%.2fms p99=%.2fms max=%.2fms",
+                count(), mean() / 1e6, percentile(50) / 1e6, percentile(90) / 1e6, percentile(99) / 1e6,
+                max() / 1e6);
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.glwallpaper.gl;
+
+/**
+ * On 2026-10-18
+ * 图层显示得比纹理小很多时 (例如预览界面), 使用 mipmap 和三线性过滤, 减少采样的带宽
+ */
+public final class MipmapPolicy {
+
+    /**
+     * 纹理至少是显示尺寸的 2 倍时才生成 mipmap, 否则只会用到第 0 级
+     */
+    public static final float MIN_RATIO = 2f;
+
+    private MipmapPolicy() {
+    }
+
+    /**
+     * @param imageWidth  纹理的显示宽度 (已按 exif 旋转)
+     * @param imageHeight 纹理的显示高度
+     * @param quadWidth   屏幕上绘制的宽度, 像素
+     * @param quadHeight  屏幕上绘制的高度, 像素
+     */
+    public static boolean shouldMipmap(int imageWidth, int imageHeight, int quadWidth, int quadHeight) {
+        if (quadWidth <= 0 || quadHeight <= 0) {
+            return false;
+        }
+        float ratio = Math.min(imageWidth / (float) quadWidth, imageHeight / (float) quadHeight);
+        return ratio >= MIN_RATIO;
+    }
+
+    public static boolean isPowerOfTwo(int value) {
+        return value > 0 && (value & (value - 1)) == 0;
+    }
+
+    /**
+     * 不大于 value 的最大的 2 的幂次
+     */
+    public static int floorPowerOfTwo(int value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException("value " + value);
+        }
+        return Integer.highestOneBit(value);
+    }
+
+    /**
+     * 整个 mipmap 链的字节数, 包括第 0 级
+     */
+    public static long chainByteCount(int width, int height, int bytesPerPixel) {
+        long total = 0;
+        while (true) {
+            total += (long) width * height * bytesPerPixel;
+            if (width == 1 && height == 1) {
+                return total;
+            }
+            width = Math.max(1, width / 2);
+            height = Math.max(1, height / 2);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.glwallpaper.gl;
+
+/**
+ * On 2026-10-18
+ * 逐行扫描 ARGB 像素, 选择能无损表示该图层的最小纹理格式
+ * <p>
+ * 全不透明 -> RGB_565, 只有透明度 (颜色全黑) -> ALPHA_8, 其余 -> RGBA_8888
+ */
+public class PixelAnalyzer {
+
+    private boolean mOpaque = true;
+    private boolean mColorless = true;
+
+    public void reset() {
+        mOpaque = true;
+        mColorless = true;
+    }
+
+    /**
+     * @param argb   非预乘的 ARGB 像素, 同 Bitmap#getPixels
+     * @param offset 起始下标
+     * @param count  像素个数
+     */
+    public void accept(int[] argb, int offset, int count) {
+        boolean opaque = mOpaque;
+        boolean colorless = mColorless;
+        for (int i = offset, end = offset + count; i < end; i++) {
+            int pixel = argb[i];
+            if (opaque && (pixel >>> 24) != 0xff) {
+                opaque = false;
+            }
+            if (colorless && (pixel & 0x00ffffff) != 0) {
+                colorless = false;
+            }
+            if (!opaque && !colorless) {
+                break;
+            }
+        }
+        mOpaque = opaque;
+        mColorless = colorless;
+    }
+
+    /**
+     * 还有必要继续扫描吗, 已经确定为 RGBA_8888 时返回 false
+     */
+    public boolean isUndecided() {
+        return mOpaque || mColorless;
+    }
+
+    public boolean isOpaque() {
+        return mOpaque;
+    }
+
+    public TextureFormat result() {
+        if (mOpaque) {
+            return TextureFormat.RGB_565;
+        }
+        if (mColorless) {
+            return TextureFormat.ALPHA_8;
+        }
+        return TextureFormat.RGBA_8888;
+    }
+}
@@ -9,4 +9,9 @@ public interface Renderer extends GLSurfaceView.Renderer {
 
     void release();
 
+    /**
+     * eglSwapBuffers 返回 EGL_CONTEXT_LOST 时在 GL 线程回调, 之前创建的纹理和 program 都已失效
+     */
+    void onContextLost();
+
 }
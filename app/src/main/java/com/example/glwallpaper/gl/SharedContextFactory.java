@@ -0,0 +1,83 @@
+package com.example.glwallpaper.gl;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.microedition.khronos.egl.EGL10;
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.egl.EGLContext;
+import javax.microedition.khronos.egl.EGLDisplay;
+
+/**
+ * On 2026-10-18
+ * 一个 service 中的所有 engine 共用一个 share group, 纹理和 program 通过 GLResourceRegistry
+ * 共享, 同一套壁纸不管有几个 engine 只占一份显存
+ * <p>
+ * 新的 context 与 group 中任意一个还存在的 context 共享. config 不兼容等原因创建失败时,
+ * 退回到不共享的 context, 它没有 registry, 对象直接创建和删除. 所有线程共用一个实例
+ */
+public class SharedContextFactory implements EGLContextFactory {
+
+    private static final String TAG = "SharedContextFactory";
+    private static final int EGL_CONTEXT_CLIENT_VERSION = 0x3098;
+
+    private final int mEGLContextClientVersion;
+
+    // group 中还存在的 context, 最后一个销毁时 group 中的对象也随之销毁
+    private final List<EGLContext> mContexts = new ArrayList<>();
+    private final GLResourceRegistry mRegistry = new GLResourceRegistry();
+
+    public SharedContextFactory(int EGLContextClientVersion) {
+        mEGLContextClientVersion = EGLContextClientVersion;
+    }
+
+    @Override
+    public synchronized EGLContext createContext(EGL10 egl, EGLDisplay display, EGLConfig config) {
+        int[] attrib_list = {EGL_CONTEXT_CLIENT_VERSION, mEGLContextClientVersion,
+                EGL10.EGL_NONE};
+        int[] attribs = mEGLContextClientVersion != 0 ? attrib_list : null;
+
+        EGLContext share = mContexts.isEmpty() ? EGL10.EGL_NO_CONTEXT : mContexts.get(0);
+        EGLContext context = egl.eglCreateContext(display, config, share, attribs);
+        if (context != null && context != EGL10.EGL_NO_CONTEXT) {
+            mContexts.add(context);
+            Log.i(TAG, "context " + context + " joined group, size=" + mContexts.size());
+            return context;
+        }
+        if (share == EGL10.EGL_NO_CONTEXT) {
+            return context;
+        }
+        Log.w(TAG, "share context failed: " + egl.eglGetError() + ", fallback to isolated context");
+        return egl.eglCreateContext(display, config, EGL10.EGL_NO_CONTEXT, attribs);
+    }
+
+    /**
+     * context 所在的 share group 的 registry, 没有加入 group 的 context 返回 null
+     */
+    synchronized GLResourceRegistry getRegistry(EGLContext context) {
+        return mContexts.contains(context) ? mRegistry : null;
+    }
+
+    @Override
+    public synchronized void destroyContext(EGL10 egl, EGLDisplay display, EGLContext context) {
+        if (mContexts.remove(context)) {
+            if (mContexts.isEmpty()) {
+                mRegistry.clear();
+            }
+            Log.i(TAG, "context " + context + " left group, size=" + mContexts.size());
+        }
+        if (!egl.eglDestroyContext(display, context)) {
+            Log.e(TAG, "display:" + display + " context: " + context);
+        }
+    }
+
+    public synchronized int getContextCount() {
+        return mContexts.size();
+    }
+
+    public GLResourceRegistry getRegistry() {
+        return mRegistry;
+    }
+}
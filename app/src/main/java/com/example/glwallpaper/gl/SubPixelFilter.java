@@ -0,0 +1,109 @@
+package com.example.glwallpaper.gl;
+
+/**
+ * On 2026-10-18
+ * 过滤掉不会让任何图层在屏幕上移动足够像素的位移, 例如手机平放在桌上时传感器的抖动
+ * <p>
+ * 位移是 GLBitmap.draw 的 translate, 单位是归一化坐标, 整个 surface 宽度是 2. 图层的位移是
+ * translate / moveFactor, 所以只需要看 moveFactor 绝对值最小, 移动最多的图层.
+ * 和上一次接受的位移比较, 多次被过滤的小变化累积超出阈值后仍然会被接受.
+ * accept 在传感器线程调用, 其他方法可以在 GL 线程调用
+ */
+public final class SubPixelFilter {
+
+    public static final float DEFAULT_THRESHOLD_PX = 0.5f;
+
+    private volatile float mThreshold = DEFAULT_THRESHOLD_PX;
+    private volatile int mSurfaceWidth;
+    private volatile int mSurfaceHeight;
+    private volatile float mMinMoveFactor = 1;
+
+    // 只在调用 accept 的线程访问
+    private boolean mHasLast;
+    private float mLastX;
+    private float mLastY;
+
+    private volatile long mAcceptCount;
+    private volatile long mSkipCount;
+
+    /**
+     * @param thresholdPx 任何图层移动不到这么多像素时过滤掉, 0 表示不过滤
+     */
+    public void setThreshold(float thresholdPx) {
+        if (!(thresholdPx >= 0)) {
+            throw new IllegalArgumentException("threshold " + thresholdPx);
+        }
+        mThreshold = thresholdPx;
+    }
+
+    public void setSurfaceSize(int width, int height) {
+        mSurfaceWidth = width;
+        mSurfaceHeight = height;
+    }
+
+    /**
+     * @param factors 每个图层的 moveFactor
+     * @param layerCount 图层数, 多于 factors 的图层 moveFactor 是 1
+     */
+    public void setMoveFactors(float[] factors, int layerCount) {
+        float min = layerCount > factors.length ? 1 : Float.MAX_VALUE;
+        for (int i = 0; i < Math.min(factors.length, layerCount); i++) {
+            min = Math.min(min, Math.abs(factors[i]));
+        }
+        mMinMoveFactor = layerCount == 0 ? 1 : min;
+    }
+
+    /**
+     * 位移 delta 在 size 像素的 surface 上, moveFactor 的图层移动的像素数
+     */
+    public static float pixelDelta(float delta, int size, float moveFactor) {
+        return Math.abs(delta / moveFactor) * size / 2f;
+    }
+
+    /**
+     * 位移变化 delta 是否让移动最多的图层移动至少 threshold 像素, 不改变比较基准.
+     * 例如判断按当前速度每帧的移动是否可见
+     */
+    public boolean isVisible(float deltaX, float deltaY) {
+        float threshold = mThreshold;
+        int width = mSurfaceWidth;
+        int height = mSurfaceHeight;
+        float factor = mMinMoveFactor;
+        if (width <= 0 || height <= 0 || factor == 0 || threshold == 0) {
+            return deltaX != 0 || deltaY != 0;
+        }
+        return pixelDelta(deltaX, width, factor) >= threshold
+                || pixelDelta(deltaY, height, factor) >= threshold;
+    }
+
+    /**
+     * @return 有图层移动了至少 threshold 像素, 需要绘制. 此时记为新的比较基准
+     */
+    public boolean accept(float translateX, float translateY) {
+        float threshold = mThreshold;
+        int width = mSurfaceWidth;
+        int height = mSurfaceHeight;
+        float factor = mMinMoveFactor;
+        // 还不知道 surface 大小, 或者有图层的 moveFactor 是 0 (不会画出来)
+        boolean unknown = width <= 0 || height <= 0 || factor == 0;
+        if (mHasLast && !unknown && threshold > 0
+                && pixelDelta(translateX - mLastX, width, factor) < threshold
+                && pixelDelta(translateY - mLastY, height, factor) < threshold) {
+            mSkipCount++;
+            return false;
+        }
+        mHasLast = true;
+        mLastX = translateX;
+        mLastY = translateY;
+        mAcceptCount++;
+        return true;
+    }
+
+    public long getAcceptCount() {
+        return mAcceptCount;
+    }
+
+    public long getSkipCount() {
+        return mSkipCount;
+    }
+}
@@ -0,0 +1,258 @@
+package com.example.glwallpaper.gl;
+
+import android.opengl.GLES20;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * On 2026-10-18
+ * 把小的图层 (贴纸, 抠图) 裁掉透明的边缘后合并到一张或几张纹理中, 减少纹理对象的数量和切换
+ * <p>
+ * 在工作线程 build, 之后每个图层通过 Region 绘制页面中属于自己的部分. 页面的像素一直保留,
+ * context 丢失后重新上传
+ */
+public final class TextureAtlas {
+
+    private static final String TAG = "TextureAtlas";
+
+    public static final int MAX_PAGE_SIZE = 2048;
+    // 图层之间留出 1 像素, 复制边缘像素, 线性过滤时不会采样到相邻的图层
+    private static final int PADDING = 1;
+
+    /**
+     * 图集中的一页, 对应一个纹理
+     */
+    public static final class Page {
+        final TextureFormat format;
+        final int width;
+        final int height;
+        final ByteBuffer pixels;
+        private int mTextureId = -1;
+
+        Page(TextureFormat format, int width, int height) {
+            this.format = format;
+            this.width = width;
+            this.height = height;
+            pixels = ByteBuffer.allocateDirect((int) format.byteCount(width, height));
+        }
+
+        /**
+         * 还没有上传时, 在预算内整页上传, 需要在 GL 线程调用
+         *
+         * @return 纹理可以使用时返回 true
+         */
+        boolean prepare(UploadScheduler scheduler) {
+            if (mTextureId != -1) {
+                return true;
+            }
+            long bytes = pixels.capacity();
+            if (!scheduler.tryUpload(bytes)) {
+                return false;
+            }
+            mTextureId = GLUtil.loadTexture(format.glFormat, format.glType, width, height,
+                    pixels.duplicate());
+            scheduler.onUploaded(bytes);
+            return true;
+        }
+
+        int getTextureId() {
+            return mTextureId;
+        }
+
+        void onContextLost() {
+            mTextureId = -1;
+        }
+
+        /**
+         * 多个图层共用, 重复调用没有影响, 之后还在使用的图层会重新上传
+         */
+        void deleteTexture() {
+            if (mTextureId > 0) {
+                GLES20.glDeleteTextures(1, new int[]{mTextureId}, 0);
+            }
+            mTextureId = -1;
+        }
+    }
+
+    /**
+     * 图层在页面中的位置
+     */
+    public static final class Region {
+        final Page page;
+        // 内容在页面中的左上角
+        final int x;
+        final int y;
+        // 裁剪后的内容在图层纹理中的范围 (未按 exif 旋转), 右下不包含
+        final int left;
+        final int top;
+        final int right;
+        final int bottom;
+
+        Region(Page page, int x, int y, int left, int top, int right, int bottom) {
+            this.page = page;
+            this.x = x;
+            this.y = y;
+            this.left = left;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+        }
+    }
+
+    private final List<Page> mPages;
+    private final int mLayerCount;
+    private final float mEfficiency;
+
+    private TextureAtlas(List<Page> pages, int layerCount, float efficiency) {
+        mPages = pages;
+        mLayerCount = layerCount;
+        mEfficiency = efficiency;
+    }
+
+    // 等待合并的图层
+    private static final class Candidate {
+        final GLBitmap layer;
+        final TextureData data;
+        final int[] bounds = new int[4];
+
+        Candidate(GLBitmap layer, TextureData data) {
+            this.layer = layer;
+            this.data = data;
+        }
+    }
+
+    /**
+     * 每种格式至少有两个可以合并的图层时才建立图集, 合并的图层改为通过 Region 绘制,
+     * 并释放自己的像素. 需要在上传纹理之前, 在工作线程调用
+     *
+     * @param layers 可以包含 null
+     * @return 没有合并任何图层时返回 null
+     */
+    public static TextureAtlas build(List<GLBitmap> layers) {
+        int pageSize = Math.min(MAX_PAGE_SIZE, GLCapabilities.knownMaxTextureSize());
+        // 只合并不超过页面一半的图层, 大的图层单独使用纹理
+        int maxLayerSize = pageSize / 2;
+        List<Page> pages = new ArrayList<>();
+        int layerCount = 0;
+        long contentArea = 0;
+        long pageArea = 0;
+        long sourceBytes = 0;
+
+        for (TextureFormat format : TextureFormat.values()) {
+            if (format.isCompressed()) {
+                continue;
+            }
+            List<Candidate> candidates = new ArrayList<>();
+            for (GLBitmap layer : layers) {
+                TextureData data = layer != null ? layer.getAtlasSource() : null;
+                if (data == null || data.format != format
+                        || data.width > maxLayerSize || data.height > maxLayerSize) {
+                    continue;
+                }
+                Candidate candidate = new Candidate(layer, data);
+                int alphaOffset = AlphaBounds.alphaOffset(format);
+                if (alphaOffset < 0) {
+                    candidate.bounds[2] = data.width;
+                    candidate.bounds[3] = data.height;
+                } else if (!AlphaBounds.find(data.pixels, data.width, data.height,
+                        format.bytesPerPixel, alphaOffset, candidate.bounds)) {
+                    // 全透明, 单独处理
+                    continue;
+                }
+                candidates.add(candidate);
+            }
+            if (candidates.size() < 2) {
+                continue;
+            }
+
+            int count = candidates.size();
+            int[] widths = new int[count];
+            int[] heights = new int[count];
+            for (int i = 0; i < count; i++) {
+                int[] bounds = candidates.get(i).bounds;
+                widths[i] = bounds[2] - bounds[0];
+                heights[i] = bounds[3] - bounds[1];
+            }
+            AtlasPacker.Result result = new AtlasPacker(pageSize, pageSize, PADDING).pack(widths, heights);
+            Page[] formatPages = new Page[result.getPageCount()];
+            for (int page = 0; page < formatPages.length; page++) {
+                formatPages[page] = new Page(format, result.getPageWidth(page), result.getPageHeight(page));
+                pages.add(formatPages[page]);
+            }
+            for (int i = 0; i < count; i++) {
+                if (result.pages[i] < 0) {
+                    continue;
+                }
+                Candidate candidate = candidates.get(i);
+                int[] bounds = candidate.bounds;
+                Page page = formatPages[result.pages[i]];
+                copyRegion(candidate.data, bounds, page, result.xs[i], result.ys[i]);
+                sourceBytes += format.byteCount(candidate.data.width, candidate.data.height);
+                candidate.layer.setAtlasRegion(new Region(page, result.xs[i], result.ys[i],
+                        bounds[0], bounds[1], bounds[2], bounds[3]));
+                layerCount++;
+            }
+            contentArea += result.getContentArea();
+            pageArea += result.getPageArea();
+        }
+
+        if (layerCount == 0) {
+            return null;
+        }
+        float efficiency = pageArea == 0 ? 0 : contentArea / (float) pageArea;
+        long pageBytes = 0;
+        for (Page page : pages) {
+            pageBytes += page.pixels.capacity();
+        }
+        Log.i(TAG, String.format(Locale.US, "%d layers -> %d pages, efficiency %.1f%%, bytes %d -> %d",
+                layerCount, pages.size(), efficiency * 100, sourceBytes, pageBytes));
+        return new TextureAtlas(pages, layerCount, efficiency);
+    }
+
+    // 逐行复制裁剪后的内容, 四周各复制一圈边缘像素到 padding 中
+    private static void copyRegion(TextureData data, int[] bounds, Page page, int x, int y) {
+        int bytesPerPixel = data.format.bytesPerPixel;
+        int left = bounds[0];
+        int top = bounds[1];
+        int right = bounds[2];
+        int bottom = bounds[3];
+        int width = right - left;
+        int srcRowBytes = data.width * bytesPerPixel;
+        int dstRowBytes = page.width * bytesPerPixel;
+        byte[] row = new byte[(width + 2 * PADDING) * bytesPerPixel];
+        ByteBuffer src = data.pixels.duplicate();
+        ByteBuffer dst = page.pixels.duplicate();
+        for (int dy = -PADDING; dy < bottom - top + PADDING; dy++) {
+            int srcY = Math.max(top, Math.min(bottom - 1, top + dy));
+            src.limit(src.capacity());
+            src.position(srcY * srcRowBytes + left * bytesPerPixel);
+            src.get(row, PADDING * bytesPerPixel, width * bytesPerPixel);
+            for (int i = 0; i < PADDING; i++) {
+                System.arraycopy(row, PADDING * bytesPerPixel, row, i * bytesPerPixel, bytesPerPixel);
+                System.arraycopy(row, (PADDING + width - 1) * bytesPerPixel,
+                        row, (PADDING + width + i) * bytesPerPixel, bytesPerPixel);
+            }
+            dst.position((y + dy) * dstRowBytes + (x - PADDING) * bytesPerPixel);
+            dst.put(row);
+        }
+    }
+
+    public int getPageCount() {
+        return mPages.size();
+    }
+
+    public int getLayerCount() {
+        return mLayerCount;
+    }
+
+    /**
+     * 图层内容占页面面积的比例, 0 - 1
+     */
+    public float getEfficiency() {
+        return mEfficiency;
+    }
+}
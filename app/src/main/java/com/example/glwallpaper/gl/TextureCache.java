@@ -0,0 +1,281 @@
+package com.example.glwallpaper.gl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * On 2026-10-18
+ * 可以直接上传的纹理数据的磁盘缓存, 压缩纹理或者解码缩放后的原始像素, 一个图层一个文件
+ * <p>
+ * 文件格式 (大端): magic, version, glFormat, glType, width, height, orientation, length, 数据.
+ * 格式记 GL 的常量, 不受 TextureFormat 增删和排序影响. 版本不一致, 格式不认识或者数据不完整的文件
+ * 当作不存在, 并删除
+ * <p>
+ * 数据部分通过 mmap 读取, 不经过 java 堆. 总大小超过上限时按最后访问时间 (lastModified) 淘汰
+ */
+public class TextureCache {
+
+    static final int MAGIC = 0x474c5754; // "GLWT"
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 8 * 4;
+
+    public static final long DEFAULT_MAX_BYTES = 96L << 20;
+
+    private static final String SUFFIX = ".tex";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private final File mDir;
+    private final long mMaxBytes;
+
+    public TextureCache(File dir) {
+        this(dir, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param maxBytes 所有缓存文件的总大小上限
+     */
+    public TextureCache(File dir, long maxBytes) {
+        mDir = dir;
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * 源文件或者解码尺寸有变化时, key 也随之变化
+     */
+    public static String key(String path, long lastModified, long length,
+                             int surfaceWidth, int surfaceHeight, float extraScale) {
+        String source = path + '|' + lastModified + '|' + length + '|'
+                + surfaceWidth + 'x' + surfaceHeight + '|' + Float.floatToIntBits(extraScale);
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(source.getBytes(Charset.forName("UTF-8")));
+            StringBuilder sb = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static String key(File file, int surfaceWidth, int surfaceHeight, float extraScale) {
+        return key(file.getAbsolutePath(), file.lastModified(), file.length(),
+                surfaceWidth, surfaceHeight, extraScale);
+    }
+
+    public File getDir() {
+        return mDir;
+    }
+
+    File fileOf(String key) {
+        return new File(mDir, key + SUFFIX);
+    }
+
+    /**
+     * @return 没有缓存或者缓存无效时返回 null
+     */
+    public TextureData get(String key) {
+        File file = fileOf(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        TextureData data = null;
+        try (FileInputStream in = new FileInputStream(file)) {
+            data = read(in.getChannel());
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+        }
+        if (data == null) {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        } else {
+            // 用修改时间记录最后访问时间
+            //noinspection ResultOfMethodCallIgnored
+            file.setLastModified(System.currentTimeMillis());
+        }
+        return data;
+    }
+
+    private static TextureData read(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header);
+        header.flip();
+        if (header.remaining() < HEADER_SIZE
+                || header.getInt() != MAGIC || header.getInt() != VERSION) {
+            return null;
+        }
+        int glFormat = header.getInt();
+        int glType = header.getInt();
+        TextureFormat format = TextureFormat.fromGl(glFormat, glType);
+        if (format == null) {
+            return null;
+        }
+        int width = header.getInt();
+        int height = header.getInt();
+        int orientation = header.getInt();
+        int length = header.getInt();
+        if (width <= 0 || height <= 0 || length != format.byteCount(width, height)
+                || channel.size() != HEADER_SIZE + (long) length) {
+            return null;
+        }
+        // 关闭 channel 之后映射依然有效, 直到 buffer 被回收
+        ByteBuffer pixels = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, length);
+        return new TextureData(format, width, height, orientation, pixels);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 先写临时文件再改名, 进程中途被杀也不会留下写了一半的缓存
+     *
+     * @return 写入成功返回 true
+     */
+    public boolean put(String key, TextureData data) {
+        if (!mDir.isDirectory() && !mDir.mkdirs()) {
+            return false;
+        }
+        File file = fileOf(key);
+        File tmp = new File(mDir, key + TMP_SUFFIX);
+        ByteBuffer pixels = data.pixels.duplicate();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(data.format.glFormat)
+                .putInt(data.format.glType)
+                .putInt(data.width)
+                .putInt(data.height)
+                .putInt(data.orientation)
+                .putInt(pixels.remaining());
+        header.flip();
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            FileChannel channel = out.getChannel();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            while (pixels.hasRemaining()) {
+                channel.write(pixels);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+            return false;
+        }
+        if (!tmp.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+            return false;
+        }
+        trim(key);
+        return true;
+    }
+
+    // 按最后访问时间从旧到新淘汰, 直到总大小不超过上限, 刚写入的 keep 不淘汰
+    private void trim(String keep) {
+        File[] files = listEntries();
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= mMaxBytes) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File o1, File o2) {
+                return Long.compare(o1.lastModified(), o2.lastModified());
+            }
+        });
+        File kept = fileOf(keep);
+        for (File file : files) {
+            if (total <= mMaxBytes) {
+                break;
+            }
+            if (file.equals(kept)) {
+                continue;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+            }
+        }
+    }
+
+    /**
+     * 只保留 keys 对应的缓存, 其余的删除. 壁纸的图片或者参数变化之后, 旧的缓存不会再命中.
+     * 多个 engine 共用同一个目录, keys 需要包括所有 engine 正在使用的图层
+     */
+    public void retainOnly(Collection<String> keys) {
+        Set<String> names = new HashSet<>();
+        for (String key : keys) {
+            names.add(key + SUFFIX);
+        }
+        for (File file : listEntries()) {
+            if (!names.contains(file.getName())) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * 所有缓存文件的总大小
+     */
+    public long size() {
+        long total = 0;
+        for (File file : listEntries()) {
+            total += file.length();
+        }
+        return total;
+    }
+
+    private File[] listEntries() {
+        File[] files = mDir.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        int count = 0;
+        for (File file : files) {
+            if (file.getName().endsWith(SUFFIX)) {
+                files[count++] = file;
+            }
+        }
+        return Arrays.copyOf(files, count);
+    }
+
+    public void remove(String key) {
+        //noinspection ResultOfMethodCallIgnored
+        fileOf(key).delete();
+    }
+
+    public void clear() {
+        File[] files = mDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+}
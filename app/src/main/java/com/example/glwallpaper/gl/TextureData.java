@@ -0,0 +1,43 @@
+package com.example.glwallpaper.gl;
+
+import java.nio.ByteBuffer;
+
+/**
+ * On 2026-10-18
+ * 可以直接上传的纹理数据, 宽高与解码出来的 bitmap 一致 (未按 exif 旋转)
+ */
+public final class TextureData {
+
+    public final TextureFormat format;
+    public final int width;
+    public final int height;
+    /**
+     * exif 方向, 见 TextureOrientation
+     */
+    public final int orientation;
+    public final ByteBuffer pixels;
+
+    public TextureData(TextureFormat format, int width, int height, int orientation, ByteBuffer pixels) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("invalid size " + width + "x" + height);
+        }
+        long expected = format.byteCount(width, height);
+        if (pixels.remaining() != expected) {
+            throw new IllegalArgumentException("expect " + expected + " bytes, but "
+                    + pixels.remaining());
+        }
+        this.format = format;
+        this.width = width;
+        this.height = height;
+        this.orientation = TextureOrientation.sanitize(orientation);
+        this.pixels = pixels;
+    }
+
+    public int storedWidth() {
+        return format.storedSize(width);
+    }
+
+    public int storedHeight() {
+        return format.storedSize(height);
+    }
+}
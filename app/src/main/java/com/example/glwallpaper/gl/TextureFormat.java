@@ -0,0 +1,62 @@
+package com.example.glwallpaper.gl;
+
+import android.opengl.GLES20;
+
+/**
+ * On 2026-10-18
+ * 纹理的像素格式, 对应 glTexImage2D 的 format / type
+ * <p>
+ * 压缩格式的 glFormat 为 glCompressedTexImage2D 的 internalformat, 宽高需要补齐到 block 的倍数
+ */
+public enum TextureFormat {
+
+    RGBA_8888(GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, 4),
+    RGB_565(GLES20.GL_RGB, GLES20.GL_UNSIGNED_SHORT_5_6_5, 2),
+    ALPHA_8(GLES20.GL_ALPHA, GLES20.GL_UNSIGNED_BYTE, 1),
+    /**
+     * 只用于不透明图层, 4x4 block 64 bit, 相当于每像素 0.5 字节
+     */
+    ETC1_RGB8(GLCapabilities.GL_ETC1_RGB8_OES, 0, 0);
+
+    public final int glFormat;
+    public final int glType;
+    public final int bytesPerPixel;
+
+    TextureFormat(int glFormat, int glType, int bytesPerPixel) {
+        this.glFormat = glFormat;
+        this.glType = glType;
+        this.bytesPerPixel = bytesPerPixel;
+    }
+
+    /**
+     * glFormat 和 glType 对应的格式
+     *
+     * @return 不认识时返回 null
+     */
+    public static TextureFormat fromGl(int glFormat, int glType) {
+        for (TextureFormat format : values()) {
+            if (format.glFormat == glFormat && format.glType == glType) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    public boolean isCompressed() {
+        return this == ETC1_RGB8;
+    }
+
+    /**
+     * 实际存储的宽度, 压缩格式补齐到 block 的倍数
+     */
+    public int storedSize(int size) {
+        return isCompressed() ? Etc1Encoder.paddedSize(size) : size;
+    }
+
+    public long byteCount(int width, int height) {
+        if (isCompressed()) {
+            return Etc1Encoder.encodedSize(width, height);
+        }
+        return (long) width * height * bytesPerPixel;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.glwallpaper.gl;
+
+/**
+ * On 2026-10-18
+ * 用纹理坐标表示 exif 方向, 不再旋转像素
+ * <p>
+ * 显示坐标: 原点为显示出来的图片左上角, x 向右, y 向下, 范围 [0, 1]
+ * 纹理坐标: 原点为解码出来的 bitmap 左上角 (上传后即纹理坐标 (0, 0)), 范围 [0, 1]
+ */
+public final class TextureOrientation {
+
+    // 取值与 ExifInterface.ORIENTATION_* 一致
+    public static final int NORMAL = 1;
+    public static final int FLIP_HORIZONTAL = 2;
+    public static final int ROTATE_180 = 3;
+    public static final int FLIP_VERTICAL = 4;
+    public static final int TRANSPOSE = 5;
+    public static final int ROTATE_90 = 6;
+    public static final int TRANSVERSE = 7;
+    public static final int ROTATE_270 = 8;
+
+    // 与 GLBitmap.VERTICES 的顶点顺序一致: 左下, 右下, 左上, 右上
+    private static final float[] DISPLAY_CORNERS = {
+            0f, 1f,
+            1f, 1f,
+            0f, 0f,
+            1f, 0f,
+    };
+
+    private TextureOrientation() {
+    }
+
+    /**
+     * 未知的取值按 NORMAL 处理
+     */
+    public static int sanitize(int orientation) {
+        if (orientation < NORMAL || orientation > ROTATE_270) {
+            return NORMAL;
+        }
+        return orientation;
+    }
+
+    /**
+     * 显示时是否需要交换宽高
+     */
+    public static boolean isTransposed(int orientation) {
+        return orientation >= TRANSPOSE && orientation <= ROTATE_270;
+    }
+
+    /**
+     * 显示坐标 -> 纹理坐标
+     */
+    public static void toTexture(int orientation, float x, float y, float[] out, int offset) {
+        float u;
+        float v;
+        switch (sanitize(orientation)) {
+            case FLIP_HORIZONTAL:
+                u = 1 - x;
+                v = y;
+                break;
+            case ROTATE_180:
+                u = 1 - x;
+                v = 1 - y;
+                break;
+            case FLIP_VERTICAL:
+                u = x;
+                v = 1 - y;
+                break;
+            case TRANSPOSE:
+                u = y;
+                v = x;
+                break;
+            case ROTATE_90:
+                u = y;
+                v = 1 - x;
+                break;
+            case TRANSVERSE:
+                u = 1 - y;
+                v = 1 - x;
+                break;
+            case ROTATE_270:
+                u = 1 - y;
+                v = x;
+                break;
+            default:
+                u = x;
+                v = y;
+                break;
+        }
+        out[offset] = u;
+        out[offset + 1] = v;
+    }
+
+    /**
+     * 纹理坐标 -> 显示坐标, toTexture 的逆变换
+     */
+    public static void toDisplay(int orientation, float u, float v, float[] out, int offset) {
+        switch (sanitize(orientation)) {
+            case ROTATE_90:
+                toTexture(ROTATE_270, u, v, out, offset);
+                break;
+            case ROTATE_270:
+                toTexture(ROTATE_90, u, v, out, offset);
+                break;
+            default:
+                // 其余的变换都是自身的逆
+                toTexture(orientation, u, v, out, offset);
+                break;
+        }
+    }
+
+    /**
+     * 整张图的纹理坐标, 顶点顺序同 GLBitmap.VERTICES
+     */
+    public static float[] textureCoords(int orientation) {
+        float[] coords = new float[DISPLAY_CORNERS.length];
+        for (int i = 0; i < DISPLAY_CORNERS.length; i += 2) {
+            toTexture(orientation, DISPLAY_CORNERS[i], DISPLAY_CORNERS[i + 1], coords, i);
+        }
+        return coords;
+    }
+}
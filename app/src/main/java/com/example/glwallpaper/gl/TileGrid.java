@@ -0,0 +1,211 @@
+package com.example.glwallpaper.gl;
+
+/**
+ * On 2026-10-18
+ * 超过 GL_MAX_TEXTURE_SIZE 的图片按固定大小分块, 只保留可见区域附近的块
+ * <p>
+ * 坐标都是纹理 (解码出来的 bitmap) 的像素坐标. 每块的内容区域之外多带 BORDER 个像素的边,
+ * 线性过滤在块的接缝处采样到的是相邻像素, 不会出现缝隙
+ */
+public final class TileGrid {
+
+    public static final int BORDER = 1;
+
+    /**
+     * 上传和释放块的纹理, 在 GL 线程调用
+     */
+    public interface Loader {
+
+        /**
+         * @return 纹理 id, 失败时返回 0
+         */
+        int upload(TileGrid grid, int column, int row);
+
+        void evict(int textureId);
+    }
+
+    private final int mWidth;
+    private final int mHeight;
+    private final int mTileSize;
+    // 相邻两块内容区域的间距
+    private final int mStride;
+    private final int mColumns;
+    private final int mRows;
+    private final int[] mTextureIds;
+
+    private int mResidentCount;
+    private long mUploadCount;
+    private long mEvictCount;
+
+    /**
+     * @param tileSize 每块纹理的最大边长, 包含边
+     */
+    public TileGrid(int width, int height, int tileSize) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("invalid size " + width + "x" + height);
+        }
+        if (tileSize <= BORDER * 2) {
+            throw new IllegalArgumentException("invalid tile size " + tileSize);
+        }
+        mWidth = width;
+        mHeight = height;
+        mTileSize = tileSize;
+        mStride = tileSize - BORDER * 2;
+        mColumns = (width + mStride - 1) / mStride;
+        mRows = (height + mStride - 1) / mStride;
+        mTextureIds = new int[mColumns * mRows];
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public int getTileSize() {
+        return mTileSize;
+    }
+
+    public int getColumns() {
+        return mColumns;
+    }
+
+    public int getRows() {
+        return mRows;
+    }
+
+    public int getTileCount() {
+        return mTextureIds.length;
+    }
+
+    // 内容区域, 各块之间不重叠, 合起来正好是整张图
+
+    public int contentLeft(int column) {
+        return column * mStride;
+    }
+
+    public int contentRight(int column) {
+        return Math.min(mWidth, (column + 1) * mStride);
+    }
+
+    public int contentTop(int row) {
+        return row * mStride;
+    }
+
+    public int contentBottom(int row) {
+        return Math.min(mHeight, (row + 1) * mStride);
+    }
+
+    // 纹理区域, 内容区域加上边, 不超出整张图
+
+    public int textureLeft(int column) {
+        return Math.max(0, contentLeft(column) - BORDER);
+    }
+
+    public int textureRight(int column) {
+        return Math.min(mWidth, contentRight(column) + BORDER);
+    }
+
+    public int textureTop(int row) {
+        return Math.max(0, contentTop(row) - BORDER);
+    }
+
+    public int textureBottom(int row) {
+        return Math.min(mHeight, contentBottom(row) + BORDER);
+    }
+
+    public int getTextureId(int column, int row) {
+        return mTextureIds[row * mColumns + column];
+    }
+
+    public boolean isResident(int column, int row) {
+        return getTextureId(column, row) != 0;
+    }
+
+    /**
+     * 根据可见区域更新常驻的块: 与可见区域相交的块, 以及它们周围一圈的块 (预加载) 保持常驻,
+     * 其余的释放
+     *
+     * @return 本次上传的块数
+     */
+    public int update(float left, float top, float right, float bottom, Loader loader) {
+        int firstColumn = clamp((int) Math.floor(left / mStride) - 1, mColumns);
+        int lastColumn = clamp((int) Math.ceil(right / mStride), mColumns);
+        int firstRow = clamp((int) Math.floor(top / mStride) - 1, mRows);
+        int lastRow = clamp((int) Math.ceil(bottom / mStride), mRows);
+
+        // 先释放再上传, 显存占用不会叠加
+        for (int row = 0; row < mRows; row++) {
+            for (int column = 0; column < mColumns; column++) {
+                boolean wanted = column >= firstColumn && column <= lastColumn
+                        && row >= firstRow && row <= lastRow;
+                int index = row * mColumns + column;
+                if (!wanted && mTextureIds[index] != 0) {
+                    loader.evict(mTextureIds[index]);
+                    mTextureIds[index] = 0;
+                    mResidentCount--;
+                    mEvictCount++;
+                }
+            }
+        }
+
+        int uploaded = 0;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                int index = row * mColumns + column;
+                if (mTextureIds[index] == 0) {
+                    int id = loader.upload(this, column, row);
+                    if (id != 0) {
+                        mTextureIds[index] = id;
+                        mResidentCount++;
+                        mUploadCount++;
+                        uploaded++;
+                    }
+                }
+            }
+        }
+        return uploaded;
+    }
+
+    private static int clamp(int value, int count) {
+        return Math.max(0, Math.min(count - 1, value));
+    }
+
+    /**
+     * 释放所有块
+     */
+    public void evictAll(Loader loader) {
+        for (int i = 0; i < mTextureIds.length; i++) {
+            if (mTextureIds[i] != 0) {
+                loader.evict(mTextureIds[i]);
+                mTextureIds[i] = 0;
+                mEvictCount++;
+            }
+        }
+        mResidentCount = 0;
+    }
+
+    /**
+     * context 丢失后纹理已经不存在, 只清除记录, 不调用 evict
+     */
+    public void invalidate() {
+        for (int i = 0; i < mTextureIds.length; i++) {
+            mTextureIds[i] = 0;
+        }
+        mResidentCount = 0;
+    }
+
+    public int getResidentCount() {
+        return mResidentCount;
+    }
+
+    public long getUploadCount() {
+        return mUploadCount;
+    }
+
+    public long getEvictCount() {
+        return mEvictCount;
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.glwallpaper.gl;
+
+/**
+ * On 2026-10-18
+ * 限制每一帧上传纹理的字节数和耗时, 大的纹理分成多条, 在多帧内上传完
+ * <p>
+ * 每帧的第一次上传总是允许, 即使超出预算, 保证每帧都有进展. 只在 GL 线程使用
+ */
+public class UploadScheduler {
+
+    private final long mByteBudget;
+    private final long mTimeBudgetNanos;
+
+    private long mFrameStart;
+    private long mFrameBytes;
+    private int mFrameUploads;
+    private boolean mPending;
+
+    private long mTotalBytes;
+    private long mUploadCount;
+    private long mDeferCount;
+
+    /**
+     * @param byteBudget      每帧最多上传的字节数
+     * @param timeBudgetNanos 每帧上传的最长耗时
+     */
+    public UploadScheduler(long byteBudget, long timeBudgetNanos) {
+        if (byteBudget <= 0 || timeBudgetNanos <= 0) {
+            throw new IllegalArgumentException("invalid budget " + byteBudget + ", " + timeBudgetNanos);
+        }
+        mByteBudget = byteBudget;
+        mTimeBudgetNanos = timeBudgetNanos;
+    }
+
+    /**
+     * 不限制, 一次上传完, 与分条之前的行为一致
+     */
+    public static UploadScheduler unlimited() {
+        return new UploadScheduler(Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    long now() {
+        return System.nanoTime();
+    }
+
+    /**
+     * 每帧开始时调用, 重置本帧的预算
+     */
+    public void beginFrame() {
+        mFrameStart = now();
+        mFrameBytes = 0;
+        mFrameUploads = 0;
+        mPending = false;
+    }
+
+    private boolean isTimeUp() {
+        return now() - mFrameStart >= mTimeBudgetNanos;
+    }
+
+    /**
+     * 不能拆分的上传 (压缩纹理, 分块), 预算不够时推迟到下一帧
+     *
+     * @return 允许上传时返回 true, 上传后需要调用 onUploaded
+     */
+    public boolean tryUpload(long bytes) {
+        if (mFrameUploads > 0 && (mFrameBytes + bytes > mByteBudget || isTimeUp())) {
+            defer();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 按行拆分的上传, 本帧还可以上传的行数, 至少一行
+     *
+     * @param rowBytes      每行字节数
+     * @param remainingRows 还没有上传的行数
+     * @return 0 表示本帧预算已经用完
+     */
+    public int stripeRows(int rowBytes, int remainingRows) {
+        if (remainingRows <= 0) {
+            return 0;
+        }
+        if (mFrameUploads > 0 && (mFrameBytes >= mByteBudget || isTimeUp())) {
+            defer();
+            return 0;
+        }
+        long bytes = Math.max(rowBytes, mByteBudget - mFrameBytes);
+        return (int) Math.min(remainingRows, bytes / rowBytes);
+    }
+
+    public void onUploaded(long bytes) {
+        mFrameBytes += bytes;
+        mFrameUploads++;
+        mTotalBytes += bytes;
+        mUploadCount++;
+    }
+
+    /**
+     * 有工作要在下一帧进行, 例如纹理需要重新上传, 同样记为推迟
+     */
+    public void requestFrame() {
+        defer();
+    }
+
+    private void defer() {
+        if (!mPending) {
+            mPending = true;
+            mDeferCount++;
+        }
+    }
+
+    /**
+     * 本帧有上传被推迟, 需要再画一帧
+     */
+    public boolean hasPending() {
+        return mPending;
+    }
+
+    public long getTotalBytes() {
+        return mTotalBytes;
+    }
+
+    public long getUploadCount() {
+        return mUploadCount;
+    }
+
+    /**
+     * 有上传被推迟的帧数
+     */
+    public long getDeferCount() {
+        return mDeferCount;
+    }
+}
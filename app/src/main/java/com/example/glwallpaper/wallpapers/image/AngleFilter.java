@@ -0,0 +1,22 @@
+package com.example.glwallpaper.wallpapers.image;
+
+/**
+ * On 2026-10-18
+ * 在角度空间对传感器数据滤波, 每个分量独立处理. 实现不分配内存, 只能在一个线程调用
+ * <p>
+ * 角度在 ±π 处折回, 实现需要用 RotationMath.wrapAngle 取与上一个状态的差, 沿较短的方向跟随,
+ * 输出也换算回 [-π, π)
+ */
+interface AngleFilter {
+
+    /**
+     * @param timestampNanos 传感器时间戳, 按时间计算的滤波器用它得到采样间隔
+     * @param values         角度, 原地替换为滤波后的值
+     */
+    void filter(long timestampNanos, float[] values);
+
+    /**
+     * 重新开始, 下一个数据原样输出
+     */
+    void reset();
+}
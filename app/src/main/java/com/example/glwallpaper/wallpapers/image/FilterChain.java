@@ -0,0 +1,77 @@
+package com.example.glwallpaper.wallpapers.image;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * On 2026-10-18
+ * 按顺序执行的一组 AngleFilter, 由壁纸配置中的 filter 字段创建, 例如 "oneeuro" 或者 "oneeuro,spring"
+ */
+final class FilterChain implements AngleFilter {
+
+    static final String LOW_PASS = "lowpass";
+    static final String ONE_EURO = "oneeuro";
+    static final String SPRING = "spring";
+    // 不滤波
+    static final String NONE = "none";
+
+    static final String DEFAULT = LOW_PASS;
+
+    private final AngleFilter[] mFilters;
+    private final String mName;
+
+    FilterChain(String name, AngleFilter... filters) {
+        mName = name;
+        mFilters = filters;
+    }
+
+    /**
+     * @param spec 逗号分隔的滤波器名字, 为空时使用 DEFAULT, 不认识的名字忽略
+     */
+    static FilterChain create(String spec, int dimensions) {
+        if (spec == null || spec.trim().isEmpty()) {
+            spec = DEFAULT;
+        }
+        List<AngleFilter> filters = new ArrayList<>();
+        for (String name : spec.split(",")) {
+            AngleFilter filter = createFilter(name.trim().toLowerCase(Locale.US), dimensions);
+            if (filter != null) {
+                filters.add(filter);
+            }
+        }
+        return new FilterChain(spec, filters.toArray(new AngleFilter[0]));
+    }
+
+    private static AngleFilter createFilter(String name, int dimensions) {
+        switch (name) {
+            case LOW_PASS:
+                return new LowPassFilter(dimensions, LowPassFilter.DEFAULT_ALPHA);
+            case ONE_EURO:
+                return new OneEuroFilter(dimensions);
+            case SPRING:
+                return new SpringFilter(dimensions);
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public void filter(long timestampNanos, float[] values) {
+        for (AngleFilter filter : mFilters) {
+            filter.filter(timestampNanos, values);
+        }
+    }
+
+    @Override
+    public void reset() {
+        for (AngleFilter filter : mFilters) {
+            filter.reset();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return mName;
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.glwallpaper.wallpapers.image;
+
+/**
+ * On 2026-10-18
+ * 判断手机是否静止, 例如平放在桌上. 静止时停止监听旋转矢量, 改用低频的加速度计等待再次移动
+ * <p>
+ * 静止: 滤波后的角度与基准的差一直不超过 angleThreshold, 持续 timeout. 超过时以当前角度为新的基准.
+ * 移动: 加速度任一轴与等待开始时的第一个数据相差超过 accelerationThreshold, 约等于倾斜 3 度.
+ * 时间都是传感器的时间戳, 只在传感器回调的线程调用, timeout 可以在任意线程设置
+ */
+final class IdleDetector {
+
+    static final long DEFAULT_TIMEOUT_MS = 10_000;
+    // 弧度, 默认 distance 下移动最多的图层约 0.25 像素
+    static final float DEFAULT_ANGLE_THRESHOLD = 0.005f;
+    // m/s^2
+    static final float DEFAULT_ACCELERATION_THRESHOLD = 0.5f;
+
+    private final float[] mAnchor;
+    private final float mAngleThreshold;
+    private final float mAccelerationThreshold;
+    private volatile long mTimeoutNanos = DEFAULT_TIMEOUT_MS * 1_000_000L;
+
+    private boolean mHasAnchor;
+    private long mLastMotionNanos;
+
+    private final float[] mGravity = new float[3];
+    private boolean mHasGravity;
+
+    IdleDetector(int dimensions) {
+        this(dimensions, DEFAULT_ANGLE_THRESHOLD, DEFAULT_ACCELERATION_THRESHOLD);
+    }
+
+    IdleDetector(int dimensions, float angleThreshold, float accelerationThreshold) {
+        mAnchor = new float[dimensions];
+        mAngleThreshold = angleThreshold;
+        mAccelerationThreshold = accelerationThreshold;
+    }
+
+    /**
+     * @param timeoutMs 静止多久后停止监听, 0 表示一直监听
+     */
+    void setTimeout(long timeoutMs) {
+        if (timeoutMs < 0) {
+            throw new IllegalArgumentException("timeout " + timeoutMs);
+        }
+        mTimeoutNanos = timeoutMs * 1_000_000L;
+    }
+
+    boolean isEnabled() {
+        return mTimeoutNanos > 0;
+    }
+
+    /**
+     * @param angle 滤波后的角度
+     * @return 已经静止了 timeout, 调用方应该停止监听. 之后需要先调用 reset 才会重新计时
+     */
+    boolean onAngle(long timestampNanos, float[] angle) {
+        boolean moved = !mHasAnchor;
+        for (int i = 0; i < mAnchor.length && !moved; i++) {
+            moved = Math.abs(angle[i] - mAnchor[i]) > mAngleThreshold;
+        }
+        if (moved) {
+            System.arraycopy(angle, 0, mAnchor, 0, mAnchor.length);
+            mHasAnchor = true;
+            mLastMotionNanos = timestampNanos;
+            return false;
+        }
+        long timeout = mTimeoutNanos;
+        return timeout > 0 && timestampNanos - mLastMotionNanos >= timeout;
+    }
+
+    /**
+     * 等待移动时的加速度数据, 第一个数据作为基准
+     *
+     * @return 手机移动了, 调用方应该重新监听旋转矢量
+     */
+    boolean onAcceleration(float[] values) {
+        if (!mHasGravity) {
+            System.arraycopy(values, 0, mGravity, 0, mGravity.length);
+            mHasGravity = true;
+            return false;
+        }
+        for (int i = 0; i < mGravity.length; i++) {
+            if (Math.abs(values[i] - mGravity[i]) > mAccelerationThreshold) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 开始监听或者从静止中恢复时调用, 重新计时, 下一次等待移动时重新取基准
+     */
+    void reset() {
+        mHasAnchor = false;
+        mHasGravity = false;
+    }
+}
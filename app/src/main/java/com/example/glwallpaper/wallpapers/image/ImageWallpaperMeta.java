@@ -1,5 +1,7 @@
 package com.example.glwallpaper.wallpapers.image;
 
+import com.example.glwallpaper.gl.SubPixelFilter;
+
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -14,11 +16,19 @@ public class ImageWallpaperMeta {
 
     public static final int DEFAULT_MOVE_DISTANCE = 20;
     public static final float DEFAULT_EXTRA_SCALE = 0.2f;
+    public static final float DEFAULT_MOVE_THRESHOLD = SubPixelFilter.DEFAULT_THRESHOLD_PX;
+    public static final long DEFAULT_IDLE_TIMEOUT = IdleDetector.DEFAULT_TIMEOUT_MS;
 
     public List<String> images;
     public List<Float> moveFactors;
     public int moveDistance = DEFAULT_MOVE_DISTANCE;
     public float extraScale = DEFAULT_EXTRA_SCALE;
+    // 像素, 图层移动不到这么多时不重新绘制
+    public float moveThreshold = DEFAULT_MOVE_THRESHOLD;
+    // 传感器角度的滤波器, 例如 "oneeuro" 或者 "oneeuro,spring", 见 FilterChain
+    public String filter = FilterChain.DEFAULT;
+    // 毫秒, 手机静止这么久后停止监听传感器, 0 表示一直监听
+    public long idleTimeout = DEFAULT_IDLE_TIMEOUT;
 
     public float getMovieFactor(int index) {
         if (moveFactors == null) {
@@ -55,6 +65,9 @@ public class ImageWallpaperMeta {
             JSONObject object = new JSONObject(json);
             bean.moveDistance = object.optInt("distance");
             bean.extraScale = (float) object.optDouble("extraScale");
+            bean.moveThreshold = (float) object.optDouble("moveThreshold", DEFAULT_MOVE_THRESHOLD);
+            bean.filter = object.optString("filter", FilterChain.DEFAULT);
+            bean.idleTimeout = object.optLong("idleTimeout", DEFAULT_IDLE_TIMEOUT);
 
             JSONArray images = object.optJSONArray("images");
             if (images != null) {
@@ -110,6 +123,9 @@ public class ImageWallpaperMeta {
         try {
             object.put("distance", moveDistance);
             object.put("extraScale", extraScale);
+            object.put("moveThreshold", moveThreshold);
+            object.put("filter", filter);
+            object.put("idleTimeout", idleTimeout);
         } catch (JSONException e) {
             e.printStackTrace();
         }
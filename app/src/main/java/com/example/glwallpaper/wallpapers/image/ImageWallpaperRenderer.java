@@ -1,9 +1,15 @@
 package com.example.glwallpaper.wallpapers.image;
 
 import android.opengl.GLES20;
+import android.os.SystemClock;
+import android.util.Log;
 
+import com.example.glwallpaper.gl.FrameStateSlot;
+import com.example.glwallpaper.gl.FrameTimeRecorder;
 import com.example.glwallpaper.gl.GLBitmap;
 import com.example.glwallpaper.gl.Renderer;
+import com.example.glwallpaper.gl.SubPixelFilter;
+import com.example.glwallpaper.gl.UploadScheduler;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -16,15 +22,57 @@ import javax.microedition.khronos.opengles.GL10;
  */
 public class ImageWallpaperRenderer implements Renderer {
 
+    private static final String TAG = "ImageWallpaperRenderer";
+
+    // 每帧上传纹理的预算, 约 2ms 左右
+    private static final long UPLOAD_BYTE_BUDGET = 2 << 20;
+    private static final long UPLOAD_TIME_BUDGET_NANOS = 2_000_000L;
+
+    // 估算速度使用最近 100ms 的传感器数据
+    private static final int POSE_HISTORY = 32;
+    private static final long VELOCITY_WINDOW_NANOS = 100_000_000L;
+    // 传感器时钟与 elapsedRealtimeNanos 相差太多时不外推
+    private static final long MAX_SAMPLE_AGE_NANOS = 1_000_000_000L;
+
     private final List<GLBitmap> mImages = new ArrayList<>();
     private final List<Float> mMoveFactors = new ArrayList<>();
 
+    // 新的图层, 全部上传完之前继续绘制旧的图层
+    private List<GLBitmap> mPendingImages;
+    private List<Float> mPendingMoveFactors;
+
+    private final UploadScheduler mUploadScheduler =
+            new UploadScheduler(UPLOAD_BYTE_BUDGET, UPLOAD_TIME_BUDGET_NANOS);
+    // 切换图层期间每帧的耗时
+    private final FrameTimeRecorder mSwitchFrames = new FrameTimeRecorder(256);
+    private Runnable mRequestRender;
+
     private int mSurfaceWidth;
     private int mSurfaceHeight;
 
+    // 传感器线程写入位移和速度, 每帧开始时取出最新的一次
+    private final FrameStateSlot mTranslate = new FrameStateSlot(4);
     private float mTranslateX = 0;
     private float mTranslateY = 0;
 
+    // 在传感器线程访问, GL 线程只读取 horizon
+    private volatile PosePredictor mPredictor =
+            new PosePredictor(2, POSE_HISTORY, VELOCITY_WINDOW_NANOS, 0);
+    private final float[] mPose = new float[2];
+    private final float[] mPoseVelocity = new float[2];
+    private boolean mPublishedMoving;
+
+    // 只在 GL 线程访问, 最近一次取出的传感器数据
+    private final float[] mSample = new float[2];
+    private final float[] mSampleVelocity = new float[2];
+    private final float[] mPredicted = new float[2];
+    private long mSampleTime;
+
+    private volatile long mFramePeriodNanos = 16_666_667L;
+    // 手机静止时传感器的小抖动不触发绘制
+    private final SubPixelFilter mMoveFilter = new SubPixelFilter();
+    private volatile long mDrawnFrameCount;
+
     private int mImageCount = 0;
     private int mMoveFactorCount = 0;
 
@@ -32,16 +80,68 @@ public class ImageWallpaperRenderer implements Renderer {
         setDistance(ImageWallpaperMeta.DEFAULT_MOVE_DISTANCE);
     }
 
+    /**
+     * 纹理还没有上传完时, 通过它请求再画一帧. 可以在 GL 线程调用
+     */
+    public void setRequestRender(Runnable requestRender) {
+        mRequestRender = requestRender;
+    }
+
+    /**
+     * 需要在 GL 线程调用. 新图层的纹理在之后的几帧内分批上传, 全部完成后才替换旧图层,
+     * 并删除旧图层的纹理
+     */
     public void setImages(List<GLBitmap> images) {
-        releaseImages();
-        mImages.addAll(images);
-        mImageCount = mImages.size();
+        if (mPendingImages != null) {
+            // 上一次切换还没完成, 直接丢弃
+            deleteImages(mPendingImages);
+        }
+        mPendingImages = new ArrayList<>(images);
+        mPendingMoveFactors = null;
+        mSwitchFrames.reset();
     }
 
+    /**
+     * 有还没完成的 setImages 时, 与新图层一起生效
+     */
     public void setMoveFactors(List<Float> factors) {
+        if (mPendingImages != null) {
+            mPendingMoveFactors = new ArrayList<>(factors);
+            return;
+        }
+        applyMoveFactors(factors);
+    }
+
+    private void applyMoveFactors(List<Float> factors) {
         mMoveFactors.clear();
         mMoveFactors.addAll(factors);
         mMoveFactorCount = mMoveFactors.size();
+        updateMoveFilter();
+    }
+
+    private void updateMoveFilter() {
+        float[] factors = new float[mMoveFactorCount];
+        for (int i = 0; i < factors.length; i++) {
+            factors[i] = mMoveFactors.get(i);
+        }
+        mMoveFilter.setMoveFactors(factors, mImageCount);
+    }
+
+    // 新图层全部上传完成, 替换旧图层
+    private void swapImages() {
+        deleteImages(mImages);
+        mImages.addAll(mPendingImages);
+        mImageCount = mImages.size();
+        mPendingImages = null;
+        if (mPendingMoveFactors != null) {
+            applyMoveFactors(mPendingMoveFactors);
+            mPendingMoveFactors = null;
+        } else {
+            updateMoveFilter();
+        }
+        Log.i(TAG, "switch images " + mSwitchFrames.summary()
+                + " uploaded=" + mUploadScheduler.getTotalBytes()
+                + " deferred=" + mUploadScheduler.getDeferCount());
     }
 
     @Override
@@ -51,6 +151,28 @@ public class ImageWallpaperRenderer implements Renderer {
         GLES20.glClearColor(0.0f, 0.0f, 0.0f, 1.0f);
 
         GLBitmap.installProgram();
+        // 新的 context, 之前的纹理都不能用了
+        invalidateTextures();
+    }
+
+    @Override
+    public void onContextLost() {
+        invalidateTextures();
+    }
+
+    private void invalidateTextures() {
+        for (GLBitmap image : mImages) {
+            if (image != null) {
+                image.onContextLost();
+            }
+        }
+        if (mPendingImages != null) {
+            for (GLBitmap image : mPendingImages) {
+                if (image != null) {
+                    image.onContextLost();
+                }
+            }
+        }
     }
 
     @Override
@@ -61,28 +183,145 @@ public class ImageWallpaperRenderer implements Renderer {
         GLES20.glViewport(0, 0, width, height);
         mSurfaceWidth = width;
         mSurfaceHeight = height;
+        mMoveFilter.setSurfaceSize(width, height);
     }
 
-    private float mBaseMoveFactor = 0.06f;
+    private volatile float mBaseMoveFactor = 0.06f;
 
     public void setDistance(int distance) {
         mBaseMoveFactor = distance * 0.003f + 0.03f;
     }
 
-    public void angleChanged(float x, float y) {
+    /**
+     * 所有图层在屏幕上移动都不到 thresholdPx 像素时, angleChanged 不请求绘制
+     */
+    public void setMoveThreshold(float thresholdPx) {
+        mMoveFilter.setThreshold(thresholdPx);
+    }
+
+    /**
+     * 因为移动不到阈值而没有绘制的传感器更新次数
+     */
+    public long getSkippedFrameCount() {
+        return mMoveFilter.getSkipCount();
+    }
+
+    public long getDrawnFrameCount() {
+        return mDrawnFrameCount;
+    }
+
+    /**
+     * 传感器批量上报时, 按速度把位移外推到这一帧显示的时刻. 需要在传感器开始之前调用
+     *
+     * @param framePeriodNanos 一帧的时长, 假设绘制的内容在下一帧显示
+     * @param horizonNanos     最多外推的时长, 应该覆盖批量上报的延迟. 0 表示不外推
+     */
+    public void setPrediction(long framePeriodNanos, long horizonNanos) {
+        mFramePeriodNanos = framePeriodNanos;
+        mPredictor = new PosePredictor(2, POSE_HISTORY, VELOCITY_WINDOW_NANOS, horizonNanos);
+    }
+
+    /**
+     * 可以在传感器线程调用, 新的位移在下一帧生效
+     *
+     * @param timestampNanos 传感器数据的时间戳
+     * @return 需要请求绘制. 没有图层移动到阈值, 或者上一次的位移还没画出来时返回 false,
+     * 已经请求过的那一帧会画出最新的位移
+     */
+    public boolean angleChanged(float x, float y, long timestampNanos) {
         double xSin = Math.sin(x);
-        mTranslateX = (float) (xSin * mBaseMoveFactor);
+        float translateX = (float) (xSin * mBaseMoveFactor);
 
         double ySin = Math.sin(y);
-        mTranslateY = (float) (ySin * mBaseMoveFactor);
+        float translateY = (float) (ySin * mBaseMoveFactor);
+
+        PosePredictor predictor = mPredictor;
+        mPose[0] = translateX;
+        mPose[1] = translateY;
+        predictor.add(timestampNanos, mPose);
+        predictor.getVelocity(mPoseVelocity);
+        float frameSeconds = mFramePeriodNanos / 1e9f;
+        // 按这个速度每帧的移动看得出来
+        boolean moving = mMoveFilter.isVisible(mPoseVelocity[0] * frameSeconds,
+                mPoseVelocity[1] * frameSeconds);
+
+        // 之前在移动时也要发布, GL 线程才会停止外推
+        if (!mMoveFilter.accept(translateX, translateY) && !moving && !mPublishedMoving) {
+            return false;
+        }
+        mPublishedMoving = moving;
+        float[] translate = mTranslate.edit();
+        translate[0] = translateX;
+        translate[1] = translateY;
+        translate[2] = moving ? mPoseVelocity[0] : 0;
+        translate[3] = moving ? mPoseVelocity[1] : 0;
+        return mTranslate.publish(timestampNanos);
+    }
+
+    // 这一帧显示时的位移, 返回是否还在外推, 需要继续绘制
+    private boolean predictTranslate() {
+        mTranslateX = mSample[0];
+        mTranslateY = mSample[1];
+        long horizon = mPredictor.getHorizon();
+        if (mSampleTime == 0 || horizon == 0
+                || (mSampleVelocity[0] == 0 && mSampleVelocity[1] == 0)) {
+            return false;
+        }
+        long age = SystemClock.elapsedRealtimeNanos() + mFramePeriodNanos - mSampleTime;
+        if (age < 0 || age > MAX_SAMPLE_AGE_NANOS) {
+            return false;
+        }
+        PosePredictor.extrapolate(mSample, mSampleVelocity, 2, age, horizon, mPredicted);
+        mTranslateX = mPredicted[0];
+        mTranslateY = mPredicted[1];
+        return age < horizon;
     }
 
     @Override
     public void onDrawFrame(GL10 gl) {
+        long start = System.nanoTime();
+        mDrawnFrameCount++;
+        if (mTranslate.update()) {
+            mSample[0] = mTranslate.get(0);
+            mSample[1] = mTranslate.get(1);
+            mSampleVelocity[0] = mTranslate.get(2);
+            mSampleVelocity[1] = mTranslate.get(3);
+            mSampleTime = mTranslate.getTimestamp();
+        }
+        boolean predicting = predictTranslate();
+        boolean switching = mPendingImages != null;
+        mUploadScheduler.beginFrame();
+
+        // 当前图层优先, context 丢失后需要重新上传
+        boolean ready = true;
+        for (int i = 0; i < mImageCount; i++) {
+            GLBitmap image = mImages.get(i);
+            if (image != null && !image.prepare(mUploadScheduler, mSurfaceWidth, mSurfaceHeight)) {
+                ready = false;
+            }
+        }
+        if (switching) {
+            boolean pendingReady = true;
+            for (GLBitmap image : mPendingImages) {
+                if (image != null && !image.prepare(mUploadScheduler, mSurfaceWidth, mSurfaceHeight)) {
+                    pendingReady = false;
+                }
+            }
+            if (pendingReady) {
+                swapImages();
+            }
+        }
+
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+
         int N = mImageCount;
         int factorN = mMoveFactorCount;
         for (int i = 0; i < N; i++) {
             GLBitmap image = mImages.get(i);
+            // 还没上传完的图层不画, 露出下面的图层或者背景色
+            if (image == null || !image.isReady()) {
+                continue;
+            }
             float factor = 1;
             if (i < factorN) {
                 factor = mMoveFactors.get(i);
@@ -91,20 +330,43 @@ public class ImageWallpaperRenderer implements Renderer {
             float ty = mTranslateY / factor;
             image.draw(mSurfaceWidth, mSurfaceHeight, tx, ty);
         }
+
+        if (switching) {
+            mSwitchFrames.record(System.nanoTime() - start);
+        }
+        // 外推期间每帧都画, 直到下一批传感器数据到达
+        if ((!ready || predicting || mPendingImages != null || mUploadScheduler.hasPending())
+                && mRequestRender != null) {
+            mRequestRender.run();
+        }
     }
 
     @Override
     public void release() {
-        releaseImages();
+        releaseImages(mImages);
+        if (mPendingImages != null) {
+            releaseImages(mPendingImages);
+            mPendingImages = null;
+        }
         mMoveFactors.clear();
     }
 
-    private void releaseImages() {
-        for (GLBitmap image : mImages) {
+    // 需要在 GL 线程调用
+    private static void deleteImages(List<GLBitmap> images) {
+        for (GLBitmap image : images) {
+            if (image != null) {
+                image.deleteTexture();
+            }
+        }
+        releaseImages(images);
+    }
+
+    private static void releaseImages(List<GLBitmap> images) {
+        for (GLBitmap image : images) {
             if (image != null) {
                 image.release();
             }
         }
-        mImages.clear();
+        images.clear();
     }
 }
@@ -9,25 +9,58 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.content.res.Configuration;
+import android.graphics.Point;
 import android.preference.PreferenceManager;
+import android.util.Log;
 import android.view.SurfaceHolder;
+import android.view.WindowManager;
 
 import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
+import com.example.glwallpaper.gl.DecodedImageCache;
 import com.example.glwallpaper.gl.GLBitmap;
+import com.example.glwallpaper.gl.GLBitmapLoader;
 import com.example.glwallpaper.gl.GLWallpaperService;
+import com.example.glwallpaper.gl.TextureCache;
 
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * On 2021-11-19
  */
 public class ImageWallpaperService extends GLWallpaperService {
 
+    private static final String TAG = "ImageWallpaperService";
+
     private static final String ACTION_SET_WALLPAPER = ImageWallpaperService.class.getName();
+    private static final int SENSOR_BATCH_FRAMES = 3;
     private LocalBroadcastManager mBroadcastManager;
     private SharedPreferences mPreferences;
+    private TextureCache mTextureCache;
+    // 所有 engine 共享, 预览和桌面同时存在时同一张图只解码一次
+    private DecodedImageCache mDecodedCache;
+    // 每个 engine 最近一次加载完成的 meta 和图层的磁盘缓存 key, 只在主线程访问
+    private final Map<ImageEngine, LoadedLayers> mLoadedLayers = new HashMap<>();
+    // 最近一次清理磁盘缓存时所有 engine 使用的 meta
+    private String mRetainedMeta;
+
+    private static final class LoadedLayers {
+        final String meta;
+        final List<String> keys;
+
+        LoadedLayers(String meta, List<String> keys) {
+            this.meta = meta;
+            this.keys = keys;
+        }
+    }
 
     public static void setWallpaper(Context context, ImageWallpaperMeta bean) {
         if (bean.isInvalid()) {
@@ -55,6 +88,56 @@ public class ImageWallpaperService extends GLWallpaperService {
         super.onCreate();
         mBroadcastManager = LocalBroadcastManager.getInstance(this);
         mPreferences = PreferenceManager.getDefaultSharedPreferences(this);
+        mTextureCache = new TextureCache(new File(getCacheDir(), "textures"));
+        mDecodedCache = new DecodedImageCache();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            mDecodedCache.trimUnused();
+        }
+        Log.i(TAG, "onTrimMemory " + level + " " + mDecodedCache);
+    }
+
+    /**
+     * 磁盘缓存所有 engine 共用一个目录, 只在 meta 变化并且所有 engine 都加载完新的 meta 之后清理,
+     * 保留所有 engine 正在使用的图层. 在主线程调用
+     */
+    private void onLayersLoaded(ImageEngine engine, String meta, List<GLBitmap> images) {
+        List<String> keys = new ArrayList<>();
+        for (GLBitmap image : images) {
+            if (image != null && image.getCacheKey() != null) {
+                keys.add(image.getCacheKey());
+            }
+        }
+        mLoadedLayers.put(engine, new LoadedLayers(meta, keys));
+        if (meta.equals(mRetainedMeta)) {
+            return;
+        }
+        final Set<String> retain = new HashSet<>();
+        for (LoadedLayers layers : mLoadedLayers.values()) {
+            // 还有 engine 在使用旧的 meta
+            if (!layers.meta.equals(meta)) {
+                return;
+            }
+            retain.addAll(layers.keys);
+        }
+        mRetainedMeta = meta;
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                mTextureCache.retainOnly(retain);
+            }
+        }, "TextureCacheTrim").start();
+    }
+
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter out, String[] args) {
+        out.println("decoded: " + mDecodedCache);
+        // 各个 engine 的统计
+        super.dump(fd, out, args);
     }
 
     private class ImageEngine extends GLEngine implements RotationMonitor.RotationChangedListener {
@@ -67,15 +150,12 @@ public class ImageWallpaperService extends GLWallpaperService {
         };
 
         private final ImageWallpaperRenderer mRenderer = new ImageWallpaperRenderer();
+        private final GLBitmapLoader mLoader = new GLBitmapLoader(mTextureCache, mDecodedCache);
         private RotationMonitor mRotationMonitor;
 
-        private ImageWallpaperMeta getWallpaperMeta() {
-            String json = mPreferences.getString(ACTION_SET_WALLPAPER, "");
-            return ImageWallpaperMeta.fromJson(json);
-        }
-
         private void handleImageChange() {
-            ImageWallpaperMeta meta = getWallpaperMeta();
+            final String json = mPreferences.getString(ACTION_SET_WALLPAPER, "");
+            ImageWallpaperMeta meta = ImageWallpaperMeta.fromJson(json);
             if (meta == null || meta.isInvalid()) {
                 return;
             }
@@ -83,28 +163,68 @@ public class ImageWallpaperService extends GLWallpaperService {
             if (meta.moveDistance > 0) {
                 distance = meta.moveDistance;
             }
-            mRenderer.setDistance(distance);
 
             float extraScale = ImageWallpaperMeta.DEFAULT_EXTRA_SCALE;
             if (meta.extraScale >= 0) {
                 extraScale = meta.extraScale;
             }
 
-            List<GLBitmap> glBitmaps = new ArrayList<>();
-            List<Float> moveFactors = new ArrayList<>();
+            float moveThreshold = ImageWallpaperMeta.DEFAULT_MOVE_THRESHOLD;
+            if (meta.moveThreshold >= 0) {
+                moveThreshold = meta.moveThreshold;
+            }
+            mRenderer.setMoveThreshold(moveThreshold);
+            if (mRotationMonitor != null) {
+                mRotationMonitor.setFilter(meta.filter);
+                mRotationMonitor.setIdleTimeout(Math.max(0, meta.idleTimeout));
+            }
 
+            final List<Float> moveFactors = new ArrayList<>();
             for (int i = 0; i < meta.images.size(); i++) {
-                float factor = meta.getMovieFactor(i);
-                moveFactors.add(factor);
-
-                String path = meta.images.get(i);
-                GLBitmap glBitmap = GLBitmap.create(path, extraScale);
-                glBitmaps.add(glBitmap);
+                moveFactors.add(meta.getMovieFactor(i));
             }
 
-            mRenderer.setImages(glBitmaps);
-            mRenderer.setMoveFactors(moveFactors);
-            requestRender();
+            Point size = getDisplaySize();
+
+            final int moveDistance = distance;
+            mLoader.load(meta.images, extraScale, size.x, size.y,
+                    GLBitmap.RESIDENCY_DROP_AFTER_UPLOAD, new GLBitmapLoader.Callback() {
+                        @Override
+                        public void onProgress(int done, int total) {
+                            Log.d(TAG, "decoded " + done + "/" + total);
+                        }
+
+                        @Override
+                        public void onLoaded(final List<GLBitmap> images, long costMs) {
+                            Log.d(TAG, "decoded " + images.size() + " layers in " + costMs + "ms "
+                                    + mDecodedCache);
+                            onLayersLoaded(ImageEngine.this, json, images);
+                            // 在 GL 线程一次性替换, 不会画出新旧混合的一帧
+                            queueEvent(new Runnable() {
+                                @Override
+                                public void run() {
+                                    mRenderer.setDistance(moveDistance);
+                                    mRenderer.setImages(images);
+                                    mRenderer.setMoveFactors(moveFactors);
+                                }
+                            });
+                            requestRender();
+                        }
+                    });
+        }
+
+        // surface 还没创建, 用屏幕的实际尺寸作为解码参考
+        private Point getDisplaySize() {
+            Point size = new Point();
+            WindowManager wm = (WindowManager) getSystemService(WINDOW_SERVICE);
+            wm.getDefaultDisplay().getRealSize(size);
+            return size;
+        }
+
+        private int getRefreshRate() {
+            WindowManager wm = (WindowManager) getSystemService(WINDOW_SERVICE);
+            int rate = Math.round(wm.getDefaultDisplay().getRefreshRate());
+            return rate > 0 ? rate : 60;
         }
 
         @Override
@@ -113,15 +233,34 @@ public class ImageWallpaperService extends GLWallpaperService {
             super.onCreate(surfaceHolder);
             setOffsetNotificationsEnabled(false);
 
-            mRotationMonitor = new RotationMonitor(getApplicationContext(), 60, this);
+            // 传感器最高按屏幕刷新率采样, 每个 vsync 取最新的一次, 转动慢时降低采样率
+            int refreshRate = getRefreshRate();
+            mRotationMonitor = new RotationMonitor(getApplicationContext(), refreshRate, this);
+            mRotationMonitor.setTraceRecorder(
+                    RotationTraceRecorder.createIfEnabled(new File(getCacheDir(), "rotation-traces")));
+            // 传感器攒几帧的数据一起上报, 绘制时按速度外推到显示的时刻
+            long framePeriodNanos = 1_000_000_000L / refreshRate;
+            long batchNanos = framePeriodNanos * SENSOR_BATCH_FRAMES;
+            mRotationMonitor.setMaxReportLatency((int) (batchNanos / 1000));
+            mRenderer.setPrediction(framePeriodNanos, batchNanos + framePeriodNanos * 2);
 
             setEGLContextClientVersion(2);
+            // 预览和桌面同时存在时, 同一套图层的纹理只上传一次
+            setShareEGLContext(true);
+
+            // 纹理分多帧上传, 没上传完时继续请求绘制
+            mRenderer.setRequestRender(new Runnable() {
+                @Override
+                public void run() {
+                    requestRender();
+                }
+            });
 
             handleImageChange();
 
             setRenderer(mRenderer);
             setPreserveEGLContextOnPause(true);
-            setRenderMode(RENDERMODE_WHEN_DIRTY);
+            setRenderMode(RENDERMODE_VSYNC);
 
             installReceiver();
         }
@@ -146,27 +285,58 @@ public class ImageWallpaperService extends GLWallpaperService {
                 mRotationMonitor.start();
             } else {
                 mRotationMonitor.stop();
+                Log.d(TAG, "frames drawn=" + mRenderer.getDrawnFrameCount()
+                        + " skipped=" + mRenderer.getSkippedFrameCount()
+                        + " avoided=" + mRotationMonitor.getAvoidedFrameCount()
+                        + " sensorOn=" + mRotationMonitor.getSensorOnMillis() + "ms"
+                        + " idle=" + mRotationMonitor.getIdleMillis() + "ms");
+                long sensorOnMs = Math.max(1, mRotationMonitor.getSensorOnMillis());
+                Log.d(TAG, "sensor cost sensorThread=" + mRotationMonitor.getSensorThreadNanos() / sensorOnMs
+                        + "us/s");
+                Log.d(TAG, "sensor " + mRotationMonitor.getRateMetrics());
             }
         }
 
         @Override
-        public void onRotationChanged(float[] angle) {
+        public void onRotationChanged(float[] angle, long timestampNanos) {
+            boolean dirty;
             if (getResources().getConfiguration().orientation == Configuration.ORIENTATION_LANDSCAPE) {
-                mRenderer.angleChanged(angle[1], angle[2]);
+                dirty = mRenderer.angleChanged(angle[1], angle[2], timestampNanos);
             } else {
-                mRenderer.angleChanged(angle[2], angle[1]);
+                dirty = mRenderer.angleChanged(angle[2], angle[1], timestampNanos);
+            }
+            // 在传感器线程, 两帧之间的多次更新合并为一次绘制
+            if (dirty) {
+                requestRender();
+            }
+        }
+
+        @Override
+        protected void dump(String prefix, FileDescriptor fd, PrintWriter out, String[] args) {
+            super.dump(prefix, fd, out, args);
+            out.println(prefix + "renderer: drawn=" + mRenderer.getDrawnFrameCount()
+                    + " skipped=" + mRenderer.getSkippedFrameCount());
+            if (mRotationMonitor != null) {
+                out.println(prefix + "sensor: rate=" + mRotationMonitor.getRate() + "Hz"
+                        + " on=" + mRotationMonitor.getSensorOnMillis() + "ms"
+                        + " idle=" + mRotationMonitor.getIdleMillis() + "ms"
+                        + " avoided=" + mRotationMonitor.getAvoidedFrameCount()
+                        + " sensorThread=" + mRotationMonitor.getSensorThreadNanos() / 1000 + "us");
+                out.println(prefix + mRotationMonitor.getRateMetrics().replace("\n", "\n" + prefix));
             }
-            requestRender();
         }
 
         @Override
         public void onDestroy() {
             uninstallReceiver();
+            mLoadedLayers.remove(this);
+            mLoader.cancel();
             if (mRotationMonitor != null) {
-                mRotationMonitor.stop();
+                mRotationMonitor.release();
             }
-            mRenderer.release();
             super.onDestroy();
+            // GL 线程已经退出, 不会再绘制这些图层
+            mRenderer.release();
         }
     }
 
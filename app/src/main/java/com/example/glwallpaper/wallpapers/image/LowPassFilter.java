@@ -0,0 +1,40 @@
+package com.example.glwallpaper.wallpapers.image;
+
+/**
+ * On 2026-10-18
+ * 固定系数的指数平滑, 之前 RotationMonitor 使用的低通滤波, 现在作用在角度上
+ */
+final class LowPassFilter implements AngleFilter {
+
+    static final float DEFAULT_ALPHA = 0.25f;
+
+    private final float mAlpha;
+    private final float[] mLast;
+    private boolean mHasLast;
+
+    /**
+     * @param alpha 每个数据的权重, 1 表示不滤波
+     */
+    LowPassFilter(int dimensions, float alpha) {
+        mAlpha = alpha;
+        mLast = new float[dimensions];
+    }
+
+    @Override
+    public void filter(long timestampNanos, float[] values) {
+        if (!mHasLast) {
+            System.arraycopy(values, 0, mLast, 0, mLast.length);
+            mHasLast = true;
+            return;
+        }
+        for (int i = 0; i < mLast.length; i++) {
+            mLast[i] = RotationMath.wrapAngle(mLast[i] + mAlpha * RotationMath.wrapAngle(values[i] - mLast[i]));
+            values[i] = mLast[i];
+        }
+    }
+
+    @Override
+    public void reset() {
+        mHasLast = false;
+    }
+}
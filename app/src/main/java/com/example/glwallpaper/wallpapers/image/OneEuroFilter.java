@@ -0,0 +1,79 @@
+package com.example.glwallpaper.wallpapers.image;
+
+/**
+ * On 2026-10-18
+ * One Euro 滤波 (Casiez 2012): 截止频率随速度变化, 静止时强滤波去掉抖动, 快速转动时弱滤波减少延迟
+ * <p>
+ * cutoff = minCutoff + beta * |速度|, 速度本身用 derivativeCutoff 平滑
+ */
+final class OneEuroFilter implements AngleFilter {
+
+    // 角度单位是弧度
+    static final float DEFAULT_MIN_CUTOFF = 0.5f;
+    static final float DEFAULT_BETA = 10f;
+    static final float DEFAULT_DERIVATIVE_CUTOFF = 1f;
+
+    // 间隔更长时认为数据中断, 重新开始
+    private static final long MAX_INTERVAL_NANOS = 1_000_000_000L;
+
+    private final float mMinCutoff;
+    private final float mBeta;
+    private final float mDerivativeCutoff;
+
+    private final float[] mLast;
+    private final float[] mLastDerivative;
+    private long mLastTimestamp;
+    private boolean mHasLast;
+
+    OneEuroFilter(int dimensions) {
+        this(dimensions, DEFAULT_MIN_CUTOFF, DEFAULT_BETA, DEFAULT_DERIVATIVE_CUTOFF);
+    }
+
+    /**
+     * @param minCutoff        静止时的截止频率, Hz
+     * @param beta             速度每增加 1 弧度/秒, 截止频率增加的量
+     * @param derivativeCutoff 速度的截止频率, Hz
+     */
+    OneEuroFilter(int dimensions, float minCutoff, float beta, float derivativeCutoff) {
+        mMinCutoff = minCutoff;
+        mBeta = beta;
+        mDerivativeCutoff = derivativeCutoff;
+        mLast = new float[dimensions];
+        mLastDerivative = new float[dimensions];
+    }
+
+    // 截止频率 cutoff 的一阶低通在间隔 dt 下的系数
+    private static float alpha(float dt, float cutoff) {
+        float tau = (float) (1 / (2 * Math.PI * cutoff));
+        return 1 / (1 + tau / dt);
+    }
+
+    @Override
+    public void filter(long timestampNanos, float[] values) {
+        long interval = timestampNanos - mLastTimestamp;
+        if (!mHasLast || interval <= 0 || interval > MAX_INTERVAL_NANOS) {
+            System.arraycopy(values, 0, mLast, 0, mLast.length);
+            for (int i = 0; i < mLastDerivative.length; i++) {
+                mLastDerivative[i] = 0;
+            }
+            mLastTimestamp = timestampNanos;
+            mHasLast = true;
+            return;
+        }
+        float dt = interval / 1e9f;
+        float derivativeAlpha = alpha(dt, mDerivativeCutoff);
+        for (int i = 0; i < mLast.length; i++) {
+            float delta = RotationMath.wrapAngle(values[i] - mLast[i]);
+            mLastDerivative[i] += derivativeAlpha * (delta / dt - mLastDerivative[i]);
+            float cutoff = mMinCutoff + mBeta * Math.abs(mLastDerivative[i]);
+            mLast[i] = RotationMath.wrapAngle(mLast[i] + alpha(dt, cutoff) * delta);
+            values[i] = mLast[i];
+        }
+        mLastTimestamp = timestampNanos;
+    }
+
+    @Override
+    public void reset() {
+        mHasLast = false;
+    }
+}
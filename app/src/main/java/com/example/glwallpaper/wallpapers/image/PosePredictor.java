@@ -0,0 +1,157 @@
+package com.example.glwallpaper.wallpapers.image;
+
+/**
+ * On 2026-10-18
+ * 按传感器时间戳保存最近的一段姿态, 估算任意时刻的姿态
+ * <p>
+ * 传感器批量上报时, 一批数据同时到达, 最新的一个也比绘制的时刻早. 传感器线程每次 add 之后取
+ * 最新的姿态和速度交给 GL 线程, 绘制时用 extrapolate 外推到显示的时刻, 外推时长不超过 horizon,
+ * 避免传感器停止上报后一直移动. 速度是 window 内数据的最小二乘斜率, 对噪声不敏感.
+ * 数组预先分配, 不分配内存, 只能在一个线程调用
+ */
+final class PosePredictor {
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final int mDimensions;
+    private final long mWindowNanos;
+    private final long mHorizonNanos;
+
+    // 环形缓冲区, mTimestamps[i] 对应 mPoses[i * mDimensions ...]
+    private final long[] mTimestamps;
+    private final float[] mPoses;
+    private int mStart;
+    private int mSize;
+
+    /**
+     * @param dimensions   姿态的维数
+     * @param capacity     最多保存的数据个数
+     * @param windowNanos  估算速度使用的时间范围
+     * @param horizonNanos 最多外推的时长, 0 表示不外推
+     */
+    PosePredictor(int dimensions, int capacity, long windowNanos, long horizonNanos) {
+        if (dimensions <= 0 || capacity < 2) {
+            throw new IllegalArgumentException("dimensions " + dimensions + " capacity " + capacity);
+        }
+        mDimensions = dimensions;
+        mWindowNanos = windowNanos;
+        mHorizonNanos = horizonNanos;
+        mTimestamps = new long[capacity];
+        mPoses = new float[capacity * dimensions];
+    }
+
+    /**
+     * 与上一个数据的间隔超过 window 时 (例如重新开始监听传感器), 之前的数据不再使用
+     *
+     * @return 时间戳不晚于最新的数据时忽略, 返回 false
+     */
+    boolean add(long timestampNanos, float[] pose) {
+        if (mSize > 0) {
+            long last = mTimestamps[index(mSize - 1)];
+            if (timestampNanos <= last) {
+                return false;
+            }
+            if (timestampNanos - last > mWindowNanos) {
+                reset();
+            }
+        }
+        int slot;
+        if (mSize < mTimestamps.length) {
+            slot = index(mSize);
+            mSize++;
+        } else {
+            slot = mStart;
+            mStart = (mStart + 1) % mTimestamps.length;
+        }
+        mTimestamps[slot] = timestampNanos;
+        System.arraycopy(pose, 0, mPoses, slot * mDimensions, mDimensions);
+        return true;
+    }
+
+    private int index(int i) {
+        return (mStart + i) % mTimestamps.length;
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    long getLastTimestamp() {
+        return mSize == 0 ? 0 : mTimestamps[index(mSize - 1)];
+    }
+
+    long getHorizon() {
+        return mHorizonNanos;
+    }
+
+    /**
+     * 最新的姿态
+     */
+    void getLast(float[] out) {
+        System.arraycopy(mPoses, index(mSize - 1) * mDimensions, out, 0, mDimensions);
+    }
+
+    /**
+     * 最新数据之前 window 内的平均速度, 每秒的变化量. 少于两个数据时为 0
+     */
+    void getVelocity(float[] out) {
+        for (int d = 0; d < mDimensions; d++) {
+            out[d] = 0;
+        }
+        if (mSize < 2) {
+            return;
+        }
+        long last = mTimestamps[index(mSize - 1)];
+        int first = mSize - 1;
+        while (first > 0 && last - mTimestamps[index(first - 1)] <= mWindowNanos) {
+            first--;
+        }
+        int count = mSize - first;
+        if (count < 2) {
+            // window 内只有一个数据, 用最近的两个
+            first = mSize - 2;
+            count = 2;
+        }
+        // 时间以最新数据为原点, 单位秒
+        double meanT = 0;
+        for (int i = first; i < mSize; i++) {
+            meanT += (mTimestamps[index(i)] - last) / NANOS_PER_SECOND;
+        }
+        meanT /= count;
+        double varT = 0;
+        for (int i = first; i < mSize; i++) {
+            double t = (mTimestamps[index(i)] - last) / NANOS_PER_SECOND - meanT;
+            varT += t * t;
+        }
+        for (int d = 0; d < mDimensions; d++) {
+            double meanP = 0;
+            for (int i = first; i < mSize; i++) {
+                meanP += mPoses[index(i) * mDimensions + d];
+            }
+            meanP /= count;
+            double cov = 0;
+            for (int i = first; i < mSize; i++) {
+                double t = (mTimestamps[index(i)] - last) / NANOS_PER_SECOND - meanT;
+                cov += t * (mPoses[index(i) * mDimensions + d] - meanP);
+            }
+            out[d] = (float) (cov / varT);
+        }
+    }
+
+    /**
+     * pose 按 velocity 外推 dtNanos, dtNanos 限制在 [0, horizonNanos]
+     */
+    static void extrapolate(float[] pose, float[] velocity, int dimensions, long dtNanos,
+                            long horizonNanos, float[] out) {
+        long dt = Math.max(0, Math.min(dtNanos, horizonNanos));
+        double seconds = dt / NANOS_PER_SECOND;
+        for (int d = 0; d < dimensions; d++) {
+            out[d] = (float) (pose[d] + velocity[d] * seconds);
+        }
+    }
+
+    void reset() {
+        mStart = 0;
+        mSize = 0;
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.glwallpaper.wallpapers.image;
+
+import java.util.Locale;
+
+/**
+ * On 2026-10-18
+ * 按手机转动的速度选择传感器的采样率, 最高是屏幕刷新率
+ * <p>
+ * 三档: 刷新率的 1/4 (不低于 15Hz), 1/2 和刷新率. 速度是滤波后角度的变化, 按 100ms 平滑.
+ * 超过一档的速度立即升到这一档; 低于这一档速度的一半并持续 500ms 才降一档, 避免在两档之间来回切换.
+ * 慢速漂移时绘制按速度外推, 低采样率看不出来. 只在传感器回调的线程调用 onAngle, 统计可以在任意线程读取
+ */
+final class RateController {
+
+    static final int MIN_RATE = 15;
+    // 弧度/秒, 进入第 1, 2 档的速度. 默认 distance 下约 2.4 像素/秒和 14 像素/秒
+    static final float MEDIUM_SPEED = 0.05f;
+    static final float FAST_SPEED = 0.3f;
+    static final float HYSTERESIS = 0.5f;
+    static final long DOWN_HOLD_NANOS = 500_000_000L;
+    private static final long SPEED_TIME_CONSTANT_NANOS = 100_000_000L;
+    private static final int HISTORY_SIZE = 16;
+
+    private final int[] mRates;
+    private final float[] mEnterSpeeds;
+
+    private volatile int mLevel;
+    private final float[] mLast = new float[3];
+    private boolean mHasLast;
+    private long mLastNanos;
+    private float mSpeed;
+    // 速度低于降档的阈值的开始时间, 没有低于时为 -1
+    private long mBelowSinceNanos = -1;
+
+    private final long[] mTimeAtLevel;
+    private volatile int mChangeCount;
+    // 最近的切换记录, 环形缓冲区. 在传感器线程只记录数值, 读取时才格式化
+    private final long[] mHistoryMillis = new long[HISTORY_SIZE];
+    private final int[] mHistoryFrom = new int[HISTORY_SIZE];
+    private final int[] mHistoryTo = new int[HISTORY_SIZE];
+    private final float[] mHistorySpeed = new float[HISTORY_SIZE];
+    private int mHistoryCount;
+
+    /**
+     * @param maxRate 屏幕刷新率
+     */
+    RateController(int maxRate) {
+        if (maxRate <= 0) {
+            throw new IllegalArgumentException("rate " + maxRate);
+        }
+        int low = Math.min(maxRate, Math.max(MIN_RATE, maxRate / 4));
+        int medium = Math.max(low, maxRate / 2);
+        mRates = new int[]{low, medium, maxRate};
+        mEnterSpeeds = new float[]{0, MEDIUM_SPEED, FAST_SPEED};
+        mTimeAtLevel = new long[mRates.length];
+        mLevel = mRates.length - 1;
+    }
+
+    /**
+     * 当前的采样率, Hz
+     */
+    int getRate() {
+        return mRates[mLevel];
+    }
+
+    int getMaxRate() {
+        return mRates[mRates.length - 1];
+    }
+
+    /**
+     * @param angle 滤波后的角度
+     * @return 采样率变了, 调用方需要重新监听
+     */
+    boolean onAngle(long timestampNanos, float[] angle) {
+        if (!mHasLast) {
+            System.arraycopy(angle, 0, mLast, 0, mLast.length);
+            mHasLast = true;
+            mLastNanos = timestampNanos;
+            return false;
+        }
+        long dt = timestampNanos - mLastNanos;
+        if (dt <= 0) {
+            return false;
+        }
+        float delta = 0;
+        for (int i = 0; i < mLast.length; i++) {
+            delta = Math.max(delta, Math.abs(angle[i] - mLast[i]));
+        }
+        System.arraycopy(angle, 0, mLast, 0, mLast.length);
+        mLastNanos = timestampNanos;
+        mTimeAtLevel[mLevel] += dt;
+
+        float speed = delta / (dt / 1e9f);
+        mSpeed += (speed - mSpeed) * dt / (float) (dt + SPEED_TIME_CONSTANT_NANOS);
+
+        int level = mLevel;
+        int target = level;
+        while (target < mRates.length - 1 && mSpeed > mEnterSpeeds[target + 1]) {
+            target++;
+        }
+        if (target > level) {
+            mBelowSinceNanos = -1;
+            return change(timestampNanos, target);
+        }
+        if (level > 0 && mSpeed < mEnterSpeeds[level] * HYSTERESIS) {
+            if (mBelowSinceNanos < 0) {
+                mBelowSinceNanos = timestampNanos;
+            } else if (timestampNanos - mBelowSinceNanos >= DOWN_HOLD_NANOS) {
+                // 降一档后重新计时
+                mBelowSinceNanos = timestampNanos;
+                return change(timestampNanos, level - 1);
+            }
+        } else {
+            mBelowSinceNanos = -1;
+        }
+        return false;
+    }
+
+    private boolean change(long timestampNanos, int level) {
+        int from = mRates[mLevel];
+        int to = mRates[level];
+        mLevel = level;
+        if (from == to) {
+            return false;
+        }
+        mChangeCount++;
+        synchronized (mHistoryMillis) {
+            int index = mHistoryCount % HISTORY_SIZE;
+            mHistoryMillis[index] = timestampNanos / 1000000;
+            mHistoryFrom[index] = from;
+            mHistoryTo[index] = to;
+            mHistorySpeed[index] = mSpeed;
+            mHistoryCount++;
+        }
+        return true;
+    }
+
+    /**
+     * 开始监听或者从静止中恢复时调用, 回到最高的采样率, 统计保留
+     */
+    void reset() {
+        mHasLast = false;
+        mSpeed = 0;
+        mBelowSinceNanos = -1;
+        mLevel = mRates.length - 1;
+    }
+
+    int getChangeCount() {
+        return mChangeCount;
+    }
+
+    /**
+     * 按最高采样率相比少处理的传感器数据数
+     */
+    long getSavedSampleCount() {
+        long saved = 0;
+        for (int i = 0; i < mRates.length; i++) {
+            saved += mTimeAtLevel[i] * (getMaxRate() - mRates[i]) / 1_000_000_000L;
+        }
+        return saved;
+    }
+
+    /**
+     * 最近的切换记录, 最早的在前, 格式是 "时间戳ms: 原采样率->新采样率 速度"
+     */
+    String getHistory() {
+        StringBuilder builder = new StringBuilder();
+        synchronized (mHistoryMillis) {
+            int start = Math.max(0, mHistoryCount - HISTORY_SIZE);
+            for (int i = start; i < mHistoryCount; i++) {
+                if (builder.length() > 0) {
+                    builder.append('\n');
+                }
+                int index = i % HISTORY_SIZE;
+                builder.append(String.format(Locale.US, "%d: %dHz->%dHz speed=%.3frad/s", mHistoryMillis[index],
+                        mHistoryFrom[index], mHistoryTo[index], mHistorySpeed[index]));
+            }
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("RateController{rate=").append(getRate())
+                .append(" changes=").append(mChangeCount)
+                .append(" saved=").append(getSavedSampleCount());
+        for (int i = 0; i < mRates.length; i++) {
+            builder.append(' ').append(mRates[i]).append("Hz=").append(mTimeAtLevel[i] / 1000000).append("ms");
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.glwallpaper.wallpapers.image;
+
+/**
+ * On 2026-10-18
+ * SensorManager.getRotationMatrixFromVector 和 getAngleChange 的 3x3 版本, 结果相同.
+ * 不依赖 Android, 可以在 JVM 上测试, 不分配内存
+ */
+final class RotationMath {
+
+    private RotationMath() {
+    }
+
+    /**
+     * @param rotationVector TYPE_ROTATION_VECTOR 的 values, 只使用前 length 个
+     * @param length         3 时由前三个分量计算 cos(θ/2)
+     * @param R              3x3 旋转矩阵
+     */
+    static void getRotationMatrixFromVector(float[] R, float[] rotationVector, int length) {
+        float q0;
+        float q1 = rotationVector[0];
+        float q2 = rotationVector[1];
+        float q3 = rotationVector[2];
+
+        if (length >= 4) {
+            q0 = rotationVector[3];
+        } else {
+            q0 = 1 - q1 * q1 - q2 * q2 - q3 * q3;
+            q0 = (q0 > 0) ? (float) Math.sqrt(q0) : 0;
+        }
+
+        float sq_q1 = 2 * q1 * q1;
+        float sq_q2 = 2 * q2 * q2;
+        float sq_q3 = 2 * q3 * q3;
+        float q1_q2 = 2 * q1 * q2;
+        float q3_q0 = 2 * q3 * q0;
+        float q1_q3 = 2 * q1 * q3;
+        float q2_q0 = 2 * q2 * q0;
+        float q2_q3 = 2 * q2 * q3;
+        float q1_q0 = 2 * q1 * q0;
+
+        R[0] = 1 - sq_q2 - sq_q3;
+        R[1] = q1_q2 - q3_q0;
+        R[2] = q1_q3 + q2_q0;
+
+        R[3] = q1_q2 + q3_q0;
+        R[4] = 1 - sq_q1 - sq_q3;
+        R[5] = q2_q3 - q1_q0;
+
+        R[6] = q1_q3 - q2_q0;
+        R[7] = q2_q3 + q1_q0;
+        R[8] = 1 - sq_q1 - sq_q2;
+    }
+
+    /**
+     * 换算到 [-π, π), 两个角度之差经过它之后是较短方向的转动
+     */
+    static float wrapAngle(float radians) {
+        if (radians >= -Math.PI && radians < Math.PI) {
+            return radians;
+        }
+        double turns = Math.floor((radians + Math.PI) / (2 * Math.PI));
+        return (float) (radians - turns * 2 * Math.PI);
+    }
+
+    /**
+     * 从 prevR 到 R 的旋转, 依次是绕 z, x, y 轴的角度 (弧度)
+     */
+    static void getAngleChange(float[] angleChange, float[] R, float[] prevR) {
+        // rd[i][j] = prevR[0][i] * R[0][j] + prevR[1][i] * R[1][j] + prevR[2][i] * R[2][j]
+        float rd1 = prevR[0] * R[1] + prevR[3] * R[4] + prevR[6] * R[7];
+        float rd4 = prevR[1] * R[1] + prevR[4] * R[4] + prevR[7] * R[7];
+        float rd6 = prevR[2] * R[0] + prevR[5] * R[3] + prevR[8] * R[6];
+        float rd7 = prevR[2] * R[1] + prevR[5] * R[4] + prevR[8] * R[7];
+        float rd8 = prevR[2] * R[2] + prevR[5] * R[5] + prevR[8] * R[8];
+
+        angleChange[0] = (float) Math.atan2(rd1, rd4);
+        angleChange[1] = (float) Math.asin(-rd7);
+        angleChange[2] = (float) Math.atan2(-rd6, rd8);
+    }
+}
@@ -5,96 +5,381 @@ import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
+import android.hardware.TriggerEvent;
+import android.hardware.TriggerEventListener;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
 
 /**
  * On 2021-11-22
+ * <p>
+ * 传感器数据在自己的 HandlerThread 上接收和滤波, 不占用主线程. 监听状态只在这个线程修改,
+ * start 和 stop 也是发送到这个线程执行
  */
 public class RotationMonitor {
 
+    private static final String TAG = "RotationMonitor";
+
     private final SensorManager mSensorManager;
     private final Sensor mSensor;
+    // 静止时等待移动使用的传感器, 优先用低频的加速度计, 没有时用显著运动
+    private final Sensor mAccelerometer;
+    private final Sensor mSignificantMotion;
+
+    private final HandlerThread mThread;
+    private final Handler mHandler;
+
+    private final FilteredSensorEventListener mListener;
+    private final IdleDetector mIdleDetector = new IdleDetector(3);
+    private final RateController mRateController;
+
+    // 以下状态只在传感器线程修改, 其他线程只读取统计
+    private volatile boolean mStarted = false;
+    // 静止中, 旋转矢量已经停止监听
+    private volatile boolean mIdle = false;
+    private volatile int mMaxReportLatencyUs;
 
-    private final LowPassSensorEventListener mListener;
+    private volatile long mRegisteredAtNanos;
+    private volatile long mIdleSinceNanos;
+    private volatile long mSensorOnNanos;
+    private volatile long mIdleNanos;
+    private volatile int mIdleCount;
 
-    private boolean mStarted = false;
-    private final int mRate;
+    // 在传感器线程处理传感器数据的耗时
+    private volatile long mSensorThreadNanos;
+
+    // 调试时记录滤波之前的角度, 见 RotationTraceRecorder
+    private volatile RotationTraceRecorder mTraceRecorder;
+
+    private final Runnable mStartRunnable = new Runnable() {
+        @Override
+        public void run() {
+            startInternal();
+        }
+    };
+
+    private final Runnable mStopRunnable = new Runnable() {
+        @Override
+        public void run() {
+            stopInternal();
+        }
+    };
+
+    private final Runnable mWakeRunnable = new Runnable() {
+        @Override
+        public void run() {
+            wake();
+        }
+    };
+
+    private final SensorEventListener mWakeListener = new SensorEventListener() {
+        @Override
+        public void onSensorChanged(SensorEvent event) {
+            if (!mIdle) {
+                return;
+            }
+            if (mIdleDetector.onAcceleration(event.values)) {
+                wake();
+            }
+        }
+
+        @Override
+        public void onAccuracyChanged(Sensor sensor, int accuracy) {
+        }
+    };
 
-    public RotationMonitor(Context context, int refreshRate, float lowPass, RotationChangedListener listener) {
+    private final TriggerEventListener mTriggerListener = new TriggerEventListener() {
+        @Override
+        public void onTrigger(TriggerEvent event) {
+            // 触发传感器的回调在主线程
+            mHandler.post(mWakeRunnable);
+        }
+    };
+
+    public RotationMonitor(Context context, int refreshRate, RotationChangedListener listener) {
         mSensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
         mSensor = mSensorManager.getDefaultSensor(Sensor.TYPE_ROTATION_VECTOR);
-        mRate = refreshRate;
-        mListener = new LowPassSensorEventListener(lowPass, listener);
+        mAccelerometer = mSensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+        mSignificantMotion = mSensorManager.getDefaultSensor(Sensor.TYPE_SIGNIFICANT_MOTION);
+        mRateController = new RateController(refreshRate);
+        mListener = new FilteredSensorEventListener(listener);
+        mThread = new HandlerThread(TAG, Process.THREAD_PRIORITY_DISPLAY);
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
     }
 
-    public RotationMonitor(Context context, int refreshRate, RotationChangedListener listener) {
-        this(context, refreshRate, LowPassSensorEventListener.ALPHA, listener);
+    /**
+     * 替换角度的滤波器, 可以在任意线程调用, 从下一个数据开始生效
+     *
+     * @param spec 见 FilterChain.create
+     */
+    public void setFilter(String spec) {
+        mListener.mFilter = FilterChain.create(spec, 3);
+    }
+
+    /**
+     * 记录之后收到的角度, 每次 stop 写一个文件. 需要在 start 之前调用
+     *
+     * @param recorder null 表示不记录
+     */
+    void setTraceRecorder(RotationTraceRecorder recorder) {
+        mTraceRecorder = recorder;
+    }
+
+    /**
+     * 手机静止这么久后停止监听旋转矢量, 直到再次移动. 静止期间不会回调, 也就不会重新绘制
+     *
+     * @param timeoutMs 0 表示一直监听
+     */
+    public void setIdleTimeout(long timeoutMs) {
+        mIdleDetector.setTimeout(timeoutMs);
     }
 
     public interface RotationChangedListener {
-        void onRotationChanged(float[] angle);
+
+        /**
+         * 在传感器线程回调
+         *
+         * @param angle          相对开始监听时的角度, 每次回调复用同一个数组, 只读, 不能在回调之后保存
+         * @param timestampNanos 传感器数据的时间戳, 批量上报时早于回调的时间
+         */
+        void onRotationChanged(float[] angle, long timestampNanos);
+    }
+
+    /**
+     * 允许传感器在 FIFO 中缓存数据, 最多延迟这么久批量上报, 减少唤醒应用处理器的次数.
+     * 不支持 FIFO 的设备上没有效果. 下一次 start 时生效
+     *
+     * @param maxReportLatencyUs 0 表示每个数据都立即上报
+     */
+    public void setMaxReportLatency(int maxReportLatencyUs) {
+        mMaxReportLatencyUs = maxReportLatencyUs;
     }
 
+    /**
+     * 可以在任意线程调用, 在传感器线程开始监听
+     */
     public void start() {
+        mHandler.post(mStartRunnable);
+    }
+
+    /**
+     * 可以在任意线程调用, 在传感器线程停止监听. 之后不会再回调, 已经在队列中的数据也会丢弃
+     */
+    public void stop() {
+        mHandler.post(mStopRunnable);
+    }
+
+    /**
+     * 停止监听并结束传感器线程, 之后不能再 start
+     */
+    public void release() {
+        stop();
+        mThread.quitSafely();
+    }
+
+    private void startInternal() {
         if (mStarted) {
             return;
         }
-        mSensorManager.registerListener(mListener, mSensor, 1000000 / mRate);
+        mIdleDetector.reset();
+        mRateController.reset();
+        register();
         mStarted = true;
     }
 
-    public void stop() {
+    private void stopInternal() {
         if (!mStarted) {
             return;
         }
-        mSensorManager.unregisterListener(mListener);
+        if (mIdle) {
+            unregisterWake();
+        } else {
+            unregister();
+        }
         mStarted = false;
         mListener.onStop();
+        RotationTraceRecorder recorder = mTraceRecorder;
+        if (recorder != null) {
+            recorder.flush();
+        }
     }
 
-    private static class LowPassSensorEventListener implements SensorEventListener {
+    private void register() {
+        int period = 1000000 / mRateController.getRate();
+        if (mMaxReportLatencyUs > 0) {
+            mSensorManager.registerListener(mListener, mSensor, period, mMaxReportLatencyUs, mHandler);
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, "batching " + mMaxReportLatencyUs + "us fifo=" + mSensor.getFifoMaxEventCount());
+            }
+        } else {
+            mSensorManager.registerListener(mListener, mSensor, period, mHandler);
+        }
+        mRegisteredAtNanos = SystemClock.elapsedRealtimeNanos();
+    }
 
-        private static final float ALPHA = 0.25f;
+    private void unregister() {
+        mSensorManager.unregisterListener(mListener);
+        mSensorOnNanos += SystemClock.elapsedRealtimeNanos() - mRegisteredAtNanos;
+    }
 
-        private final float mAlpha;
-        private float[] mLastRotation;
-        private float[] mLastValues;
-        private final RotationChangedListener mAngleListener;
+    // 采样率变了, 按新的周期重新监听
+    private void changeRate() {
+        if (!mStarted || mIdle) {
+            return;
+        }
+        unregister();
+        register();
+        // 转动时可能每秒切换几次, 没有打开调试日志时不拼接字符串
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "rate " + mRateController.getRate() + "Hz " + mRateController);
+        }
+    }
 
-        private LowPassSensorEventListener(float alpha, RotationChangedListener angleListener) {
-            mAlpha = alpha;
-            mAngleListener = angleListener;
+    // 静止了, 停止监听旋转矢量. 角度的基准保留, 恢复后不会跳回中间
+    private void suspend() {
+        if (!mStarted || mIdle) {
+            return;
+        }
+        if (mAccelerometer != null) {
+            mSensorManager.registerListener(mWakeListener, mAccelerometer, SensorManager.SENSOR_DELAY_NORMAL,
+                    mHandler);
+        } else if (mSignificantMotion == null
+                || !mSensorManager.requestTriggerSensor(mTriggerListener, mSignificantMotion)) {
+            // 没有可以唤醒的传感器, 重新计时, 继续监听
+            mIdleDetector.reset();
+            return;
         }
+        unregister();
+        mIdle = true;
+        mIdleCount++;
+        mIdleSinceNanos = SystemClock.elapsedRealtimeNanos();
+        Log.d(TAG, "idle, sensor on " + getSensorOnMillis() + "ms");
+    }
 
-        // 低通滤波 https://github.com/Bhide/Low-Pass-Filter-To-Android-Sensors
-        private float[] lowPass(float[] input, float[] output) {
-            if (output == null) {
-                return input;
-            }
+    private void wake() {
+        if (!mStarted || !mIdle) {
+            return;
+        }
+        unregisterWake();
+        mIdleDetector.reset();
+        mRateController.reset();
+        register();
+        Log.d(TAG, "wake after " + (SystemClock.elapsedRealtimeNanos() - mIdleSinceNanos) / 1000000 + "ms");
+    }
 
-            for (int i = 0; i < input.length; i++) {
-                output[i] = output[i] + mAlpha * (input[i] - output[i]);
-            }
-            return output;
+    private void unregisterWake() {
+        if (mAccelerometer != null) {
+            mSensorManager.unregisterListener(mWakeListener);
+        } else {
+            mSensorManager.cancelTriggerSensor(mTriggerListener, mSignificantMotion);
+            mHandler.removeCallbacks(mWakeRunnable);
+        }
+        mIdleNanos += SystemClock.elapsedRealtimeNanos() - mIdleSinceNanos;
+        mIdle = false;
+    }
+
+    /**
+     * 旋转矢量累计监听的时间, 不包括静止的时间
+     */
+    public long getSensorOnMillis() {
+        long nanos = mSensorOnNanos;
+        if (mStarted && !mIdle) {
+            nanos += SystemClock.elapsedRealtimeNanos() - mRegisteredAtNanos;
+        }
+        return nanos / 1000000;
+    }
+
+    /**
+     * 静止累计的时间
+     */
+    public long getIdleMillis() {
+        long nanos = mIdleNanos;
+        if (mIdle) {
+            nanos += SystemClock.elapsedRealtimeNanos() - mIdleSinceNanos;
+        }
+        return nanos / 1000000;
+    }
+
+    /**
+     * 静止期间少处理的传感器数据数, 传感器按屏幕刷新率采样, 也就是最多少检查的帧数
+     */
+    public long getAvoidedFrameCount() {
+        return getIdleMillis() * mRateController.getMaxRate() / 1000;
+    }
+
+    /**
+     * 当前的采样率, Hz. 转动快时是屏幕刷新率, 慢时降低
+     */
+    public int getRate() {
+        return mRateController.getRate();
+    }
+
+    /**
+     * 采样率的统计和最近的切换记录
+     */
+    public String getRateMetrics() {
+        return mRateController + "\n" + mRateController.getHistory();
+    }
+
+    public int getIdleCount() {
+        return mIdleCount;
+    }
+
+    /**
+     * 在传感器线程处理传感器数据的累计耗时, 包括回调 RotationChangedListener
+     */
+    public long getSensorThreadNanos() {
+        return mSensorThreadNanos;
+    }
+
+    private class FilteredSensorEventListener implements SensorEventListener {
+
+        private final RotationProcessor mProcessor = new RotationProcessor();
+        private final RotationChangedListener mAngleListener;
+        private volatile AngleFilter mFilter = FilterChain.create(FilterChain.DEFAULT, 3);
+        private AngleFilter mActiveFilter;
+        private final float[] mAngle = new float[3];
+
+        private FilteredSensorEventListener(RotationChangedListener angleListener) {
+            mAngleListener = angleListener;
         }
 
         @Override
         public void onSensorChanged(SensorEvent event) {
-            if (mLastValues == null) {
-                mLastValues = new float[event.values.length];
+            // stop 之后队列中剩下的数据
+            if (!mStarted || mIdle) {
+                return;
             }
-            mLastValues = lowPass(event.values.clone(), mLastValues);
-
-            float[] rotation = new float[9];
-            SensorManager.getRotationMatrixFromVector(rotation, mLastValues);
+            long start = System.nanoTime();
+            handle(event);
+            mSensorThreadNanos += System.nanoTime() - start;
+        }
 
-            if (mLastRotation == null) {
-                mLastRotation = rotation;
+        private void handle(SensorEvent event) {
+            float[] angle = mProcessor.process(event.values);
+            if (angle == null || mAngleListener == null) {
                 return;
             }
-            float[] angle = new float[3];
-            SensorManager.getAngleChange(angle, rotation, mLastRotation);
-            if (mAngleListener != null) {
-                mAngleListener.onRotationChanged(angle);
+            RotationTraceRecorder recorder = mTraceRecorder;
+            if (recorder != null) {
+                recorder.record(SystemClock.elapsedRealtimeNanos(), event.timestamp, angle);
+            }
+            AngleFilter filter = mFilter;
+            if (filter != mActiveFilter) {
+                filter.reset();
+                mActiveFilter = filter;
+            }
+            System.arraycopy(angle, 0, mAngle, 0, mAngle.length);
+            filter.filter(event.timestamp, mAngle);
+            mAngleListener.onRotationChanged(mAngle, event.timestamp);
+            if (mIdleDetector.onAngle(event.timestamp, mAngle)) {
+                suspend();
+            } else if (mRateController.onAngle(event.timestamp, mAngle)) {
+                changeRate();
             }
         }
 
@@ -103,8 +388,10 @@ public class RotationMonitor {
         }
 
         private void onStop() {
-            mLastRotation = null;
-            mLastValues = null;
+            mProcessor.reset();
+            if (mActiveFilter != null) {
+                mActiveFilter.reset();
+            }
         }
     }
 }
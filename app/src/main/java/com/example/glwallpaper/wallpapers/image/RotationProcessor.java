@@ -0,0 +1,45 @@
+package com.example.glwallpaper.wallpapers.image;
+
+/**
+ * On 2026-10-18
+ * 旋转矢量传感器的数据转换为相对第一次数据的角度变化. 滤波在角度空间进行, 见 AngleFilter
+ * <p>
+ * 所有数组预先分配, 每次 process 都写入同一组数组, 传感器可见期间一直回调也不产生垃圾.
+ * 只能在一个线程调用
+ */
+final class RotationProcessor {
+
+    // TYPE_ROTATION_VECTOR 最多 5 个值, 第 5 个是精度
+    private static final int MAX_VALUES = 5;
+
+    // 第一次的旋转作为基准, 之后每次只写 mRotation
+    private final float[] mBaseRotation = new float[9];
+    private final float[] mRotation = new float[9];
+    private boolean mHasBase;
+
+    private final float[] mAngle = new float[3];
+
+    /**
+     * @param values 传感器数据, 不会保存
+     * @return 相对基准的角度, 每次返回同一个数组, 只在下一次 process 之前有效, 调用方不能修改.
+     * 第一次数据作为基准, 返回 null
+     */
+    float[] process(float[] values) {
+        int length = Math.min(values.length, MAX_VALUES);
+        if (!mHasBase) {
+            RotationMath.getRotationMatrixFromVector(mBaseRotation, values, length);
+            mHasBase = true;
+            return null;
+        }
+        RotationMath.getRotationMatrixFromVector(mRotation, values, length);
+        RotationMath.getAngleChange(mAngle, mRotation, mBaseRotation);
+        return mAngle;
+    }
+
+    /**
+     * 停止监听后调用, 下一次数据重新作为基准
+     */
+    void reset() {
+        mHasBase = false;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.glwallpaper.wallpapers.image;
+
+import android.util.Log;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * On 2026-10-18
+ * 把传感器线程收到的角度 (滤波之前) 记录成 CSV, 用于 FilterHarness 离线回放和 PosePredictor 的测试.
+ * 只在调试时打开: adb shell setprop log.tag.RotationTrace VERBOSE, 之后每次停止监听
+ * 在 cache/rotation-traces 中写一个文件
+ * <p>
+ * 每行是 "到达时间,传感器时间戳,azimuth,pitch,roll", 时间都是 elapsedRealtimeNanos 的时钟.
+ * 批量上报时同一批数据的到达时间相同. 数组预先分配, 记录时不分配内存, 写满后丢弃之后的数据.
+ * 只在传感器线程调用, 写文件在单独的线程
+ */
+final class RotationTraceRecorder {
+
+    static final String TAG = "RotationTrace";
+    static final String HEADER = "# deliveryNanos,timestampNanos,azimuth,pitch,roll";
+
+    // 60Hz 时大约 2 分钟
+    private static final int DEFAULT_CAPACITY = 7200;
+
+    private final File mDir;
+    private long[] mTimes;
+    private float[] mAngles;
+    private int mCount;
+    private int mDropped;
+
+    RotationTraceRecorder(File dir, int capacity) {
+        mDir = dir;
+        mTimes = new long[capacity * 2];
+        mAngles = new float[capacity * 3];
+    }
+
+    /**
+     * @return 没有打开调试开关时返回 null
+     */
+    static RotationTraceRecorder createIfEnabled(File dir) {
+        if (!Log.isLoggable(TAG, Log.VERBOSE)) {
+            return null;
+        }
+        return new RotationTraceRecorder(dir, DEFAULT_CAPACITY);
+    }
+
+    void record(long deliveryNanos, long timestampNanos, float[] angle) {
+        if (mCount * 2 >= mTimes.length) {
+            mDropped++;
+            return;
+        }
+        mTimes[mCount * 2] = deliveryNanos;
+        mTimes[mCount * 2 + 1] = timestampNanos;
+        System.arraycopy(angle, 0, mAngles, mCount * 3, 3);
+        mCount++;
+    }
+
+    /**
+     * 停止监听后调用, 在后台线程把已经记录的数据写到一个新文件, 之后重新开始记录
+     */
+    void flush() {
+        if (mCount == 0) {
+            return;
+        }
+        final long[] times = mTimes;
+        final float[] angles = mAngles;
+        final int count = mCount;
+        final int dropped = mDropped;
+        mTimes = new long[times.length];
+        mAngles = new float[angles.length];
+        mCount = 0;
+        mDropped = 0;
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                File file = new File(mDir, "rotation-" + times[1] + ".csv");
+                try {
+                    write(file, times, angles, count);
+                    Log.i(TAG, "wrote " + count + " events to " + file + ", dropped " + dropped);
+                } catch (IOException e) {
+                    Log.w(TAG, "write " + file + " failed", e);
+                }
+            }
+        }, "RotationTraceWriter").start();
+    }
+
+    private void write(File file, long[] times, float[] angles, int count) throws IOException {
+        if (!mDir.isDirectory() && !mDir.mkdirs()) {
+            throw new IOException("mkdirs " + mDir);
+        }
+        try (Writer out = new BufferedWriter(new FileWriter(file))) {
+            out.write(HEADER);
+            out.write('\n');
+            for (int i = 0; i < count; i++) {
+                out.write(times[i * 2] + "," + times[i * 2 + 1] + "," + angles[i * 3] + ","
+                        + angles[i * 3 + 1] + "," + angles[i * 3 + 2] + "\n");
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.glwallpaper.wallpapers.image;
+
+/**
+ * On 2026-10-18
+ * 临界阻尼弹簧跟随传感器的角度, 没有过冲, 输出的速度连续, 画面的移动更自然
+ * <p>
+ * 两个数据之间目标不变, 按解析解推进, 任意采样间隔都稳定:
+ * e(t) = (e0 + (v0 + ω·e0)·t)·exp(-ωt), e 是与目标的差
+ */
+final class SpringFilter implements AngleFilter {
+
+    // 越高跟随越快, 抖动也越多
+    static final float DEFAULT_FREQUENCY = 4f;
+
+    private static final long MAX_INTERVAL_NANOS = 1_000_000_000L;
+
+    private final float mOmega;
+    private final float[] mPosition;
+    private final float[] mVelocity;
+    private long mLastTimestamp;
+    private boolean mHasLast;
+
+    SpringFilter(int dimensions) {
+        this(dimensions, DEFAULT_FREQUENCY);
+    }
+
+    /**
+     * @param frequency 弹簧的自然频率, Hz
+     */
+    SpringFilter(int dimensions, float frequency) {
+        mOmega = (float) (2 * Math.PI * frequency);
+        mPosition = new float[dimensions];
+        mVelocity = new float[dimensions];
+    }
+
+    @Override
+    public void filter(long timestampNanos, float[] values) {
+        long interval = timestampNanos - mLastTimestamp;
+        if (!mHasLast || interval <= 0 || interval > MAX_INTERVAL_NANOS) {
+            System.arraycopy(values, 0, mPosition, 0, mPosition.length);
+            for (int i = 0; i < mVelocity.length; i++) {
+                mVelocity[i] = 0;
+            }
+            mLastTimestamp = timestampNanos;
+            mHasLast = true;
+            return;
+        }
+        float dt = interval / 1e9f;
+        float decay = (float) Math.exp(-mOmega * dt);
+        for (int i = 0; i < mPosition.length; i++) {
+            // 目标取离当前位置较近的那一圈
+            float error = -RotationMath.wrapAngle(values[i] - mPosition[i]);
+            float temp = (mVelocity[i] + mOmega * error) * dt;
+            mPosition[i] = RotationMath.wrapAngle(values[i] + (error + temp) * decay);
+            mVelocity[i] = (mVelocity[i] - mOmega * temp) * decay;
+            values[i] = mPosition[i];
+        }
+        mLastTimestamp = timestampNanos;
+    }
+
+    @Override
+    public void reset() {
+        mHasLast = false;
+    }
+}
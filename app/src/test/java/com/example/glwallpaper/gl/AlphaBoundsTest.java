@@ -0,0 +1,57 @@
+package com.example.glwallpaper.gl;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class AlphaBoundsTest {
+
+    private static ByteBuffer rgba(int width, int height) {
+        return ByteBuffer.allocate(width * height * 4);
+    }
+
+    private static void setAlpha(ByteBuffer pixels, int width, int x, int y, int alpha) {
+        pixels.put((y * width + x) * 4 + 3, (byte) alpha);
+    }
+
+    @Test
+    public void findsOpaqueRect() {
+        ByteBuffer pixels = rgba(10, 8);
+        setAlpha(pixels, 10, 2, 3, 0x80);
+        setAlpha(pixels, 10, 6, 5, 0xff);
+        setAlpha(pixels, 10, 4, 1, 1);
+        int[] out = new int[4];
+        assertTrue(AlphaBounds.find(pixels, 10, 8, 4, 3, out));
+        assertArrayEquals(new int[]{2, 1, 7, 6}, out);
+    }
+
+    @Test
+    public void fullyTransparent() {
+        int[] out = {-1, -1, -1, -1};
+        assertFalse(AlphaBounds.find(rgba(4, 4), 4, 4, 4, 3, out));
+        assertArrayEquals(new int[]{-1, -1, -1, -1}, out);
+    }
+
+    @Test
+    public void edgePixelsKeepFullBounds() {
+        ByteBuffer pixels = rgba(5, 5);
+        setAlpha(pixels, 5, 0, 0, 0xff);
+        setAlpha(pixels, 5, 4, 4, 0xff);
+        int[] out = new int[4];
+        assertTrue(AlphaBounds.find(pixels, 5, 5, 4, 3, out));
+        assertArrayEquals(new int[]{0, 0, 5, 5}, out);
+    }
+
+    @Test
+    public void alpha8() {
+        ByteBuffer pixels = ByteBuffer.allocate(6 * 3);
+        pixels.put(1 * 6 + 3, (byte) 0x10);
+        int[] out = new int[4];
+        assertTrue(AlphaBounds.find(pixels, 6, 3, 1,
+                AlphaBounds.alphaOffset(TextureFormat.ALPHA_8), out));
+        assertArrayEquals(new int[]{3, 1, 4, 2}, out);
+        assertEquals(-1, AlphaBounds.alphaOffset(TextureFormat.RGB_565));
+    }
+}
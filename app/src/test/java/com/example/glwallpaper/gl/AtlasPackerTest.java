@@ -0,0 +1,110 @@
+package com.example.glwallpaper.gl;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class AtlasPackerTest {
+
+    // 同一页中的矩形 (包括 padding) 不能重叠, 也不能超出页面
+    private static void assertValid(AtlasPacker.Result result, int[] widths, int[] heights,
+                                    int pageSize, int padding) {
+        for (int i = 0; i < widths.length; i++) {
+            int page = result.pages[i];
+            if (page < 0) {
+                continue;
+            }
+            assertTrue(result.xs[i] - padding >= 0);
+            assertTrue(result.ys[i] - padding >= 0);
+            assertTrue(result.xs[i] + widths[i] + padding <= result.getPageWidth(page));
+            assertTrue(result.ys[i] + heights[i] + padding <= result.getPageHeight(page));
+            assertTrue(result.getPageWidth(page) <= pageSize);
+            assertTrue(result.getPageHeight(page) <= pageSize);
+            for (int j = i + 1; j < widths.length; j++) {
+                if (result.pages[j] != page) {
+                    continue;
+                }
+                boolean apart = result.xs[i] + widths[i] + padding <= result.xs[j] - padding
+                        || result.xs[j] + widths[j] + padding <= result.xs[i] - padding
+                        || result.ys[i] + heights[i] + padding <= result.ys[j] - padding
+                        || result.ys[j] + heights[j] + padding <= result.ys[i] - padding;
+                assertTrue("rect " + i + " overlaps " + j, apart);
+            }
+        }
+    }
+
+    @Test
+    public void packsShelvesByHeight() {
+        AtlasPacker packer = new AtlasPacker(100, 100, 0);
+        AtlasPacker.Result result = packer.pack(new int[]{50, 50, 30, 40}, new int[]{20, 40, 20, 40});
+        assertEquals(1, result.getPageCount());
+        // 高的先放: 1 -> (0, 0), 3 -> (50, 0), 0 和 2 在第二行
+        assertEquals(0, result.xs[1]);
+        assertEquals(50, result.xs[3]);
+        assertEquals(0, result.ys[3]);
+        assertEquals(40, result.ys[0]);
+        assertEquals(50, result.xs[2]);
+        assertEquals(40, result.ys[2]);
+        assertEquals(90, result.getPageWidth(0));
+        assertEquals(60, result.getPageHeight(0));
+        assertEquals(50 * 20 + 50 * 40 + 30 * 20 + 40 * 40, result.getContentArea());
+    }
+
+    @Test
+    public void opensNewPageWhenFull() {
+        AtlasPacker packer = new AtlasPacker(64, 64, 1);
+        int[] sizes = {40, 40, 40};
+        AtlasPacker.Result result = packer.pack(sizes, sizes);
+        assertEquals(3, result.getPageCount());
+        assertEquals(0, result.pages[0]);
+        assertEquals(1, result.pages[1]);
+        assertEquals(2, result.pages[2]);
+        assertEquals(1, result.xs[0]);
+        assertEquals(1, result.ys[0]);
+        assertEquals(42, result.getPageWidth(0));
+    }
+
+    @Test
+    public void rejectsOversizedRects() {
+        AtlasPacker packer = new AtlasPacker(64, 64, 1);
+        AtlasPacker.Result result = packer.pack(new int[]{64, 10}, new int[]{10, 10});
+        assertEquals(-1, result.pages[0]);
+        assertEquals(0, result.pages[1]);
+        assertEquals(1, result.getPageCount());
+    }
+
+    @Test
+    public void deterministicAndValid() {
+        Random random = new Random(7);
+        int count = 60;
+        int[] widths = new int[count];
+        int[] heights = new int[count];
+        for (int i = 0; i < count; i++) {
+            widths[i] = 8 + random.nextInt(200);
+            heights[i] = 8 + random.nextInt(200);
+        }
+        AtlasPacker packer = new AtlasPacker(512, 512, 1);
+        AtlasPacker.Result first = packer.pack(widths, heights);
+        AtlasPacker.Result second = packer.pack(widths, heights);
+        assertArrayEquals(first.pages, second.pages);
+        assertArrayEquals(first.xs, second.xs);
+        assertArrayEquals(first.ys, second.ys);
+        assertValid(first, widths, heights, 512, 1);
+        assertTrue("efficiency " + first.getEfficiency(), first.getEfficiency() > 0.6f);
+        assertTrue(first.getEfficiency() <= 1f);
+    }
+
+    @Test
+    public void emptyInput() {
+        AtlasPacker.Result result = new AtlasPacker(64, 64, 1).pack(new int[0], new int[0]);
+        assertEquals(0, result.getPageCount());
+        assertEquals(0f, result.getEfficiency(), 0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyRect() {
+        new AtlasPacker(64, 64, 1).pack(new int[]{0}, new int[]{10});
+    }
+}
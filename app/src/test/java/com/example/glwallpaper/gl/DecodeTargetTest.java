@@ -0,0 +1,82 @@
+package com.example.glwallpaper.gl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DecodeTargetTest {
+
+    private static final int ARGB_8888 = 4;
+
+    private static final int[][] IMAGES = {
+            {8000, 6000},   // 48 MP
+            {6000, 8000},
+            {12000, 9000},  // 108 MP
+            {4032, 3024},
+            {20000, 2000},  // 全景
+            {1000, 16000},  // 长截图
+            {7000, 7000},
+    };
+
+    private static final int[][] SURFACES = {
+            {1080, 2400},
+            {1440, 3200},
+            {2400, 1080},
+            {720, 1280},
+    };
+
+    @Test
+    public void decodedBytesBoundedBySurface() {
+        float extraScale = 0.2f;
+        for (int[] image : IMAGES) {
+            for (int[] surface : SURFACES) {
+                for (boolean transposed : new boolean[]{false, true}) {
+                    DecodeTarget target = DecodeTarget.compute(image[0], image[1], transposed,
+                            surface[0], surface[1], extraScale);
+
+                    int imageW = transposed ? image[1] : image[0];
+                    int imageH = transposed ? image[0] : image[1];
+                    float scale = Math.max(surface[0] / (float) imageW,
+                            surface[1] / (float) imageH) + extraScale;
+                    long bound = (long) Math.ceil(image[0] * scale + 1)
+                            * (long) Math.ceil(image[1] * scale + 1) * ARGB_8888;
+
+                    long bytes = target.byteCount(ARGB_8888);
+                    assertTrue("decoded " + bytes + " > " + bound, bytes <= bound);
+                    assertTrue(bytes <= (long) image[0] * image[1] * ARGB_8888);
+
+                    // 采样后的中间图不会超过目标尺寸的两倍
+                    assertTrue(target.sampledWidth < target.width * 2);
+                    assertTrue(target.sampledHeight < target.height * 2);
+                    // 也不会小于目标尺寸, 否则需要放大解码
+                    assertTrue(target.sampledWidth >= target.width);
+                    assertTrue(target.sampledHeight >= target.height);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void coversSurfaceAfterScale() {
+        DecodeTarget target = DecodeTarget.compute(8000, 6000, false, 1080, 2400, 0);
+        assertTrue(target.width * 2400 >= target.height * 1080);
+        assertTrue(target.height >= 2400);
+        assertEquals(2, target.sampleSize);
+    }
+
+    @Test
+    public void smallImageKeepsOriginalSize() {
+        DecodeTarget target = DecodeTarget.compute(800, 600, false, 1080, 2400, 0.2f);
+        assertEquals(1, target.sampleSize);
+        assertEquals(800, target.width);
+        assertEquals(600, target.height);
+        assertFalse(target.needsScale());
+    }
+
+    @Test
+    public void unknownSurfaceKeepsOriginalSize() {
+        DecodeTarget target = DecodeTarget.compute(8000, 6000, false, 0, 0, 0.2f);
+        assertEquals(8000, target.width);
+        assertEquals(6000, target.height);
+    }
+}
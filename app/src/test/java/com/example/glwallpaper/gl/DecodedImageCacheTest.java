@@ -0,0 +1,168 @@
+package com.example.glwallpaper.gl;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class DecodedImageCacheTest {
+
+    // ALPHA_8, 字节数等于 width * height
+    private static TextureData data(int bytes) {
+        return new TextureData(TextureFormat.ALPHA_8, bytes, 1, TextureOrientation.NORMAL,
+                ByteBuffer.allocate(bytes));
+    }
+
+    private static class CountingLoader implements DecodedImageCache.Loader {
+        final AtomicInteger loads = new AtomicInteger();
+        final int bytes;
+
+        CountingLoader(int bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public TextureData load() {
+            loads.incrementAndGet();
+            return data(bytes);
+        }
+    }
+
+    @Test
+    public void secondAcquireIsHit() {
+        DecodedImageCache cache = new DecodedImageCache(1000);
+        CountingLoader loader = new CountingLoader(100);
+        DecodedImageCache.Handle first = cache.acquire("a", loader);
+        DecodedImageCache.Handle second = cache.acquire("a", loader);
+        assertSame(first.getData(), second.getData());
+        assertEquals(1, loader.loads.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(100, cache.getBytes());
+    }
+
+    @Test
+    public void referencedEntriesAreNotEvicted() {
+        DecodedImageCache cache = new DecodedImageCache(150);
+        DecodedImageCache.Handle a = cache.acquire("a", new CountingLoader(100));
+        DecodedImageCache.Handle b = cache.acquire("b", new CountingLoader(100));
+        // 都在使用, 允许超出
+        assertEquals(2, cache.size());
+        assertEquals(0, cache.getEvictionCount());
+
+        a.release();
+        a.release();
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(100, cache.getBytes());
+        b.release();
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        DecodedImageCache cache = new DecodedImageCache(250);
+        cache.acquire("a", new CountingLoader(100)).release();
+        cache.acquire("b", new CountingLoader(100)).release();
+        // 访问 a, b 变成最久没有使用的
+        cache.acquire("a", new CountingLoader(100)).release();
+        cache.acquire("c", new CountingLoader(100)).release();
+
+        CountingLoader loader = new CountingLoader(100);
+        cache.acquire("a", loader).release();
+        assertEquals(0, loader.loads.get());
+        cache.acquire("b", loader).release();
+        assertEquals(1, loader.loads.get());
+    }
+
+    @Test
+    public void nullResultIsNotCached() {
+        DecodedImageCache cache = new DecodedImageCache(1000);
+        DecodedImageCache.Loader loader = new DecodedImageCache.Loader() {
+            @Override
+            public TextureData load() {
+                return null;
+            }
+        };
+        assertNull(cache.acquire("a", loader));
+        assertEquals(0, cache.size());
+        assertNull(cache.acquire("a", loader));
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void concurrentLoadsAreDeduplicated() throws InterruptedException {
+        final DecodedImageCache cache = new DecodedImageCache(1000);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch finish = new CountDownLatch(1);
+        final AtomicInteger loads = new AtomicInteger();
+        final DecodedImageCache.Loader loader = new DecodedImageCache.Loader() {
+            @Override
+            public TextureData load() {
+                loads.incrementAndGet();
+                started.countDown();
+                try {
+                    finish.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                return data(100);
+            }
+        };
+        final DecodedImageCache.Handle[] handles = new DecodedImageCache.Handle[4];
+        Thread[] threads = new Thread[handles.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    handles[index] = cache.acquire("a", loader);
+                }
+            });
+        }
+        threads[0].start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i < threads.length; i++) {
+            threads[i].start();
+        }
+        // 等其他线程都进入等待
+        long deadline = System.currentTimeMillis() + 5000;
+        while (cache.getWaitCount() < threads.length - 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        finish.countDown();
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(threads.length - 1, cache.getWaitCount());
+        for (DecodedImageCache.Handle handle : handles) {
+            assertSame(handles[0].getData(), handle.getData());
+        }
+    }
+
+    @Test
+    public void failedLoadCanBeRetried() {
+        final DecodedImageCache cache = new DecodedImageCache(1000);
+        try {
+            cache.acquire("a", new DecodedImageCache.Loader() {
+                @Override
+                public TextureData load() {
+                    throw new IllegalStateException("decode failed");
+                }
+            });
+            fail();
+        } catch (IllegalStateException expected) {
+            // 异常交给调用方
+        }
+        // 之后可以重新加载
+        CountingLoader loader = new CountingLoader(10);
+        assertNotNull(cache.acquire("a", loader));
+        assertEquals(1, loader.loads.get());
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.glwallpaper.gl;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class Etc1EncoderTest {
+
+    // 按 ETC1 规范解码一个 block, 输出 16 个像素, 行优先
+    private static void decodeBlock(long bits, int[] out) {
+        int high = (int) (bits >>> 32);
+        int low = (int) bits;
+        boolean diff = ((high >> 1) & 1) != 0;
+        boolean flip = (high & 1) != 0;
+        int[] base1 = new int[3];
+        int[] base2 = new int[3];
+        for (int c = 0; c < 3; c++) {
+            int shift = 24 - c * 8;
+            if (diff) {
+                int b = (high >> (shift + 3)) & 31;
+                int d = (high >> shift) & 7;
+                d = d >= 4 ? d - 8 : d;
+                base1[c] = Etc1Encoder.expand5(b);
+                base2[c] = Etc1Encoder.expand5(b + d);
+            } else {
+                base1[c] = ((high >> (shift + 4)) & 15) * 17;
+                base2[c] = ((high >> shift) & 15) * 17;
+            }
+        }
+        int table1 = (high >> 5) & 7;
+        int table2 = (high >> 2) & 7;
+        for (int x = 0; x < 4; x++) {
+            for (int y = 0; y < 4; y++) {
+                int i = x * 4 + y;
+                int index = (((low >> (16 + i)) & 1) << 1) | ((low >> i) & 1);
+                boolean second = flip ? y >= 2 : x >= 2;
+                int[] base = second ? base2 : base1;
+                int[] table = Etc1Encoder.MODIFIERS[second ? table2 : table1];
+                int m = Etc1Encoder.modifier(index, table[0], table[1]);
+                out[y * 4 + x] = 0xff000000
+                        | (Etc1Encoder.clamp(base[0] + m) << 16)
+                        | (Etc1Encoder.clamp(base[1] + m) << 8)
+                        | Etc1Encoder.clamp(base[2] + m);
+            }
+        }
+    }
+
+    private static int[] decode(ByteBuffer data, int width, int height) {
+        int pw = Etc1Encoder.paddedSize(width);
+        int[] out = new int[width * height];
+        int[] block = new int[16];
+        data.position(0);
+        for (int by = 0; by < height; by += 4) {
+            for (int bx = 0; bx < pw; bx += 4) {
+                decodeBlock(data.getLong(), block);
+                for (int y = 0; y < 4; y++) {
+                    for (int x = 0; x < 4; x++) {
+                        if (bx + x < width && by + y < height) {
+                            out[(by + y) * width + bx + x] = block[y * 4 + x];
+                        }
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    private static double psnr(int[] a, int[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            for (int shift = 0; shift <= 16; shift += 8) {
+                int d = ((a[i] >> shift) & 0xff) - ((b[i] >> shift) & 0xff);
+                sum += d * d;
+            }
+        }
+        double mse = sum / (a.length * 3.0);
+        return mse == 0 ? Double.POSITIVE_INFINITY : 10 * Math.log10(255 * 255 / mse);
+    }
+
+    private static int[] gradient(int width, int height) {
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = x * 255 / (width - 1);
+                int g = y * 255 / (height - 1);
+                int b = (x + y) * 255 / (width + height - 2);
+                pixels[y * width + x] = 0xff000000 | (r << 16) | (g << 8) | b;
+            }
+        }
+        return pixels;
+    }
+
+    private static ByteBuffer encode(int[] pixels, int width, int height) {
+        ByteBuffer out = ByteBuffer.allocate(Etc1Encoder.encodedSize(width, height));
+        new Etc1Encoder().encode(pixels, width, height, out);
+        assertEquals(out.capacity(), out.position());
+        return out;
+    }
+
+    @Test
+    public void encodedSizeIsHalfBytePerPixel() {
+        assertEquals(1440 * 3200 / 2, Etc1Encoder.encodedSize(1440, 3200));
+        assertEquals(8, Etc1Encoder.encodedSize(1, 1));
+        assertEquals(4 * 8, Etc1Encoder.encodedSize(5, 7));
+    }
+
+    @Test
+    public void solidColorIsNearlyExact() {
+        int[] pixels = new int[16 * 16];
+        java.util.Arrays.fill(pixels, 0xff3080c0);
+        int[] decoded = decode(encode(pixels, 16, 16), 16, 16);
+        assertTrue("psnr " + psnr(pixels, decoded), psnr(pixels, decoded) > 36);
+    }
+
+    @Test
+    public void gradientQuality() {
+        int width = 67;
+        int height = 45;
+        int[] pixels = gradient(width, height);
+        int[] decoded = decode(encode(pixels, width, height), width, height);
+        assertTrue("psnr " + psnr(pixels, decoded), psnr(pixels, decoded) > 35);
+    }
+
+    @Test
+    public void noisyImageQuality() {
+        int width = 64;
+        int height = 64;
+        int[] pixels = gradient(width, height);
+        Random random = new Random(7);
+        for (int i = 0; i < pixels.length; i++) {
+            int noise = random.nextInt(17) - 8;
+            int r = Etc1Encoder.clamp(((pixels[i] >> 16) & 0xff) + noise);
+            int g = Etc1Encoder.clamp(((pixels[i] >> 8) & 0xff) + noise);
+            int b = Etc1Encoder.clamp((pixels[i] & 0xff) + noise);
+            pixels[i] = 0xff000000 | (r << 16) | (g << 8) | b;
+        }
+        int[] decoded = decode(encode(pixels, width, height), width, height);
+        assertTrue("psnr " + psnr(pixels, decoded), psnr(pixels, decoded) > 30);
+    }
+
+    @Test
+    public void sharpEdgeUsesBestFlip() {
+        // 上白下黑, 横向划分子块可以无损
+        int[] pixels = new int[16];
+        for (int i = 0; i < 16; i++) {
+            pixels[i] = i < 8 ? 0xffffffff : 0xff000000;
+        }
+        int[] decoded = decode(encode(pixels, 4, 4), 4, 4);
+        assertTrue("psnr " + psnr(pixels, decoded), psnr(pixels, decoded) > 30);
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.glwallpaper.gl;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EventQueueTest {
+
+    private static class Record implements Runnable {
+        final List<Integer> out;
+        final int value;
+
+        Record(List<Integer> out, int value) {
+            this.out = out;
+            this.value = value;
+        }
+
+        @Override
+        public void run() {
+            out.add(value);
+        }
+    }
+
+    @Test
+    public void runsInOrder() {
+        EventQueue queue = new EventQueue();
+        List<Integer> out = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            queue.offer(new Record(out, i));
+        }
+        assertEquals(5, queue.size());
+        assertEquals(5, queue.drain(Long.MAX_VALUE));
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), out);
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+        assertEquals(5, queue.getMaxDepth());
+    }
+
+    @Test
+    public void onlyFirstOfferNeedsWakeup() {
+        EventQueue queue = new EventQueue();
+        List<Integer> out = new ArrayList<>();
+        assertTrue(queue.offer(new Record(out, 0)));
+        assertFalse(queue.offer(new Record(out, 1)));
+        queue.drain(Long.MAX_VALUE);
+        // 消费线程取空后, 下一个事件需要再次唤醒
+        assertTrue(queue.offer(new Record(out, 2)));
+    }
+
+    @Test
+    public void drainStopsAtBudget() {
+        EventQueue queue = new EventQueue();
+        final List<Integer> out = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            final int value = i;
+            queue.offer(new Runnable() {
+                @Override
+                public void run() {
+                    out.add(value);
+                    long end = System.nanoTime() + 2_000_000L;
+                    //noinspection StatementWithEmptyBody
+                    while (System.nanoTime() < end) {
+                    }
+                }
+            });
+        }
+        // 预算为 0 时也执行一个
+        assertEquals(1, queue.drain(0));
+        int ran = queue.drain(5_000_000L);
+        assertTrue("ran " + ran, ran >= 1 && ran <= 3);
+        assertEquals(10 - 1 - ran, queue.size());
+        queue.drain(Long.MAX_VALUE);
+        assertEquals(10, out.size());
+        assertTrue(queue.getLatencyPercentile(100) >= 2_000_000L);
+    }
+
+    @Test
+    public void concurrentProducersKeepPerThreadOrder() throws InterruptedException {
+        final EventQueue queue = new EventQueue();
+        final int producers = 4;
+        final int perProducer = 20000;
+        final List<Integer> out = new ArrayList<>();
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            threads[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perProducer; i++) {
+                        queue.offer(new Record(out, producer * perProducer + i));
+                    }
+                }
+            });
+            threads[p].start();
+        }
+        // 生产的同时消费
+        long deadline = System.currentTimeMillis() + 10000;
+        while (out.size() < producers * perProducer && System.currentTimeMillis() < deadline) {
+            queue.drain(Long.MAX_VALUE);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(producers * perProducer, out.size());
+        int[] last = new int[producers];
+        Arrays.fill(last, -1);
+        for (int value : out) {
+            int producer = value / perProducer;
+            int index = value % perProducer;
+            assertEquals(last[producer] + 1, index);
+            last[producer] = index;
+        }
+        assertTrue(queue.isEmpty());
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.glwallpaper.gl;
+
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+public class FrameMetricsTest {
+
+    @Test
+    public void dumpContainsHistogramsAndCounters() {
+        FrameMetrics metrics = new FrameMetrics();
+        metrics.getDraw().record(3_000_000L);
+        metrics.getSwap().record(500_000L);
+        metrics.getWakeToDraw().record(1_000_000L);
+        metrics.onSurfaceCreated();
+        metrics.onSurfaceCreated();
+        metrics.onContextCreated();
+        metrics.onContextLost();
+        metrics.onSwapFailed();
+        metrics.onRequestCoalesced();
+
+        StringWriter writer = new StringWriter();
+        PrintWriter out = new PrintWriter(writer);
+        metrics.dump("  ", out);
+        out.flush();
+        String[] lines = writer.toString().split("\n");
+
+        assertEquals(4, lines.length);
+        assertTrue(lines[0], lines[0].startsWith("  draw: count=1 "));
+        assertTrue(lines[0], lines[0].contains("p50=3.00ms"));
+        assertTrue(lines[1], lines[1].startsWith("  swap: count=1 "));
+        assertTrue(lines[2], lines[2].startsWith("  wakeToDraw: count=1 "));
+        assertEquals("  surfaces=2 contexts=1 contextLost=1 swapFailed=1 coalesced=1", lines[3]);
+    }
+}
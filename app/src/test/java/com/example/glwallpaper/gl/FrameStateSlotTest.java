@@ -0,0 +1,86 @@
+package com.example.glwallpaper.gl;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class FrameStateSlotTest {
+
+    private static boolean publish(FrameStateSlot slot, float x, float y) {
+        float[] values = slot.edit();
+        values[0] = x;
+        values[1] = y;
+        return slot.publish();
+    }
+
+    @Test
+    public void latestValueWins() {
+        FrameStateSlot slot = new FrameStateSlot(2);
+        assertFalse(slot.update());
+        assertTrue(publish(slot, 1, 2));
+        // 还没有取出, 不需要再次唤醒
+        assertFalse(publish(slot, 3, 4));
+        assertFalse(publish(slot, 5, 6));
+
+        assertTrue(slot.update());
+        assertEquals(5, slot.get(0), 0);
+        assertEquals(6, slot.get(1), 0);
+        assertFalse(slot.update());
+        assertEquals(5, slot.get(0), 0);
+
+        assertTrue(publish(slot, 7, 8));
+        assertTrue(slot.update());
+        assertEquals(7, slot.get(0), 0);
+        assertEquals(4, slot.getPublishCount());
+        assertEquals(2, slot.getDirtyCount());
+    }
+
+    @Test
+    public void concurrentReadsAreNeverTorn() throws InterruptedException {
+        final FrameStateSlot slot = new FrameStateSlot(3);
+        final AtomicBoolean done = new AtomicBoolean();
+        final int count = 500000;
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 1; i <= count; i++) {
+                    float[] values = slot.edit();
+                    values[0] = i;
+                    values[1] = -i;
+                    values[2] = i * 2;
+                    slot.publish();
+                }
+                done.set(true);
+            }
+        });
+        producer.start();
+
+        long updates = 0;
+        float last = 0;
+        while (true) {
+            // 先读 done, 之后的 update 一定能看到最后一次发布
+            boolean finished = done.get();
+            if (slot.update()) {
+                updates++;
+                float x = slot.get(0);
+                // 同一次发布的三个值
+                assertEquals(-x, slot.get(1), 0);
+                assertEquals(x * 2, slot.get(2), 0);
+                // 不会读到更旧的值
+                assertTrue(x >= last);
+                last = x;
+            } else if (finished) {
+                break;
+            }
+        }
+        producer.join();
+        assertEquals(count, last, 0);
+
+        // 每次唤醒之后至多取出一次, 唤醒次数远少于发布次数
+        assertEquals(count, slot.getPublishCount());
+        assertTrue(slot.getDirtyCount() <= slot.getUpdateCount() + 1);
+        assertEquals(updates, slot.getUpdateCount());
+    }
+}
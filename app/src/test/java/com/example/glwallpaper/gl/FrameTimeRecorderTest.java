@@ -0,0 +1,34 @@
+package com.example.glwallpaper.gl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameTimeRecorderTest {
+
+    @Test
+    public void percentiles() {
+        FrameTimeRecorder recorder = new FrameTimeRecorder(100);
+        assertEquals(0, recorder.percentile(50));
+        for (int i = 1; i <= 100; i++) {
+            recorder.record(i);
+        }
+        assertEquals(50, recorder.percentile(50));
+        assertEquals(90, recorder.percentile(90));
+        assertEquals(100, recorder.max());
+
+        // 超出容量后只保留最近的记录
+        recorder.record(1000);
+        assertEquals(100, recorder.count());
+        assertEquals(1000, recorder.max());
+    }
+
+    @Test
+    public void resetClearsRecords() {
+        FrameTimeRecorder recorder = new FrameTimeRecorder(4);
+        recorder.record(10);
+        recorder.reset();
+        assertEquals(0, recorder.count());
+        assertEquals(0, recorder.max());
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.glwallpaper.gl;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GLResourceRegistryTest {
+
+    // 不调用 GL, 记录删除的对象
+    private static class FakeRegistry extends GLResourceRegistry {
+        final List<Integer> deleted = new ArrayList<>();
+        final List<Long> waited = new ArrayList<>();
+        final List<Long> deletedFences = new ArrayList<>();
+        long fenceCount;
+
+        @Override
+        void deleteObject(int type, int id) {
+            deleted.add(id);
+        }
+
+        @Override
+        long fence() {
+            return ++fenceCount;
+        }
+
+        @Override
+        void waitFence(long fence) {
+            waited.add(fence);
+        }
+
+        @Override
+        void deleteFence(long fence) {
+            deletedFences.add(fence);
+        }
+    }
+
+    // 在另一个 "GL 线程" 上执行
+    private static void onThread(Runnable runnable) throws InterruptedException {
+        Thread thread = new Thread(runnable);
+        thread.start();
+        thread.join();
+    }
+
+    @Test
+    public void publishedObjectIsShared() {
+        FakeRegistry registry = new FakeRegistry();
+        assertEquals(0, registry.acquire("a"));
+        assertEquals(7, registry.publish("a", GLResourceRegistry.TYPE_TEXTURE, 7));
+        assertEquals(1, registry.fenceCount);
+        assertEquals(7, registry.acquire("a"));
+        assertEquals(1, registry.getShareCount());
+        // 使用前等待发布时的 fence
+        assertEquals(Long.valueOf(1), registry.waited.get(0));
+
+        registry.release("a", 7);
+        assertTrue(registry.deleted.isEmpty());
+        registry.release("a", 7);
+        assertEquals(1, registry.deleted.size());
+        assertEquals(0, registry.size());
+        assertEquals(Long.valueOf(1), registry.deletedFences.get(0));
+    }
+
+    @Test
+    public void duplicatePublishKeepsFirst() {
+        FakeRegistry registry = new FakeRegistry();
+        registry.publish("a", GLResourceRegistry.TYPE_TEXTURE, 7);
+        assertEquals(7, registry.publish("a", GLResourceRegistry.TYPE_TEXTURE, 9));
+        assertEquals(1, registry.deleted.size());
+        assertEquals(9, (int) registry.deleted.get(0));
+        assertEquals(Long.valueOf(2), registry.deletedFences.get(0));
+        assertEquals(1, registry.getDuplicateCount());
+    }
+
+    @Test
+    public void exitingThreadDropsItsReferences() throws InterruptedException {
+        final FakeRegistry registry = new FakeRegistry();
+        registry.publish("shared", GLResourceRegistry.TYPE_TEXTURE, 1);
+        onThread(new Runnable() {
+            @Override
+            public void run() {
+                registry.acquire("shared");
+                registry.publish("own", GLResourceRegistry.TYPE_PROGRAM, 2);
+                // context 销毁, 此时不能调用 GL
+                registry.releaseThread(Thread.currentThread(), false);
+            }
+        });
+        assertTrue(registry.deleted.isEmpty());
+        assertEquals(1, registry.size());
+
+        // 由 group 中还存在的线程删除
+        assertEquals(1, registry.acquire("shared"));
+        assertEquals(1, registry.deleted.size());
+        assertEquals(2, (int) registry.deleted.get(0));
+    }
+
+    @Test
+    public void exitingThreadDeletesWhileCurrent() throws InterruptedException {
+        final FakeRegistry registry = new FakeRegistry();
+        registry.publish("shared", GLResourceRegistry.TYPE_TEXTURE, 1);
+        final List<Thread> deletedOn = new ArrayList<>();
+        onThread(new Runnable() {
+            @Override
+            public void run() {
+                registry.acquire("shared");
+                registry.publish("own", GLResourceRegistry.TYPE_PROGRAM, 2);
+                registry.releaseThread(Thread.currentThread(), true);
+                if (!registry.deleted.isEmpty()) {
+                    deletedOn.add(Thread.currentThread());
+                }
+            }
+        });
+        // 不需要等 group 中其他线程
+        assertEquals(1, registry.deleted.size());
+        assertEquals(2, (int) registry.deleted.get(0));
+        assertEquals(1, deletedOn.size());
+        assertEquals(1, registry.size());
+        assertFalse(registry.toString().contains("pendingDeletes=1"));
+    }
+
+    @Test
+    public void exitingThreadDeletesPendingOfOthers() throws InterruptedException {
+        final FakeRegistry registry = new FakeRegistry();
+        onThread(new Runnable() {
+            @Override
+            public void run() {
+                registry.publish("lost", GLResourceRegistry.TYPE_TEXTURE, 3);
+                // context 丢失, 不能调用 GL
+                registry.releaseThread(Thread.currentThread(), false);
+            }
+        });
+        assertTrue(registry.deleted.isEmpty());
+        onThread(new Runnable() {
+            @Override
+            public void run() {
+                registry.releaseThread(Thread.currentThread(), true);
+            }
+        });
+        assertEquals(1, registry.deleted.size());
+        assertEquals(3, (int) registry.deleted.get(0));
+    }
+
+    @Test
+    public void clearForgetsWithoutDeleting() {
+        FakeRegistry registry = new FakeRegistry();
+        registry.publish("a", GLResourceRegistry.TYPE_TEXTURE, 7);
+        registry.clear();
+        assertEquals(0, registry.acquire("a"));
+        // 之后的 release 不会删除新 group 中同 id 的对象
+        registry.release("a", 7);
+        assertTrue(registry.deleted.isEmpty());
+    }
+
+    @Test
+    public void releaseIgnoresStaleId() {
+        FakeRegistry registry = new FakeRegistry();
+        registry.publish("a", GLResourceRegistry.TYPE_TEXTURE, 7);
+        registry.release("a", 8);
+        assertEquals(1, registry.size());
+        assertTrue(registry.deleted.isEmpty());
+    }
+}
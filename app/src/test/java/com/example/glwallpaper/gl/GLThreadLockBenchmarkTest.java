@@ -0,0 +1,93 @@
+package com.example.glwallpaper.gl;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 多个 engine 同时存在时, 一个 engine 的请求唤醒了多少 GL 线程和主线程.
+ * 直接运行 GLThread: 没有 surface 的时候 GL 线程不会碰 EGL, 但 requestRender, queueEvent,
+ * onPause 和 onResume 都走真实的等待和唤醒, 次数来自 GLThreadLock 的计数
+ */
+public class GLThreadLockBenchmarkTest {
+
+    private static final int FRAMES = 200;
+    // 每隔多少帧暂停恢复一次, 让主线程也在 GLThreadLock 上等待
+    private static final int PAUSE_INTERVAL = 20;
+
+    private GLThread[] mThreads = new GLThread[0];
+
+    @After
+    public void tearDown() {
+        for (GLThread thread : mThreads) {
+            thread.requestExitAndWait();
+        }
+        mThreads = new GLThread[0];
+    }
+
+    private GLThread[] start(int count) throws InterruptedException {
+        mThreads = new GLThread[count];
+        for (int i = 0; i < count; i++) {
+            mThreads[i] = new GLThread(null, null, null, null, null);
+            mThreads[i].start();
+        }
+        // 等所有 GL 线程都进入 awaitWork
+        for (GLThread thread : mThreads) {
+            runOnGLThread(thread);
+        }
+        return mThreads;
+    }
+
+    private static void runOnGLThread(GLThread thread) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        thread.queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+        assertTrue("event not run", latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void requestsWakeOnlyTheirOwnThreads() throws InterruptedException {
+        for (int count : new int[]{1, 2, 4, 8}) {
+            GLThread[] threads = start(count);
+            long[] wakeups = new long[count];
+            long[] waiterWakeups = new long[count];
+            for (int i = 0; i < count; i++) {
+                wakeups[i] = threads[i].getWakeupCount();
+                waiterWakeups[i] = threads[i].getWaiterWakeupCount();
+            }
+
+            // 只有第一个 engine 可见
+            GLThread active = threads[0];
+            for (int frame = 0; frame < FRAMES; frame++) {
+                active.requestRender();
+                runOnGLThread(active);
+                if (frame % PAUSE_INTERVAL == 0) {
+                    active.onPause();
+                    active.onResume();
+                }
+            }
+
+            String message = "engines=" + count;
+            double perFrame = (double) (active.getWakeupCount() - wakeups[0]) / FRAMES;
+            // requestRender 和 queueEvent 各最多唤醒一次, 加上暂停恢复
+            assertTrue(message + " wakeups/frame=" + perFrame, perFrame <= 2.2);
+            // onPause 和 onResume 都要等 GL 线程处理
+            long pauses = (FRAMES + PAUSE_INTERVAL - 1) / PAUSE_INTERVAL;
+            assertTrue(message, active.getWaiterWakeupCount() - waiterWakeups[0] >= 2 * pauses);
+            for (int i = 1; i < count; i++) {
+                assertEquals(message + " idle GL thread " + i, wakeups[i], threads[i].getWakeupCount());
+                assertEquals(message + " idle waiter " + i, waiterWakeups[i], threads[i].getWaiterWakeupCount());
+            }
+
+            tearDown();
+        }
+    }
+}
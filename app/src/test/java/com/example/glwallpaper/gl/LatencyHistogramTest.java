@@ -0,0 +1,79 @@
+package com.example.glwallpaper.gl;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void emptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.percentile(50));
+        assertEquals(0, histogram.mean());
+    }
+
+    @Test
+    public void percentilesAreBucketUpperBounds() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 90 帧 1.5ms, 9 帧 7ms, 1 帧 40ms
+        for (int i = 0; i < 90; i++) {
+            histogram.record(1_500_000L);
+        }
+        for (int i = 0; i < 9; i++) {
+            histogram.record(7 * MS);
+        }
+        histogram.record(40 * MS);
+        assertEquals(100, histogram.count());
+        assertEquals(2 * MS, histogram.percentile(50));
+        assertEquals(2 * MS, histogram.percentile(90));
+        assertEquals(8 * MS, histogram.percentile(99));
+        // 不超过实际的最大值
+        assertEquals(40 * MS, histogram.percentile(100));
+        assertEquals(40 * MS, histogram.max());
+        assertEquals((90 * 1_500_000L + 9 * 7 * MS + 40 * MS) / 100, histogram.mean());
+    }
+
+    @Test
+    public void overflowBucketUsesMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(2_000 * MS);
+        histogram.record(-1);
+        assertEquals(1, histogram.count());
+        assertEquals(2_000 * MS, histogram.percentile(50));
+        histogram.reset();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.max());
+    }
+
+    @Test
+    public void recordDoesNotAllocate() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            return;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 200000; i++) {
+            histogram.record(i * 1000L);
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100000; i++) {
+            histogram.record(i * 1000L);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        assertTrue("allocated " + allocated, allocated < 1024);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.glwallpaper.gl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MipmapPolicyTest {
+
+    @Test
+    public void mipmapOnlyWhenHeavilyDownscaled() {
+        // 全屏绘制, 纹理与屏幕差不多大
+        assertFalse(MipmapPolicy.shouldMipmap(1440, 3200, 1440, 3200));
+        assertFalse(MipmapPolicy.shouldMipmap(2000, 4000, 1080, 2400));
+        // 预览界面缩小到 1/4
+        assertTrue(MipmapPolicy.shouldMipmap(1440, 3200, 360, 800));
+        // 只有一个方向缩小时不需要
+        assertFalse(MipmapPolicy.shouldMipmap(4000, 1000, 1000, 1000));
+        assertFalse(MipmapPolicy.shouldMipmap(1440, 3200, 0, 0));
+    }
+
+    @Test
+    public void powerOfTwo() {
+        assertTrue(MipmapPolicy.isPowerOfTwo(1));
+        assertTrue(MipmapPolicy.isPowerOfTwo(2048));
+        assertFalse(MipmapPolicy.isPowerOfTwo(0));
+        assertFalse(MipmapPolicy.isPowerOfTwo(1440));
+        assertEquals(1024, MipmapPolicy.floorPowerOfTwo(1440));
+        assertEquals(2048, MipmapPolicy.floorPowerOfTwo(3200));
+        assertEquals(4096, MipmapPolicy.floorPowerOfTwo(4096));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void floorOfZeroThrows() {
+        MipmapPolicy.floorPowerOfTwo(0);
+    }
+
+    @Test
+    public void chainAddsAboutOneThird() {
+        assertEquals(4 + 1, MipmapPolicy.chainByteCount(2, 2, 1));
+        // 4x1: 4x1 + 2x1 + 1x1
+        assertEquals(7 * 4, MipmapPolicy.chainByteCount(4, 1, 4));
+        long base = 1024L * 1024 * 4;
+        long chain = MipmapPolicy.chainByteCount(1024, 1024, 4);
+        assertTrue(chain <= base * 4 / 3);
+        assertTrue(chain > base * 4 / 3 - 8);
+    }
+}
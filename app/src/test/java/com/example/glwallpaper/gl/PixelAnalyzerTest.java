@@ -0,0 +1,56 @@
+package com.example.glwallpaper.gl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PixelAnalyzerTest {
+
+    private static TextureFormat analyze(int[]... rows) {
+        PixelAnalyzer analyzer = new PixelAnalyzer();
+        for (int[] row : rows) {
+            if (!analyzer.isUndecided()) {
+                break;
+            }
+            analyzer.accept(row, 0, row.length);
+        }
+        return analyzer.result();
+    }
+
+    @Test
+    public void opaqueLayerUsesRgb565() {
+        assertEquals(TextureFormat.RGB_565, analyze(
+                new int[]{0xff123456, 0xff000000},
+                new int[]{0xffffffff, 0xff00ff00}));
+    }
+
+    @Test
+    public void maskLayerUsesAlpha8() {
+        assertEquals(TextureFormat.ALPHA_8, analyze(
+                new int[]{0x00000000, 0x80000000},
+                new int[]{0xff000000, 0x10000000}));
+    }
+
+    @Test
+    public void translucentColorUsesRgba() {
+        assertEquals(TextureFormat.RGBA_8888, analyze(
+                new int[]{0xff123456, 0xff000000},
+                new int[]{0x80ff0000, 0xff00ff00}));
+    }
+
+    @Test
+    public void stopsOnceDecided() {
+        PixelAnalyzer analyzer = new PixelAnalyzer();
+        analyzer.accept(new int[]{0x80ff0000}, 0, 1);
+        assertFalse(analyzer.isUndecided());
+        analyzer.reset();
+        assertTrue(analyzer.isUndecided());
+        assertTrue(analyzer.isOpaque());
+    }
+
+    @Test
+    public void rgb565HalvesBytes() {
+        assertEquals(TextureFormat.RGBA_8888.byteCount(1440, 3200) / 2,
+                TextureFormat.RGB_565.byteCount(1440, 3200));
+    }
+}
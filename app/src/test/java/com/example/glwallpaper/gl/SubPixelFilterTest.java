@@ -0,0 +1,62 @@
+package com.example.glwallpaper.gl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SubPixelFilterTest {
+
+    @Test
+    public void pixelDeltaUsesHalfSurface() {
+        // 归一化坐标中 2 是整个宽度
+        assertEquals(540, SubPixelFilter.pixelDelta(1, 1080, 1), 1e-3);
+        assertEquals(270, SubPixelFilter.pixelDelta(-1, 1080, 2), 1e-3);
+        assertEquals(2160, SubPixelFilter.pixelDelta(1, 1080, 0.25f), 1e-3);
+    }
+
+    @Test
+    public void skipsSubPixelMoves() {
+        SubPixelFilter filter = new SubPixelFilter();
+        filter.setSurfaceSize(1000, 2000);
+        filter.setMoveFactors(new float[]{1}, 1);
+        assertTrue(filter.accept(0, 0));
+        // 0.0004 * 1000 / 2 = 0.2 像素
+        assertFalse(filter.accept(0.0004f, 0));
+        // 累积到 0.6 像素
+        assertTrue(filter.accept(0.0012f, 0));
+        // y 方向的高度是 2000, 0.0006 是 0.6 像素
+        assertTrue(filter.accept(0.0012f, 0.0006f));
+        assertEquals(3, filter.getAcceptCount());
+        assertEquals(1, filter.getSkipCount());
+    }
+
+    @Test
+    public void fastestLayerDecides() {
+        SubPixelFilter filter = new SubPixelFilter();
+        filter.setSurfaceSize(1000, 1000);
+        filter.setMoveFactors(new float[]{4, 1}, 2);
+        filter.accept(0, 0);
+        assertFalse(filter.accept(0.0008f, 0));
+
+        // 移动最多的图层 moveFactor 是 0.25, 0.0008 是 1.6 像素
+        filter.setMoveFactors(new float[]{4, 0.25f}, 2);
+        assertTrue(filter.accept(0.0008f, 0));
+
+        // 没有 moveFactor 的图层按 1 计算
+        filter.setMoveFactors(new float[]{4}, 2);
+        assertFalse(filter.accept(0.0016f, 0));
+        assertTrue(filter.accept(0.0020f, 0));
+    }
+
+    @Test
+    public void acceptsEverythingWithoutSurfaceOrThreshold() {
+        SubPixelFilter filter = new SubPixelFilter();
+        filter.accept(0, 0);
+        assertTrue(filter.accept(0.00001f, 0));
+
+        filter.setSurfaceSize(1000, 1000);
+        filter.setThreshold(0);
+        assertTrue(filter.accept(0.00002f, 0));
+        assertTrue(filter.accept(0.00002f, 0));
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.glwallpaper.gl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class TextureCacheTest {
+
+    private File mDir;
+    private TextureCache mCache;
+
+    @Before
+    public void setUp() throws IOException {
+        mDir = Files.createTempDirectory("texture-cache").toFile();
+        mCache = new TextureCache(new File(mDir, "textures"));
+    }
+
+    @After
+    public void tearDown() {
+        mCache.clear();
+        new File(mDir, "textures").delete();
+        mDir.delete();
+    }
+
+    private static TextureData data(TextureFormat format, int width, int height, int orientation) {
+        int size = (int) format.byteCount(width, height);
+        ByteBuffer pixels = ByteBuffer.allocateDirect(size);
+        for (int i = 0; i < size; i++) {
+            pixels.put((byte) (i * 31));
+        }
+        pixels.flip();
+        return new TextureData(format, width, height, orientation, pixels);
+    }
+
+    private static TextureData etc1(int width, int height, int orientation) {
+        return data(TextureFormat.ETC1_RGB8, width, height, orientation);
+    }
+
+    @Test
+    public void roundTrip() {
+        TextureData data = etc1(30, 17, TextureOrientation.ROTATE_90);
+        assertTrue(mCache.put("a", data));
+
+        TextureData read = mCache.get("a");
+        assertNotNull(read);
+        assertEquals(TextureFormat.ETC1_RGB8, read.format);
+        assertEquals(30, read.width);
+        assertEquals(17, read.height);
+        assertEquals(32, read.storedWidth());
+        assertEquals(20, read.storedHeight());
+        assertEquals(TextureOrientation.ROTATE_90, read.orientation);
+        assertEquals(data.pixels, read.pixels);
+        // put 不会移动调用方的 buffer
+        assertEquals(Etc1Encoder.encodedSize(30, 17), data.pixels.remaining());
+    }
+
+    @Test
+    public void rawPixelsRoundTrip() {
+        TextureData data = data(TextureFormat.RGBA_8888, 13, 7, TextureOrientation.NORMAL);
+        assertTrue(mCache.put("raw", data));
+
+        TextureData read = mCache.get("raw");
+        assertNotNull(read);
+        assertEquals(TextureFormat.RGBA_8888, read.format);
+        assertEquals(13, read.storedWidth());
+        assertEquals(7, read.storedHeight());
+        assertEquals(13 * 7 * 4, read.pixels.remaining());
+        assertEquals(data.pixels, read.pixels);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        TextureData data = data(TextureFormat.ALPHA_8, 100, 100, TextureOrientation.NORMAL);
+        long entry = TextureCache.HEADER_SIZE + 100 * 100;
+        TextureCache cache = new TextureCache(new File(mDir, "textures"), entry * 2);
+
+        assertTrue(cache.put("a", data));
+        assertTrue(cache.put("b", data));
+        cache.fileOf("a").setLastModified(1000_000L);
+        cache.fileOf("b").setLastModified(2000_000L);
+        // 访问 a 之后, b 变成最久未使用
+        assertNotNull(cache.get("a"));
+
+        assertTrue(cache.put("c", data));
+        assertEquals(entry * 2, cache.size());
+        assertTrue(cache.fileOf("a").exists());
+        assertFalse(cache.fileOf("b").exists());
+        assertTrue(cache.fileOf("c").exists());
+    }
+
+    @Test
+    public void newEntryIsKeptEvenIfOverLimit() {
+        TextureCache cache = new TextureCache(new File(mDir, "textures"), 1);
+        assertTrue(cache.put("a", etc1(8, 8, TextureOrientation.NORMAL)));
+        assertTrue(cache.put("b", etc1(8, 8, TextureOrientation.NORMAL)));
+        assertFalse(cache.fileOf("a").exists());
+        assertNotNull(cache.get("b"));
+    }
+
+    @Test
+    public void retainOnlyDropsOtherEntries() {
+        TextureData data = etc1(8, 8, TextureOrientation.NORMAL);
+        assertTrue(mCache.put("a", data));
+        assertTrue(mCache.put("b", data));
+        assertTrue(mCache.put("c", data));
+
+        mCache.retainOnly(Arrays.asList("b", "d"));
+        assertNull(mCache.get("a"));
+        assertNotNull(mCache.get("b"));
+        assertNull(mCache.get("c"));
+    }
+
+    @Test
+    public void missReturnsNull() {
+        assertNull(mCache.get("missing"));
+    }
+
+    @Test
+    public void truncatedFileIsDropped() throws IOException {
+        assertTrue(mCache.put("a", etc1(8, 8, TextureOrientation.NORMAL)));
+        File file = mCache.fileOf("a");
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 1);
+        }
+        assertNull(mCache.get("a"));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void otherVersionIsDropped() throws IOException {
+        assertTrue(mCache.put("a", etc1(8, 8, TextureOrientation.NORMAL)));
+        File file = mCache.fileOf("a");
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(4);
+            raf.writeInt(TextureCache.VERSION + 1);
+        }
+        assertNull(mCache.get("a"));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void unknownFormatIsDropped() throws IOException {
+        assertTrue(mCache.put("a", etc1(8, 8, TextureOrientation.NORMAL)));
+        File file = mCache.fileOf("a");
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(8);
+            raf.writeInt(0x1234);
+        }
+        assertNull(mCache.get("a"));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void formatIsStoredAsGlConstants() throws IOException {
+        assertTrue(mCache.put("a", etc1(8, 8, TextureOrientation.NORMAL)));
+        try (RandomAccessFile raf = new RandomAccessFile(mCache.fileOf("a"), "r")) {
+            raf.seek(8);
+            assertEquals(GLCapabilities.GL_ETC1_RGB8_OES, raf.readInt());
+            assertEquals(0, raf.readInt());
+        }
+        for (TextureFormat format : TextureFormat.values()) {
+            assertSame(format, TextureFormat.fromGl(format.glFormat, format.glType));
+        }
+    }
+
+    @Test
+    public void keyChangesWithSourceAndTarget() {
+        String key = TextureCache.key("/a.jpg", 1000, 2000, 1080, 1920, 0.1f);
+        assertEquals(key, TextureCache.key("/a.jpg", 1000, 2000, 1080, 1920, 0.1f));
+        assertEquals(40, key.length());
+        assertNotEquals(key, TextureCache.key("/b.jpg", 1000, 2000, 1080, 1920, 0.1f));
+        assertNotEquals(key, TextureCache.key("/a.jpg", 1001, 2000, 1080, 1920, 0.1f));
+        assertNotEquals(key, TextureCache.key("/a.jpg", 1000, 2001, 1080, 1920, 0.1f));
+        assertNotEquals(key, TextureCache.key("/a.jpg", 1000, 2000, 1920, 1080, 0.1f));
+        assertNotEquals(key, TextureCache.key("/a.jpg", 1000, 2000, 1080, 1920, 0.2f));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sizeMismatchIsRejected() {
+        new TextureData(TextureFormat.ETC1_RGB8, 8, 8, TextureOrientation.NORMAL,
+                ByteBuffer.allocate(8));
+    }
+}
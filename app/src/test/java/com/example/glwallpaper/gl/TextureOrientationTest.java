@@ -0,0 +1,73 @@
+package com.example.glwallpaper.gl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TextureOrientationTest {
+
+    // 左下, 右下, 左上, 右上
+    private static final float[] NORMAL = {0f, 1f, 1f, 1f, 0f, 0f, 1f, 0f};
+
+    @Test
+    public void normalMatchesDefaultCoords() {
+        assertArrayEquals(NORMAL, TextureOrientation.textureCoords(TextureOrientation.NORMAL), 0f);
+        assertArrayEquals(NORMAL, TextureOrientation.textureCoords(0), 0f);
+        assertArrayEquals(NORMAL, TextureOrientation.textureCoords(42), 0f);
+    }
+
+    @Test
+    public void rotate90() {
+        // 顺时针旋转 90 度: 显示的左上角是 bitmap 的左下角
+        float[] coords = TextureOrientation.textureCoords(TextureOrientation.ROTATE_90);
+        assertArrayEquals(new float[]{1f, 1f, 1f, 0f, 0f, 1f, 0f, 0f}, coords, 0f);
+    }
+
+    @Test
+    public void rotate180() {
+        float[] coords = TextureOrientation.textureCoords(TextureOrientation.ROTATE_180);
+        assertArrayEquals(new float[]{1f, 0f, 0f, 0f, 1f, 1f, 0f, 1f}, coords, 0f);
+    }
+
+    @Test
+    public void rotate270() {
+        // 显示的左上角是 bitmap 的右上角
+        float[] coords = TextureOrientation.textureCoords(TextureOrientation.ROTATE_270);
+        assertArrayEquals(new float[]{0f, 0f, 0f, 1f, 1f, 0f, 1f, 1f}, coords, 0f);
+    }
+
+    @Test
+    public void mirrors() {
+        assertArrayEquals(new float[]{1f, 1f, 0f, 1f, 1f, 0f, 0f, 0f},
+                TextureOrientation.textureCoords(TextureOrientation.FLIP_HORIZONTAL), 0f);
+        assertArrayEquals(new float[]{0f, 0f, 1f, 0f, 0f, 1f, 1f, 1f},
+                TextureOrientation.textureCoords(TextureOrientation.FLIP_VERTICAL), 0f);
+        assertArrayEquals(new float[]{1f, 0f, 1f, 1f, 0f, 0f, 0f, 1f},
+                TextureOrientation.textureCoords(TextureOrientation.TRANSPOSE), 0f);
+        assertArrayEquals(new float[]{0f, 1f, 0f, 0f, 1f, 1f, 1f, 0f},
+                TextureOrientation.textureCoords(TextureOrientation.TRANSVERSE), 0f);
+    }
+
+    @Test
+    public void transposedOrientations() {
+        for (int o = TextureOrientation.NORMAL; o <= TextureOrientation.FLIP_VERTICAL; o++) {
+            assertFalse(TextureOrientation.isTransposed(o));
+        }
+        for (int o = TextureOrientation.TRANSPOSE; o <= TextureOrientation.ROTATE_270; o++) {
+            assertTrue(TextureOrientation.isTransposed(o));
+        }
+    }
+
+    @Test
+    public void toDisplayInvertsToTexture() {
+        float[] tex = new float[2];
+        float[] display = new float[2];
+        for (int orientation = TextureOrientation.NORMAL;
+             orientation <= TextureOrientation.ROTATE_270; orientation++) {
+            TextureOrientation.toTexture(orientation, 0.25f, 0.75f, tex, 0);
+            TextureOrientation.toDisplay(orientation, tex[0], tex[1], display, 0);
+            assertArrayEquals("orientation " + orientation,
+                    new float[]{0.25f, 0.75f}, display, 0f);
+        }
+    }
+}
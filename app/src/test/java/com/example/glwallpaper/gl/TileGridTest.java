@@ -0,0 +1,132 @@
+package com.example.glwallpaper.gl;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class TileGridTest {
+
+    // 记录上传和释放, 纹理 id 从 1 开始递增
+    private static class FakeLoader implements TileGrid.Loader {
+        final Set<Integer> alive = new HashSet<>();
+        int nextId = 1;
+        int failures;
+
+        @Override
+        public int upload(TileGrid grid, int column, int row) {
+            if (failures > 0) {
+                failures--;
+                return 0;
+            }
+            int width = grid.textureRight(column) - grid.textureLeft(column);
+            int height = grid.textureBottom(row) - grid.textureTop(row);
+            assertTrue(width <= grid.getTileSize());
+            assertTrue(height <= grid.getTileSize());
+            alive.add(nextId);
+            return nextId++;
+        }
+
+        @Override
+        public void evict(int textureId) {
+            assertTrue(alive.remove(textureId));
+        }
+    }
+
+    @Test
+    public void contentCoversImageWithoutOverlap() {
+        TileGrid grid = new TileGrid(10000, 3000, 1024);
+        assertEquals(10, grid.getColumns());
+        assertEquals(3, grid.getRows());
+        assertEquals(0, grid.contentLeft(0));
+        for (int column = 1; column < grid.getColumns(); column++) {
+            assertEquals(grid.contentRight(column - 1), grid.contentLeft(column));
+        }
+        assertEquals(10000, grid.contentRight(grid.getColumns() - 1));
+        assertEquals(3000, grid.contentBottom(grid.getRows() - 1));
+    }
+
+    @Test
+    public void texturesHaveBorderInsideImage() {
+        TileGrid grid = new TileGrid(5000, 100, 1024);
+        assertEquals(0, grid.textureLeft(0));
+        assertEquals(grid.contentRight(0) + TileGrid.BORDER, grid.textureRight(0));
+        assertEquals(grid.contentLeft(1) - TileGrid.BORDER, grid.textureLeft(1));
+        assertEquals(5000, grid.textureRight(grid.getColumns() - 1));
+        assertEquals(0, grid.textureTop(0));
+        assertEquals(100, grid.textureBottom(0));
+    }
+
+    @Test
+    public void keepsVisibleTilesAndNeighbours() {
+        TileGrid grid = new TileGrid(10000, 1000, 1002); // stride 1000
+        FakeLoader loader = new FakeLoader();
+
+        // 可见区域落在第 4, 5 列
+        assertEquals(4, grid.update(4200, 0, 5800, 1000, loader));
+        assertEquals(4, grid.getResidentCount());
+        for (int column = 0; column < grid.getColumns(); column++) {
+            assertEquals("column " + column, column >= 3 && column <= 6, grid.isResident(column, 0));
+        }
+        assertEquals(4, loader.alive.size());
+
+        // 不动时不会重复上传
+        assertEquals(0, grid.update(4200, 0, 5800, 1000, loader));
+        assertEquals(4, grid.getUploadCount());
+    }
+
+    @Test
+    public void streamsTilesAsTranslationMoves() {
+        TileGrid grid = new TileGrid(10000, 1000, 1002);
+        FakeLoader loader = new FakeLoader();
+        grid.update(4200, 0, 5800, 1000, loader);
+
+        // 右移一列: 新增第 7 列, 释放第 3 列
+        assertEquals(1, grid.update(5200, 0, 6800, 1000, loader));
+        assertFalse(grid.isResident(3, 0));
+        assertTrue(grid.isResident(7, 0));
+        assertEquals(5, grid.getUploadCount());
+        assertEquals(1, grid.getEvictCount());
+        assertEquals(4, grid.getResidentCount());
+        assertEquals(4, loader.alive.size());
+    }
+
+    @Test
+    public void edgesAreClamped() {
+        TileGrid grid = new TileGrid(3000, 3000, 1002);
+        FakeLoader loader = new FakeLoader();
+        grid.update(0, 0, 500, 500, loader);
+        assertEquals(4, grid.getResidentCount());
+        grid.update(-100, -100, 3100, 3100, loader);
+        assertEquals(9, grid.getResidentCount());
+    }
+
+    @Test
+    public void failedUploadIsRetried() {
+        TileGrid grid = new TileGrid(2000, 1000, 1002);
+        FakeLoader loader = new FakeLoader();
+        loader.failures = 1;
+        assertEquals(1, grid.update(0, 0, 100, 100, loader));
+        assertEquals(1, grid.getResidentCount());
+        assertEquals(1, grid.update(0, 0, 100, 100, loader));
+        assertEquals(2, grid.getResidentCount());
+    }
+
+    @Test
+    public void invalidateForgetsWithoutEvicting() {
+        TileGrid grid = new TileGrid(2000, 1000, 1002);
+        FakeLoader loader = new FakeLoader();
+        grid.update(0, 0, 2000, 1000, loader);
+        grid.invalidate();
+        assertEquals(0, grid.getResidentCount());
+        assertEquals(0, grid.getEvictCount());
+        assertEquals(2, loader.alive.size());
+
+        grid.update(0, 0, 2000, 1000, loader);
+        grid.evictAll(loader);
+        assertEquals(0, grid.getResidentCount());
+        assertEquals(2, loader.alive.size());
+    }
+}
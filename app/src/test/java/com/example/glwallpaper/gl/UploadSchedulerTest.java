@@ -0,0 +1,114 @@
+package com.example.glwallpaper.gl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class UploadSchedulerTest {
+
+    // 时间由测试控制
+    private static class FakeClockScheduler extends UploadScheduler {
+        long time;
+
+        FakeClockScheduler(long byteBudget, long timeBudgetNanos) {
+            super(byteBudget, timeBudgetNanos);
+        }
+
+        @Override
+        long now() {
+            return time;
+        }
+    }
+
+    // 模拟一张纹理分条上传, 返回需要的帧数
+    private static int framesToUpload(UploadScheduler scheduler, int rowBytes, int rows) {
+        int uploaded = 0;
+        int frames = 0;
+        while (uploaded < rows) {
+            scheduler.beginFrame();
+            frames++;
+            int stripe;
+            while ((stripe = scheduler.stripeRows(rowBytes, rows - uploaded)) > 0) {
+                scheduler.onUploaded((long) stripe * rowBytes);
+                uploaded += stripe;
+            }
+        }
+        return frames;
+    }
+
+    @Test
+    public void stripesAreBoundedByBytes() {
+        UploadScheduler scheduler = new UploadScheduler(1000, Long.MAX_VALUE);
+        scheduler.beginFrame();
+        assertEquals(10, scheduler.stripeRows(100, 50));
+        scheduler.onUploaded(1000);
+        assertEquals(0, scheduler.stripeRows(100, 40));
+        assertTrue(scheduler.hasPending());
+
+        scheduler.beginFrame();
+        assertFalse(scheduler.hasPending());
+        assertEquals(10, scheduler.stripeRows(100, 40));
+    }
+
+    @Test
+    public void requestFrameKeepsDrawing() {
+        UploadScheduler scheduler = new UploadScheduler(1000, Long.MAX_VALUE);
+        scheduler.beginFrame();
+        // 绘制时发现纹理需要重新上传
+        scheduler.requestFrame();
+        scheduler.requestFrame();
+        assertTrue(scheduler.hasPending());
+        assertEquals(1, scheduler.getDeferCount());
+
+        // 下一帧第一个上传总是允许
+        scheduler.beginFrame();
+        assertFalse(scheduler.hasPending());
+        assertTrue(scheduler.tryUpload(4000));
+    }
+
+    @Test
+    public void spreadsLargeTextureOverFrames() {
+        // 1440x3200 RGBA, 每帧 2MB
+        int rowBytes = 1440 * 4;
+        UploadScheduler scheduler = new UploadScheduler(2 << 20, Long.MAX_VALUE);
+        assertEquals(9, framesToUpload(scheduler, rowBytes, 3200));
+        assertEquals((long) rowBytes * 3200, scheduler.getTotalBytes());
+        assertEquals(8, scheduler.getDeferCount());
+    }
+
+    @Test
+    public void unlimitedUploadsInOneFrame() {
+        assertEquals(1, framesToUpload(UploadScheduler.unlimited(), 1440 * 4, 3200));
+    }
+
+    @Test
+    public void atLeastOneRowPerFrame() {
+        UploadScheduler scheduler = new UploadScheduler(10, Long.MAX_VALUE);
+        scheduler.beginFrame();
+        assertEquals(1, scheduler.stripeRows(100, 5));
+    }
+
+    @Test
+    public void timeBudgetStopsFrame() {
+        FakeClockScheduler scheduler = new FakeClockScheduler(Long.MAX_VALUE, 1000);
+        scheduler.beginFrame();
+        assertEquals(5, scheduler.stripeRows(100, 5));
+        scheduler.onUploaded(500);
+        scheduler.time += 1000;
+        assertEquals(0, scheduler.stripeRows(100, 5));
+        assertFalse(scheduler.tryUpload(1));
+    }
+
+    @Test
+    public void firstWholeUploadAlwaysAllowed() {
+        UploadScheduler scheduler = new UploadScheduler(100, Long.MAX_VALUE);
+        scheduler.beginFrame();
+        assertTrue(scheduler.tryUpload(1000));
+        scheduler.onUploaded(1000);
+        assertFalse(scheduler.tryUpload(1));
+        assertEquals(1, scheduler.getDeferCount());
+        // 同一帧内多次推迟只计一次
+        assertFalse(scheduler.tryUpload(1));
+        assertEquals(1, scheduler.getDeferCount());
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.glwallpaper.wallpapers.image;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FilterChainTest {
+
+    private static final long PERIOD = 16_666_667L;
+
+    // 从 0 跳到 1 后, 第 steps 个数据的输出
+    private static float step(AngleFilter filter, int steps) {
+        float[] values = new float[3];
+        filter.filter(0, values);
+        for (int i = 1; i <= steps; i++) {
+            values[0] = 1;
+            filter.filter(i * PERIOD, values);
+        }
+        return values[0];
+    }
+
+    @Test
+    public void noneAndUnknownNamesPassThrough() {
+        assertEquals(1, step(FilterChain.create(FilterChain.NONE, 3), 1), 0);
+        assertEquals(1, step(FilterChain.create("kalman", 3), 1), 0);
+    }
+
+    @Test
+    public void emptySpecUsesDefault() {
+        assertEquals(FilterChain.DEFAULT, FilterChain.create(null, 3).toString());
+        assertEquals(step(FilterChain.create(FilterChain.DEFAULT, 3), 1),
+                step(FilterChain.create("", 3), 1), 0);
+    }
+
+    @Test
+    public void lowPassStartsFromFirstSample() {
+        float[] values = {0.5f, -0.5f, 0};
+        new LowPassFilter(3, 0.25f).filter(0, values);
+        assertArrayEquals(new float[]{0.5f, -0.5f, 0}, values, 0);
+        assertEquals(0.25f, step(new LowPassFilter(3, 0.25f), 1), 1e-6f);
+    }
+
+    @Test
+    public void filtersConvergeToStep() {
+        for (String spec : new String[]{FilterChain.LOW_PASS, FilterChain.ONE_EURO, FilterChain.SPRING,
+                FilterChain.ONE_EURO + "," + FilterChain.SPRING}) {
+            FilterChain chain = FilterChain.create(spec, 3);
+            float first = step(chain, 1);
+            chain.reset();
+            float settled = step(chain, 120);
+            assertTrue(spec + " " + first, first > 0 && first < 1);
+            assertEquals(spec, 1, settled, 0.01f);
+        }
+    }
+
+    @Test
+    public void springDoesNotOvershoot() {
+        SpringFilter spring = new SpringFilter(3);
+        float[] values = new float[3];
+        spring.filter(0, values);
+        for (int i = 1; i < 200; i++) {
+            values[0] = 1;
+            spring.filter(i * PERIOD, values);
+            assertTrue(values[0] <= 1);
+        }
+    }
+
+    @Test
+    public void filtersFollowTheShortWayAcrossPi() {
+        for (String spec : new String[]{FilterChain.LOW_PASS, FilterChain.ONE_EURO, FilterChain.SPRING,
+                FilterChain.ONE_EURO + "," + FilterChain.SPRING}) {
+            FilterChain chain = FilterChain.create(spec, 3);
+            float[] values = new float[3];
+            // 每帧转 0.01 弧度, 从 3.0 经过 π 转到 -2.98
+            for (int i = 0; i <= 30; i++) {
+                values[0] = RotationMath.wrapAngle(3.0f + i * 0.01f);
+                chain.filter(i * PERIOD, values);
+                // 不会沿长的方向经过 0
+                assertTrue(spec + " " + i + " " + values[0], Math.abs(values[0]) > 2.9f);
+                assertTrue(spec, values[0] >= -Math.PI && values[0] < Math.PI);
+            }
+        }
+    }
+
+    @Test
+    public void wrapAngleKeepsShortDifference() {
+        assertEquals(0.1f, RotationMath.wrapAngle(0.1f), 0);
+        assertEquals(-3.0f, RotationMath.wrapAngle((float) (2 * Math.PI - 3.0)), 1e-5f);
+        // 3.1 到 -3.1 只转了 2π - 6.2
+        assertEquals((float) (2 * Math.PI - 6.2), RotationMath.wrapAngle(-3.1f - 3.1f), 1e-5f);
+        assertEquals(-0.5f, RotationMath.wrapAngle((float) (4 * Math.PI) - 0.5f), 1e-5f);
+    }
+
+    @Test
+    public void resetForgetsState() {
+        FilterChain chain = FilterChain.create(FilterChain.ONE_EURO + "," + FilterChain.SPRING, 3);
+        step(chain, 10);
+        chain.reset();
+        float[] values = {2, 0, 0};
+        chain.filter(100 * PERIOD, values);
+        assertEquals(2, values[0], 0);
+    }
+}
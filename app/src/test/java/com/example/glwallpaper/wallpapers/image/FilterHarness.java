@@ -0,0 +1,314 @@
+package com.example.glwallpaper.wallpapers.image;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 离线回放传感器角度记录, 比较各个 AngleFilter 的延迟和抖动
+ * <p>
+ * 记录有两种格式: RotationTraceRecorder 写出的 "到达时间,时间戳,azimuth,pitch,roll", 选其中一个轴;
+ * 或者 "时间戳(ns),角度(弧度)[,真实角度]". 没有真实角度时, 用前后 50ms 的平均值作为参考.
+ * 抖动是静止段滤波结果与参考值之差的 RMS, 换算成屏幕像素, 没有真实角度时静止段的参考值是直线拟合. 延迟是运动段中滤波结果与参考值最吻合的时间差.
+ * 静止段的长度由 "# still=N" 指定, 没有时取参考值离开起始姿态之前的部分
+ * <p>
+ * 可以直接运行 main, 参数是记录文件或者目录, 输出每个文件每个轴的对比表
+ */
+final class FilterHarness {
+
+    // 默认 distance 20 时 baseMoveFactor 0.09, 1080 宽的屏幕一弧度约移动 48 像素
+    static final float DEFAULT_PX_PER_RADIAN = 0.09f * 1080 / 2;
+
+    private static final long REFERENCE_HALF_WINDOW_NANOS = 50_000_000L;
+    private static final int MAX_LAG_SAMPLES = 30;
+    // 参考值离开起始姿态这么远时认为开始运动
+    private static final float STILL_THRESHOLD = 0.01f;
+
+    static final String[] FILTERS = {FilterChain.NONE, FilterChain.LOW_PASS, FilterChain.ONE_EURO,
+            FilterChain.SPRING, FilterChain.ONE_EURO + "," + FilterChain.SPRING};
+    // RotationTraceRecorder 的记录中, 渲染使用的两个轴
+    static final int[] AXES = {1, 2};
+    private static final String[] AXIS_NAMES = {"azimuth", "pitch", "roll"};
+
+    static final class Trace {
+        final long[] timestamps;
+        final float[] measured;
+        final float[] truth;
+        // 之前是静止段, 之后是运动段
+        final int stillSamples;
+
+        /**
+         * @param stillSamples 小于 0 时按参考值检测
+         */
+        Trace(long[] timestamps, float[] measured, float[] truth, int stillSamples) {
+            this.timestamps = timestamps;
+            this.measured = measured;
+            this.truth = truth != null ? truth : reference(timestamps, measured);
+            this.stillSamples = stillSamples >= 0 ? stillSamples : detectStill(this.truth);
+            if (truth == null) {
+                fitStill(timestamps, measured, this.truth, this.stillSamples);
+            }
+        }
+
+        static Trace parse(Reader reader, int stillSamples) throws IOException {
+            return parse(reader, stillSamples, AXES[0]);
+        }
+
+        /**
+         * @param stillSamples 小于 0 时使用文件中的 "# still=N", 没有时按参考值检测
+         * @param axis         RotationTraceRecorder 格式中使用的轴, 0 - 2
+         */
+        static Trace parse(Reader reader, int stillSamples, int axis) throws IOException {
+            List<long[]> times = new ArrayList<>();
+            List<float[]> values = new ArrayList<>();
+            boolean hasTruth = true;
+            BufferedReader in = new BufferedReader(reader);
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.startsWith("# still=") && stillSamples < 0) {
+                    stillSamples = Integer.parseInt(line.substring("# still=".length()).trim());
+                }
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split(",");
+                if (parts.length == 5) {
+                    times.add(new long[]{Long.parseLong(parts[1].trim())});
+                    values.add(new float[]{Float.parseFloat(parts[2 + axis].trim()), Float.NaN});
+                    hasTruth = false;
+                    continue;
+                }
+                times.add(new long[]{Long.parseLong(parts[0].trim())});
+                float truth = parts.length > 2 ? Float.parseFloat(parts[2].trim()) : Float.NaN;
+                hasTruth &= parts.length > 2;
+                values.add(new float[]{Float.parseFloat(parts[1].trim()), truth});
+            }
+            long[] timestamps = new long[times.size()];
+            float[] measured = new float[times.size()];
+            float[] truth = new float[times.size()];
+            for (int i = 0; i < timestamps.length; i++) {
+                timestamps[i] = times.get(i)[0];
+                // 记录中的角度在 ±π 处折回, 展开成连续的, 参考值的平均才有意义
+                float value = values.get(i)[0];
+                measured[i] = i == 0 ? value : measured[i - 1] + RotationMath.wrapAngle(value - measured[i - 1]);
+                truth[i] = values.get(i)[1];
+            }
+            return new Trace(timestamps, measured, hasTruth ? truth : null, stillSamples);
+        }
+
+        static Trace load(File file, int axis) throws IOException {
+            try (Reader reader = new FileReader(file)) {
+                return parse(reader, -1, axis);
+            }
+        }
+
+        // 静止段的真实姿态不变或者缓慢漂移, 用直线拟合作为参考, 滑动平均会保留一部分噪声
+        private static void fitStill(long[] timestamps, float[] measured, float[] reference, int count) {
+            if (count < 2) {
+                return;
+            }
+            double meanT = 0;
+            double meanV = 0;
+            for (int i = 0; i < count; i++) {
+                meanT += (timestamps[i] - timestamps[0]) / 1e9;
+                meanV += measured[i];
+            }
+            meanT /= count;
+            meanV /= count;
+            double cov = 0;
+            double var = 0;
+            for (int i = 0; i < count; i++) {
+                double t = (timestamps[i] - timestamps[0]) / 1e9 - meanT;
+                cov += t * (measured[i] - meanV);
+                var += t * t;
+            }
+            double slope = var > 0 ? cov / var : 0;
+            for (int i = 0; i < count; i++) {
+                double t = (timestamps[i] - timestamps[0]) / 1e9 - meanT;
+                reference[i] = (float) (meanV + slope * t);
+            }
+        }
+
+        private static int detectStill(float[] reference) {
+            for (int i = 0; i < reference.length; i++) {
+                if (Math.abs(reference[i] - reference[0]) > STILL_THRESHOLD) {
+                    return i;
+                }
+            }
+            return reference.length;
+        }
+
+        // 不因果的滑动平均, 没有延迟
+        private static float[] reference(long[] timestamps, float[] measured) {
+            float[] reference = new float[measured.length];
+            for (int i = 0; i < measured.length; i++) {
+                double sum = 0;
+                int count = 0;
+                for (int j = i; j >= 0 && timestamps[i] - timestamps[j] <= REFERENCE_HALF_WINDOW_NANOS; j--) {
+                    sum += measured[j];
+                    count++;
+                }
+                for (int j = i + 1; j < measured.length
+                        && timestamps[j] - timestamps[i] <= REFERENCE_HALF_WINDOW_NANOS; j++) {
+                    sum += measured[j];
+                    count++;
+                }
+                reference[i] = (float) (sum / count);
+            }
+            return reference;
+        }
+    }
+
+    static final class Result {
+        final String name;
+        final float lagMs;
+        final float jitterPx;
+
+        Result(String name, float lagMs, float jitterPx) {
+            this.name = name;
+            this.lagMs = lagMs;
+            this.jitterPx = jitterPx;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%-16s lag=%6.1fms jitter=%.3fpx", name, lagMs, jitterPx);
+        }
+    }
+
+    private FilterHarness() {
+    }
+
+    // 与传感器线程一样输入 [-π, π) 的角度
+    static float[] replay(AngleFilter filter, Trace trace) {
+        filter.reset();
+        float[] values = new float[3];
+        float[] output = new float[trace.measured.length];
+        for (int i = 0; i < output.length; i++) {
+            values[0] = RotationMath.wrapAngle(trace.measured[i]);
+            values[1] = 0;
+            values[2] = 0;
+            filter.filter(trace.timestamps[i], values);
+            output[i] = values[0];
+        }
+        return output;
+    }
+
+    static Result run(String name, AngleFilter filter, Trace trace, float pxPerRadian) {
+        float[] output = replay(filter, trace);
+
+        // 静止段跳过开头, 等滤波器稳定
+        int warmup = Math.min(trace.stillSamples / 4, 30);
+        double sum = 0;
+        int count = 0;
+        for (int i = warmup; i < trace.stillSamples; i++) {
+            double error = RotationMath.wrapAngle(output[i] - trace.truth[i]);
+            sum += error * error;
+            count++;
+        }
+        float jitter = count > 0 ? (float) (Math.sqrt(sum / count) * pxPerRadian) : 0;
+
+        // 运动段, 滤波结果向后平移多少个数据时与参考值最吻合
+        int start = trace.stillSamples + MAX_LAG_SAMPLES;
+        double[] errors = new double[MAX_LAG_SAMPLES + 1];
+        int best = 0;
+        for (int shift = 0; shift <= MAX_LAG_SAMPLES; shift++) {
+            double error = 0;
+            for (int i = start; i < output.length; i++) {
+                double diff = RotationMath.wrapAngle(output[i] - trace.truth[i - shift]);
+                error += diff * diff;
+            }
+            errors[shift] = error;
+            if (error < errors[best]) {
+                best = shift;
+            }
+        }
+        // 在最小值附近抛物线插值, 得到不到一个数据间隔的延迟
+        double refined = best;
+        if (best > 0 && best < MAX_LAG_SAMPLES) {
+            double a = errors[best - 1];
+            double b = errors[best];
+            double c = errors[best + 1];
+            double denominator = a - 2 * b + c;
+            if (denominator > 0) {
+                refined = best + 0.5 * (a - c) / denominator;
+            }
+        }
+        int moving = output.length - trace.stillSamples;
+        double interval = moving > 1
+                ? (trace.timestamps[output.length - 1] - trace.timestamps[trace.stillSamples])
+                / (double) (moving - 1) : 0;
+        float lag = (float) (refined * interval / 1e6);
+        return new Result(name, lag, jitter);
+    }
+
+    /**
+     * 每个滤波器在这段记录上的结果, 顺序与 specs 相同
+     */
+    static Result[] compare(Trace trace, String... specs) {
+        Result[] results = new Result[specs.length];
+        for (int i = 0; i < specs.length; i++) {
+            results[i] = run(specs[i], FilterChain.create(specs[i], 3), trace, DEFAULT_PX_PER_RADIAN);
+        }
+        return results;
+    }
+
+    static String table(String title, Trace trace, Result[] results) {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.US, "%s: %d samples, %d still%n",
+                title, trace.timestamps.length, trace.stillSamples));
+        for (Result result : results) {
+            out.append("  ").append(result).append(String.format(Locale.US, "%n"));
+        }
+        return out.toString();
+    }
+
+    static String axisName(int axis) {
+        return AXIS_NAMES[axis];
+    }
+
+    /**
+     * 目录中的 .csv 文件按名字排序, 其他的原样返回
+     */
+    static List<File> traceFiles(String... paths) {
+        List<File> files = new ArrayList<>();
+        for (String path : paths) {
+            File file = new File(path);
+            File[] children = file.listFiles();
+            if (children == null) {
+                files.add(file);
+                continue;
+            }
+            Arrays.sort(children);
+            for (File child : children) {
+                if (child.getName().endsWith(".csv")) {
+                    files.add(child);
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * @param args 记录文件或者目录, 例如从设备的 cache/rotation-traces 拉下来的
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("usage: FilterHarness <trace.csv | directory>...");
+            System.exit(2);
+        }
+        for (File file : traceFiles(args)) {
+            for (int axis : AXES) {
+                Trace trace = Trace.load(file, axis);
+                System.out.print(table(file.getName() + " " + axisName(axis), trace, compare(trace, FILTERS)));
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.glwallpaper.wallpapers.image;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FilterHarnessTest {
+
+    private static final long PERIOD = 16_666_667L;
+
+    // 每次运行都写出对比表, gradle 中工作目录是 app
+    private static final File REPORT = new File("build/reports/filter-harness.txt");
+    // 额外回放的记录文件或目录, 用 File.pathSeparator 分隔, 只输出不检查
+    private static final String TRACES_ENV = "FILTER_HARNESS_TRACES";
+
+    // 模拟手持记录: 先静止 4 秒只有传感器噪声, 再做 0.5 - 1.5Hz 的晃动
+    private static FilterHarness.Trace handheld(long seed) {
+        Random random = new Random(seed);
+        int still = 240;
+        int count = still + 300;
+        long[] timestamps = new long[count];
+        float[] truth = new float[count];
+        float[] measured = new float[count];
+        for (int i = 0; i < count; i++) {
+            timestamps[i] = i * PERIOD + (long) (random.nextGaussian() * 300_000);
+            double t = Math.max(0, i - still) * PERIOD / 1e9;
+            truth[i] = (float) (0.15 * Math.sin(2 * Math.PI * 0.5 * t)
+                    + 0.05 * Math.sin(2 * Math.PI * 1.5 * t));
+            measured[i] = truth[i] + (float) (random.nextGaussian() * 0.004);
+        }
+        return new FilterHarness.Trace(timestamps, measured, truth, still);
+    }
+
+    private static FilterHarness.Result run(String spec, FilterHarness.Trace trace) {
+        return FilterHarness.run(spec, FilterChain.create(spec, 3), trace,
+                FilterHarness.DEFAULT_PX_PER_RADIAN);
+    }
+
+    @Test
+    public void reportsLagAndJitterPerFilter() {
+        FilterHarness.Trace trace = handheld(1);
+        FilterHarness.Result none = run(FilterChain.NONE, trace);
+        FilterHarness.Result lowPass = run(FilterChain.LOW_PASS, trace);
+        FilterHarness.Result oneEuro = run(FilterChain.ONE_EURO, trace);
+        FilterHarness.Result spring = run(FilterChain.SPRING, trace);
+        FilterHarness.Result chain = run(FilterChain.ONE_EURO + "," + FilterChain.SPRING, trace);
+        assertEquals(0, none.lagMs, 2);
+        // 所有滤波器都减少抖动, 代价是延迟
+        for (FilterHarness.Result result : new FilterHarness.Result[]{lowPass, oneEuro, spring, chain}) {
+            assertTrue(result.toString(), result.jitterPx < none.jitterPx);
+            assertTrue(result.toString(), result.lagMs > 0);
+            // 不超过大约 7 帧, 再多视差会明显跟不上手
+            assertTrue(result.toString(), result.lagMs < 120);
+        }
+        // One Euro 静止时比固定系数的低通滤得更干净, 运动时延迟也不更大
+        assertTrue(oneEuro + " " + lowPass, oneEuro.jitterPx < lowPass.jitterPx);
+        assertTrue(oneEuro + " " + lowPass, oneEuro.lagMs <= lowPass.lagMs + 5);
+    }
+
+    private static File bundledTraces() throws URISyntaxException {
+        URL url = FilterHarnessTest.class.getClassLoader().getResource("traces");
+        assertNotNull("test resource traces", url);
+        return new File(url.toURI());
+    }
+
+    @Test
+    public void recordedTracesReduceJitter() throws IOException, URISyntaxException {
+        StringBuilder report = new StringBuilder();
+        int checked = 0;
+        for (File file : FilterHarness.traceFiles(bundledTraces().getPath())) {
+            for (int axis : FilterHarness.AXES) {
+                FilterHarness.Trace trace = FilterHarness.Trace.load(file, axis);
+                FilterHarness.Result[] results = FilterHarness.compare(trace, FilterHarness.FILTERS);
+                String table = FilterHarness.table(file.getName() + " " + FilterHarness.axisName(axis),
+                        trace, results);
+                report.append(table);
+
+                assertTrue(table, trace.stillSamples > 60);
+                assertEquals(table, 0, results[0].lagMs, 2);
+                for (int i = 1; i < results.length; i++) {
+                    assertTrue(table, results[i].jitterPx < results[0].jitterPx);
+                    assertTrue(table, results[i].lagMs < 120);
+                }
+                checked++;
+            }
+        }
+        assertTrue("no bundled traces", checked > 0);
+
+        String extra = System.getenv(TRACES_ENV);
+        if (extra != null && !extra.isEmpty()) {
+            for (File file : FilterHarness.traceFiles(extra.split(File.pathSeparator))) {
+                for (int axis : FilterHarness.AXES) {
+                    FilterHarness.Trace trace = FilterHarness.Trace.load(file, axis);
+                    report.append(FilterHarness.table(file.getPath() + " " + FilterHarness.axisName(axis),
+                            trace, FilterHarness.compare(trace, FilterHarness.FILTERS)));
+                }
+            }
+        }
+        File dir = REPORT.getParentFile();
+        assertTrue(dir.isDirectory() || dir.mkdirs());
+        try (Writer out = new FileWriter(REPORT)) {
+            out.write(report.toString());
+        }
+    }
+
+    @Test
+    public void wrappedRecordingIsUnwrapped() throws IOException {
+        StringBuilder csv = new StringBuilder(RotationTraceRecorder.HEADER).append('\n');
+        for (int i = 0; i < 20; i++) {
+            float roll = RotationMath.wrapAngle(3.0f + i * 0.02f);
+            csv.append(1000 + i * PERIOD).append(',').append(i * PERIOD).append(",0,0,").append(roll).append('\n');
+        }
+        FilterHarness.Trace trace = FilterHarness.Trace.parse(new StringReader(csv.toString()), 0, 2);
+        assertEquals(20, trace.timestamps.length);
+        assertEquals(3.38f, trace.measured[19], 1e-4f);
+        // 参考值没有被 ±π 两侧的平均拉到 0 附近
+        assertEquals(3.19f, trace.truth[9], 0.02f);
+    }
+
+    @Test
+    public void lagOfKnownDelayIsMeasured() {
+        FilterHarness.Trace trace = handheld(2);
+        // 固定延迟 3 个数据的滤波器
+        AngleFilter delay = new AngleFilter() {
+            private final float[] mHistory = new float[4];
+            private int mCount;
+
+            @Override
+            public void filter(long timestampNanos, float[] values) {
+                System.arraycopy(mHistory, 0, mHistory, 1, 3);
+                mHistory[0] = values[0];
+                mCount++;
+                values[0] = mHistory[Math.min(mCount - 1, 3)];
+            }
+
+            @Override
+            public void reset() {
+                mCount = 0;
+            }
+        };
+        FilterHarness.Result result = FilterHarness.run("delay", delay, trace, 1);
+        assertEquals(50, result.lagMs, 3);
+    }
+
+    @Test
+    public void parsesRecordingWithoutTruth() throws IOException {
+        StringBuilder csv = new StringBuilder("# timestamp,angle\n");
+        for (int i = 0; i < 20; i++) {
+            csv.append(i * PERIOD).append(',').append(i % 2 == 0 ? 0.01 : -0.01).append('\n');
+        }
+        FilterHarness.Trace trace = FilterHarness.Trace.parse(new StringReader(csv.toString()), 20);
+        assertEquals(20, trace.timestamps.length);
+        // 参考值是前后 50ms 的平均, 去掉了交替的噪声
+        assertTrue(Math.abs(trace.truth[10]) < 0.005f);
+    }
+}
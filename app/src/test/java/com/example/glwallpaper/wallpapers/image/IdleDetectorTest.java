@@ -0,0 +1,63 @@
+package com.example.glwallpaper.wallpapers.image;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class IdleDetectorTest {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void idleAfterQuietPeriod() {
+        IdleDetector detector = new IdleDetector(3);
+        detector.setTimeout(1000);
+        float[] angle = {0, 0, 0};
+        for (long t = 0; t < 1000; t += 16) {
+            // 阈值以内的抖动
+            angle[1] = (t / 16 % 2 == 0) ? 0.002f : -0.002f;
+            assertFalse(detector.onAngle(t * MS, angle));
+        }
+        assertTrue(detector.onAngle(1000 * MS, angle));
+    }
+
+    @Test
+    public void motionRestartsTimer() {
+        IdleDetector detector = new IdleDetector(3);
+        detector.setTimeout(1000);
+        float[] angle = {0, 0, 0};
+        detector.onAngle(0, angle);
+        angle[2] = 0.01f;
+        assertFalse(detector.onAngle(900 * MS, angle));
+        assertFalse(detector.onAngle(1500 * MS, angle));
+        assertTrue(detector.onAngle(1900 * MS, angle));
+        // 恢复后重新计时
+        detector.reset();
+        assertFalse(detector.onAngle(2000 * MS, angle));
+        assertFalse(detector.onAngle(2500 * MS, angle));
+    }
+
+    @Test
+    public void zeroTimeoutDisables() {
+        IdleDetector detector = new IdleDetector(3);
+        detector.setTimeout(0);
+        assertFalse(detector.isEnabled());
+        float[] angle = {0, 0, 0};
+        detector.onAngle(0, angle);
+        assertFalse(detector.onAngle(3600_000 * MS, angle));
+    }
+
+    @Test
+    public void accelerationWakesOnTilt() {
+        IdleDetector detector = new IdleDetector(3);
+        // 平放在桌上
+        assertFalse(detector.onAcceleration(new float[]{0.05f, -0.03f, 9.81f}));
+        assertFalse(detector.onAcceleration(new float[]{0.1f, 0.02f, 9.78f}));
+        // 倾斜约 5 度
+        assertTrue(detector.onAcceleration(new float[]{0.86f, 0, 9.77f}));
+        // 重新等待时以新的第一个数据为基准
+        detector.reset();
+        assertFalse(detector.onAcceleration(new float[]{0.86f, 0, 9.77f}));
+        assertFalse(detector.onAcceleration(new float[]{0.9f, 0.1f, 9.75f}));
+    }
+}
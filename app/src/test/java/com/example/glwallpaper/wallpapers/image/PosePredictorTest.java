@@ -0,0 +1,221 @@
+package com.example.glwallpaper.wallpapers.image;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PosePredictorTest {
+
+    private static final long MS = 1_000_000L;
+    private static final long PERIOD = 16_666_667L;
+    // 与 ImageWallpaperService 相同: 攒 3 帧上报, 外推覆盖批量的延迟再加 2 帧
+    private static final long HORIZON = 3 * PERIOD + 2 * PERIOD;
+
+    // RotationTraceRecorder 格式的记录: 到达时间, 时间戳, pitch 和 roll 换算成的位移
+    private static final class Stream {
+        final List<long[]> times = new ArrayList<>();
+        final List<float[]> poses = new ArrayList<>();
+
+        static Stream load(String resource) throws IOException {
+            Stream stream = new Stream();
+            InputStream in = PosePredictorTest.class.getClassLoader().getResourceAsStream(resource);
+            assertNotNull(resource, in);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty() || line.startsWith("#")) {
+                        continue;
+                    }
+                    String[] parts = line.split(",");
+                    stream.times.add(new long[]{Long.parseLong(parts[0]), Long.parseLong(parts[1])});
+                    // 与 ImageWallpaperRenderer.angleChanged 一样按 sin 换算
+                    stream.poses.add(new float[]{(float) Math.sin(Float.parseFloat(parts[3])),
+                            (float) Math.sin(Float.parseFloat(parts[4]))});
+                }
+            }
+            return stream;
+        }
+
+        long delivery(int i) {
+            return times.get(i)[0];
+        }
+
+        long timestamp(int i) {
+            return times.get(i)[1];
+        }
+
+        int size() {
+            return times.size();
+        }
+
+        // 两个数据之间线性插值, 超出范围时返回 false
+        boolean poseAt(long time, float[] out) {
+            for (int i = 1; i < size(); i++) {
+                if (timestamp(i) >= time) {
+                    long a = timestamp(i - 1);
+                    if (time < a) {
+                        return false;
+                    }
+                    float f = (float) (time - a) / (timestamp(i) - a);
+                    for (int d = 0; d < out.length; d++) {
+                        float pa = poses.get(i - 1)[d];
+                        out[d] = pa + (poses.get(i)[d] - pa) * f;
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static PosePredictor predictor(long horizon) {
+        return new PosePredictor(2, 32, 100 * MS, horizon);
+    }
+
+    // 渲染使用的方式: 传感器线程取最新的姿态和速度, GL 线程外推到显示的时刻
+    private static void extrapolate(PosePredictor predictor, long displayNanos, float[] out) {
+        float[] pose = new float[2];
+        float[] velocity = new float[2];
+        predictor.getLast(pose);
+        predictor.getVelocity(velocity);
+        PosePredictor.extrapolate(pose, velocity, 2, displayNanos - predictor.getLastTimestamp(),
+                predictor.getHorizon(), out);
+    }
+
+    @Test
+    public void extrapolatesConstantVelocity() {
+        Random random = new Random(1);
+        PosePredictor predictor = predictor(100 * MS);
+        long first = 1000 * MS;
+        // 每秒 0.3 和 -0.1
+        for (int i = 0; i < 30; i++) {
+            long t = first + i * PERIOD + (long) (random.nextGaussian() * 0.5 * MS);
+            double seconds = (t - first) / 1e9;
+            float noise = (float) (random.nextGaussian() * 0.0005);
+            predictor.add(t, new float[]{(float) (0.3 * seconds) + noise, (float) (-0.1 * seconds)});
+        }
+        float[] velocity = new float[2];
+        predictor.getVelocity(velocity);
+        assertEquals(0.3f, velocity[0], 0.02f);
+        assertEquals(-0.1f, velocity[1], 0.01f);
+
+        // 最新数据之后 50ms 显示
+        long last = predictor.getLastTimestamp();
+        float[] out = new float[2];
+        extrapolate(predictor, last + 50 * MS, out);
+        double expected = 0.3 * (last + 50 * MS - first) / 1e9;
+        assertEquals(expected, out[0], 0.003);
+    }
+
+    // 按 vsync 回放记录, 返回 {外推的 RMS 误差, 直接使用最新数据的 RMS 误差, 帧数}
+    private static double[] replay(Stream stream, long fromNanos, long toNanos) {
+        PosePredictor predictor = predictor(HORIZON);
+        float[] predicted = new float[2];
+        float[] held = new float[2];
+        float[] actual = new float[2];
+        double predictedError = 0;
+        double heldError = 0;
+        int frames = 0;
+        int next = 0;
+        // 每个 vsync 处理已经到达的数据, 画出的内容在下一帧显示
+        for (long vsync = stream.delivery(0); next < stream.size(); vsync += PERIOD) {
+            while (next < stream.size() && stream.delivery(next) <= vsync) {
+                predictor.add(stream.timestamp(next), stream.poses.get(next));
+                next++;
+            }
+            long display = vsync + PERIOD;
+            if (predictor.size() == 0 || predictor.getLastTimestamp() < fromNanos || display > toNanos
+                    || !stream.poseAt(display, actual)) {
+                continue;
+            }
+            extrapolate(predictor, display, predicted);
+            predictor.getLast(held);
+            for (int d = 0; d < 2; d++) {
+                predictedError += (predicted[d] - actual[d]) * (predicted[d] - actual[d]);
+                heldError += (held[d] - actual[d]) * (held[d] - actual[d]);
+            }
+            frames++;
+        }
+        return new double[]{Math.sqrt(predictedError / frames), Math.sqrt(heldError / frames), frames};
+    }
+
+    @Test
+    public void recordedBatchedStreamIsExtrapolated() throws IOException {
+        Stream stream = Stream.load("traces/handheld-batched.csv");
+        long start = stream.timestamp(0);
+
+        // 前 4 秒静止: 速度来自噪声, 外推的抖动不能比直接使用最新数据大太多
+        double[] still = replay(stream, start, start + 3800 * MS);
+        assertTrue("frames " + still[2], still[2] > 150);
+        assertTrue("still predicted " + still[0] + " held " + still[1], still[0] < still[1] * 1.5);
+
+        // 之后晃动: 批量上报时最新的数据到显示平均晚 60ms 以上, 外推至少去掉 30% 的误差.
+        // 手的晃动有 1~2Hz 的成分, 100ms 的速度窗口本身有滞后, 所以去不掉全部
+        double[] moving = replay(stream, start + 4500 * MS, Long.MAX_VALUE);
+        assertTrue("frames " + moving[2], moving[2] > 300);
+        assertTrue("moving predicted " + moving[0] + " held " + moving[1], moving[0] < moving[1] * 0.7);
+    }
+
+    @Test
+    public void extrapolationStopsAtHorizon() {
+        PosePredictor predictor = predictor(40 * MS);
+        predictor.add(0, new float[]{0, 0});
+        predictor.add(10 * MS, new float[]{1, 0});
+        float[] out = new float[2];
+        extrapolate(predictor, 30 * MS, out);
+        assertEquals(3, out[0], 1e-4f);
+        // 最多外推 40ms
+        extrapolate(predictor, 1000 * MS, out);
+        assertEquals(5, out[0], 1e-4f);
+        // 显示的时刻早于数据时不往回推
+        extrapolate(predictor, 0, out);
+        assertEquals(1, out[0], 0);
+
+        PosePredictor still = predictor(0);
+        still.add(0, new float[]{0, 0});
+        still.add(10 * MS, new float[]{1, 0});
+        extrapolate(still, 30 * MS, out);
+        assertEquals(1, out[0], 0);
+    }
+
+    @Test
+    public void ignoresOutOfOrderAndRestartsAfterGap() {
+        PosePredictor predictor = predictor(40 * MS);
+        assertEquals(0, predictor.size());
+        assertTrue(predictor.add(10 * MS, new float[]{0, 0}));
+        assertTrue(predictor.add(20 * MS, new float[]{1, 0}));
+        assertFalse(predictor.add(20 * MS, new float[]{5, 0}));
+        assertFalse(predictor.add(15 * MS, new float[]{5, 0}));
+        assertEquals(2, predictor.size());
+
+        // 停止监听一段时间后重新开始, 之前的数据不参与速度估算
+        assertTrue(predictor.add(1000 * MS, new float[]{0, 0}));
+        assertEquals(1, predictor.size());
+        float[] velocity = new float[2];
+        predictor.getVelocity(velocity);
+        assertEquals(0, velocity[0], 0);
+    }
+
+    @Test
+    public void historyIsBounded() {
+        PosePredictor predictor = new PosePredictor(1, 4, 1000 * MS, 0);
+        for (int i = 1; i <= 10; i++) {
+            predictor.add(i * MS, new float[]{i});
+        }
+        assertEquals(4, predictor.size());
+        float[] last = new float[1];
+        predictor.getLast(last);
+        assertEquals(10, last[0], 0);
+        float[] velocity = new float[1];
+        predictor.getVelocity(velocity);
+        assertEquals(1000, velocity[0], 1e-2f);
+    }
+}
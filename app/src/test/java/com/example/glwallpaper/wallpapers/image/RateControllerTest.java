@@ -0,0 +1,87 @@
+package com.example.glwallpaper.wallpapers.image;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RateControllerTest {
+
+    private static final long MS = 1_000_000L;
+
+    private final float[] mAngle = new float[3];
+    private long mTime;
+    private int mChanges;
+
+    // 按当前采样率以 speed 弧度/秒转动 durationMs
+    private void rotate(RateController controller, float speed, long durationMs) {
+        long end = mTime + durationMs * MS;
+        while (mTime < end) {
+            long period = 1_000_000_000L / controller.getRate();
+            mTime += period;
+            mAngle[1] += speed * period / 1e9f;
+            if (controller.onAngle(mTime, mAngle)) {
+                mChanges++;
+            }
+        }
+    }
+
+    @Test
+    public void ratesFollowRefreshRate() {
+        assertEquals(120, new RateController(120).getRate());
+        RateController controller = new RateController(120);
+        rotate(controller, 0, 3000);
+        assertEquals(30, controller.getRate());
+        controller = new RateController(60);
+        rotate(controller, 0, 3000);
+        assertEquals(RateController.MIN_RATE, controller.getRate());
+        // 刷新率很低时不超过刷新率
+        controller = new RateController(10);
+        rotate(controller, 0, 3000);
+        assertEquals(10, controller.getRate());
+    }
+
+    @Test
+    public void stepsDownAfterHoldAndUpImmediately() {
+        RateController controller = new RateController(60);
+        rotate(controller, 0, 400);
+        assertEquals(60, controller.getRate());
+        rotate(controller, 0, 300);
+        assertEquals(30, controller.getRate());
+        rotate(controller, 0, 600);
+        assertEquals(15, controller.getRate());
+        // 慢速漂移到中档
+        rotate(controller, 0.1f, 500);
+        assertEquals(30, controller.getRate());
+        // 快速转动直接到最高
+        rotate(controller, 1f, 300);
+        assertEquals(60, controller.getRate());
+        assertEquals(4, controller.getChangeCount());
+        assertEquals(4, controller.getHistory().split("\n").length);
+        assertTrue(controller.getSavedSampleCount() > 0);
+    }
+
+    @Test
+    public void hysteresisPreventsFlapping() {
+        RateController controller = new RateController(60);
+        rotate(controller, 0.1f, 2000);
+        assertEquals(30, controller.getRate());
+        mChanges = 0;
+        // 速度在两档的阈值附近波动, 不会来回切换
+        for (int i = 0; i < 20; i++) {
+            rotate(controller, i % 2 == 0 ? 0.2f : 0.4f, 200);
+        }
+        assertTrue("changes " + mChanges, mChanges <= 1);
+        assertEquals(60, controller.getRate());
+    }
+
+    @Test
+    public void resetReturnsToMaxRate() {
+        RateController controller = new RateController(90);
+        rotate(controller, 0, 3000);
+        assertEquals(22, controller.getRate());
+        controller.reset();
+        assertEquals(90, controller.getRate());
+        // 统计保留
+        assertEquals(2, controller.getChangeCount());
+    }
+}
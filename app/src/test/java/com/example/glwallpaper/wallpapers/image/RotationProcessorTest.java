@@ -0,0 +1,92 @@
+package com.example.glwallpaper.wallpapers.image;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+public class RotationProcessorTest {
+
+    // 绕 axis 旋转 angle 的旋转矢量, 第 4 个值是 cos(θ/2)
+    private static float[] rotation(int axis, double angle) {
+        float[] values = new float[4];
+        values[axis] = (float) Math.sin(angle / 2);
+        values[3] = (float) Math.cos(angle / 2);
+        return values;
+    }
+
+    @Test
+    public void angleChangeAroundEachAxis() {
+        float[] base = new float[9];
+        float[] rotated = new float[9];
+        float[] angle = new float[3];
+        RotationMath.getRotationMatrixFromVector(base, rotation(0, 0), 4);
+
+        RotationMath.getRotationMatrixFromVector(rotated, rotation(2, 0.3), 4);
+        RotationMath.getAngleChange(angle, rotated, base);
+        assertArrayEquals(new float[]{-0.3f, 0, 0}, angle, 1e-5f);
+
+        RotationMath.getRotationMatrixFromVector(rotated, rotation(0, 0.2), 4);
+        RotationMath.getAngleChange(angle, rotated, base);
+        assertArrayEquals(new float[]{0, -0.2f, 0}, angle, 1e-5f);
+
+        // 只有三个值时计算第 4 个
+        RotationMath.getRotationMatrixFromVector(rotated, rotation(1, 0.1), 3);
+        RotationMath.getAngleChange(angle, rotated, base);
+        assertArrayEquals(new float[]{0, 0, 0.1f}, angle, 1e-5f);
+    }
+
+    @Test
+    public void firstSampleIsBase() {
+        RotationProcessor processor = new RotationProcessor();
+        assertNull(processor.process(rotation(2, 0.5)));
+        float[] angle = processor.process(rotation(2, 0.7));
+        assertEquals(-0.2f, angle[0], 1e-5f);
+        // 同一个数组
+        assertSame(angle, processor.process(rotation(2, 0.5)));
+        assertEquals(0, angle[0], 1e-5f);
+
+        processor.reset();
+        assertNull(processor.process(rotation(2, 0.7)));
+        assertEquals(0, processor.process(rotation(2, 0.7))[0], 1e-5f);
+    }
+
+    @Test
+    public void steadyStateDoesNotAllocate() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            return;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        RotationProcessor processor = new RotationProcessor();
+        // 传感器的数组由系统复用, 这里也只准备一组
+        float[][] samples = new float[64][];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = rotation(i % 3, i * 0.01);
+        }
+        float sink = 0;
+        // 预热, 让 JIT 编译完成
+        for (int i = 0; i < 200000; i++) {
+            float[] angle = processor.process(samples[i & 63]);
+            if (angle != null) {
+                sink += angle[0];
+            }
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100000; i++) {
+            sink += processor.process(samples[i & 63])[1];
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        assertFalse(Float.isNaN(sink));
+        // 读取计数本身可能有少量分配, 与每次分配 (约 100 字节 * 100000) 相差几个数量级
+        assertTrue("allocated " + allocated, allocated < 1024);
+    }
+}